@@ -1,9 +1,19 @@
 package DS.Controller;
 
 import DS.Controller.Index.*;
+import DS.Controller.Placement.FileCountPolicy;
+import DS.Controller.Placement.FirstReplicaSelector;
+import DS.Controller.Placement.LatencySelector;
+import DS.Controller.Placement.LeastOutstandingSelector;
+import DS.Controller.Placement.PlacementPolicy;
+import DS.Controller.Placement.PowerOfTwoSelector;
+import DS.Controller.Placement.ReplicaSelector;
+import DS.Controller.Placement.RoundRobinSelector;
+import DS.Controller.Placement.StoredBytesPolicy;
 import DS.Controller.Rebalancer.Rebalancer;
 import DS.Protocol.Exception.*;
 import Network.NetworkInterface;
+import Network.NetworkOptions;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Event.NetworkEvent;
 import Network.Protocol.Exception.*;
@@ -21,6 +31,13 @@ public class Controller extends Server{
     private int minDstores;
     private int timeout;
     private int rebalancePeriod;
+    private RebalanceMode rebalanceMode;
+    private RebalancePlanning rebalancePlanning;
+    private long fullRebalancePeriod;
+    private PlacementPolicy placementPolicy;
+    private PlacementStrategy placementStrategy;
+    private int virtualNodes;
+    private ReplicaSelector replicaSelector;
     private NetworkInterface networkInterface; 
     private volatile Index index;
     private volatile Rebalancer rebalancer;
@@ -35,12 +52,33 @@ public class Controller extends Server{
      * @param networkInterface The NetworkInterface associated with the controller.
      */
     public Controller(int port, int r, int timeout, int rebalancePeriod, NetworkInterface networkInterface){
+        this(port, r, timeout, rebalancePeriod, networkInterface, new NetworkOptions());
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the controller should listen on.
+     * @param minDstores The number of data stores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param networkInterface The NetworkInterface associated with the controller.
+     * @param options The optional settings for the controller.
+     */
+    public Controller(int port, int r, int timeout, int rebalancePeriod, NetworkInterface networkInterface, NetworkOptions options){
         // initializing new member variables
-        super(ServerType.CONTROLLER, port, networkInterface);
+        super(ServerType.CONTROLLER, port, networkInterface, options);
         this.port = port;
         this.minDstores = r;
         this.timeout = timeout;
         this.rebalancePeriod = rebalancePeriod;
+        this.rebalanceMode = options.getEnum("rebalance-mode", RebalanceMode.class, RebalanceMode.OFFLINE);
+        this.rebalancePlanning = options.getEnum("rebalance-planning", RebalancePlanning.class, RebalancePlanning.FULL);
+        this.fullRebalancePeriod = options.getLong("full-rebalance-period", 10L * rebalancePeriod);
+        this.placementPolicy = (options.getEnum("placement", Placement.class, Placement.FILES) == Placement.BYTES) ? new StoredBytesPolicy() : new FileCountPolicy();
+        this.placementStrategy = options.getEnum("placement-strategy", PlacementStrategy.class, PlacementStrategy.LEAST_LOADED);
+        this.virtualNodes = options.getInt("virtual-nodes", 100);
+        this.replicaSelector = options.getEnum("replica-selection", ReplicaSelection.class, ReplicaSelection.FIRST).createSelector();
         this.networkInterface = networkInterface;
         this.index = new Index(this);
         this.rebalancer = new Rebalancer(this);
@@ -131,6 +169,9 @@ public class Controller extends Server{
                 // removing the client from the server
                 this.getClientConnections().remove(exception.getConnection());
 
+                // removing the client's load state
+                this.index.removeClient(exception.getConnection());
+
                 // logging the disconnect
                 this.getNetworkInterface().logError(new HandeledNetworkException(new ClientDisconnectException(exception.getConnection().getPort(), exception)));
             }
@@ -186,6 +227,34 @@ public class Controller extends Server{
         return this.rebalancePeriod;
     }
 
+    public RebalanceMode getRebalanceMode(){
+        return this.rebalanceMode;
+    }
+
+    public RebalancePlanning getRebalancePlanning(){
+        return this.rebalancePlanning;
+    }
+
+    public long getFullRebalancePeriod(){
+        return this.fullRebalancePeriod;
+    }
+
+    public PlacementPolicy getPlacementPolicy(){
+        return this.placementPolicy;
+    }
+
+    public PlacementStrategy getPlacementStrategy(){
+        return this.placementStrategy;
+    }
+
+    public int getVirtualNodes(){
+        return this.virtualNodes;
+    }
+
+    public ReplicaSelector getReplicaSelector(){
+        return this.replicaSelector;
+    }
+
     public Index getIndex(){
         return this.index;
     }
@@ -193,4 +262,71 @@ public class Controller extends Server{
     public Rebalancer getRebalancer(){
         return this.rebalancer;
     }
+
+    ////////////////////
+    // REBALANCE MODE //
+    ////////////////////
+
+    /**
+     * The ways in which the Controller can rebalance the system.
+     */
+    public enum RebalanceMode {
+        OFFLINE, // client requests are held while the Dstores are listed
+        ONLINE; // client requests are served throughout, and only files being moved are fenced
+    }
+
+    /**
+     * The ways in which the Controller plans the periodic rebalances of the system.
+     */
+    public enum RebalancePlanning {
+        FULL, // every Dstore is listed each period
+        INCREMENTAL; // only the files changed since the last rebalance are checked each period
+    }
+
+    /**
+     * The measures of load the Controller can balance the Dstores on.
+     */
+    public enum Placement {
+        FILES, // the number of files stored on each Dstore
+        BYTES; // the number of bytes stored on each Dstore
+    }
+
+    /**
+     * The ways the Controller can choose the Dstores a file is stored on.
+     */
+    public enum PlacementStrategy {
+        LEAST_LOADED, // the least loaded Dstores, with rebalances spreading the load evenly
+        RING; // the Dstores following the file on a consistent-hash ring
+    }
+
+    /**
+     * The ways the Controller can choose the replica a file is loaded from.
+     */
+    public enum ReplicaSelection {
+        FIRST, // the first replica of the file
+        ROUND_ROBIN, // the replicas of the file in turn
+        LEAST_OUTSTANDING, // the replica with the fewest loads in flight
+        POWER_OF_TWO, // the replica with fewer loads in flight out of two chosen at random
+        LATENCY; // the replica expected to serve the load soonest
+
+        /**
+         * Creates the replica selector for the selection.
+         * 
+         * @return The replica selector.
+         */
+        public ReplicaSelector createSelector(){
+            switch(this){
+                case ROUND_ROBIN:
+                    return new RoundRobinSelector();
+                case LEAST_OUTSTANDING:
+                    return new LeastOutstandingSelector();
+                case POWER_OF_TWO:
+                    return new PowerOfTwoSelector();
+                case LATENCY:
+                    return new LatencySelector();
+                default:
+                    return new FirstReplicaSelector();
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -3,7 +3,9 @@ package DS.Controller;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import DS.Controller.Index.FileEntry;
 import DS.Controller.Index.State.OperationState;
+import DS.Protocol.Codecs;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
@@ -17,6 +19,7 @@ import Network.Client.Client.ClientType;
 import Network.Protocol.Event.ServerConnectionEvent;
 import Network.Protocol.Exception.*;
 import Network.Server.RequestHandler;
+import Network.Server.RequestTable;
 
 /**
  * Handles requests sent to a Controller by a DSClient.
@@ -25,6 +28,7 @@ public class ControllerRequestHandler extends RequestHandler{
 
     // member variables
     private Controller controller;
+    private RequestTable requests;
 
     /**
      * Class constructor.
@@ -35,6 +39,25 @@ public class ControllerRequestHandler extends RequestHandler{
         // initializing
         super(controller);
         this.controller = controller;
+        this.requests = new RequestTable();
+
+        // registering the requests handled by the Controller
+        this.requests.register(JoinDstoreToken.class, this::handleJoinDstoreRequest);
+        this.requests.register(JoinClientToken.class, this::handleJoinClientRequest);
+        this.requests.register(JoinClientHeartbeatToken.class, this::handleJoinClientHeartbeatRequest);
+        this.requests.register(StoreToken.class, (connection, request) -> this.handleStoreRequest(connection, request.filename, request.filesize));
+        this.requests.register(StoreAckToken.class, (connection, request) -> this.handleStoreAckRequest(connection, request.filename));
+        this.requests.register(LoadToken.class, (connection, request) -> this.handleLoadRequest(connection, request.filename, false, request.tag != null));
+        this.requests.register(ReloadToken.class, (connection, request) -> this.handleLoadRequest(connection, request.filename, true, request.tag != null));
+        this.requests.register(RemoveToken.class, (connection, request) -> this.handleRemoveRequest(connection, request.filename));
+        this.requests.register(RemoveAckToken.class, (connection, request) -> this.handleRemoveAckRequest(connection, request.filename));
+        this.requests.register(ErrorFileDoesNotExistFilenameToken.class, (connection, request) -> {}); // nothing to do ...
+        this.requests.register(ListToken.class, (connection, request) -> this.handleListRequest(connection));
+        this.requests.register(ListChunkedToken.class, (connection, request) -> this.handleListChunkedRequest(connection, request.chunkSize));
+        this.requests.register(ListFilesToken.class, (connection, request) -> this.handleListFilesRequest(connection, request.files)); // rebalancing
+        this.requests.register(ListChunkToken.class, (connection, request) -> this.handleListChunkRequest(connection, request.files)); // rebalancing
+        this.requests.register(ListEndToken.class, (connection, request) -> this.handleListEndRequest(connection)); // rebalancing
+        this.requests.register(RebalanceCompleteToken.class, (connection, request) -> this.handleRebalanceCompleteRequest(connection));
     }
 
     //////////
@@ -48,84 +71,15 @@ public class ControllerRequestHandler extends RequestHandler{
      * @param request Tokenized request to be handled.
      */
     public void handleRequestAux(Connection connection, Token request){
+        // client has moved on from the file it was loading (a RELOAD meaning the load failed)
+        if(request.tag == null && this.isClientRequest(request)){
+            this.controller.getIndex().finishLoad(connection, !(request instanceof ReloadToken));
+        }
+
         // handling request
         try{
-            // JOIN_DSTORE
-            if(request instanceof JoinDstoreToken){
-                JoinDstoreToken joinToken = (JoinDstoreToken) request;
-                this.handleJoinDstoreRequest(connection, joinToken.port);
-            }
-
-            // JOIN_CLIENT
-            else if(request instanceof JoinClientToken){
-                this.handleJoinClientRequest(connection, request);
-            }
-
-            // JOIN_CLIENT_HEARTBEAT
-            else if(request instanceof JoinClientHeartbeatToken){
-                JoinClientHeartbeatToken joinToken = (JoinClientHeartbeatToken) request;
-                this.handleJoinClientHeartbeatRequest(connection, joinToken);
-            }
-
-            // STORE
-            else if(request instanceof StoreToken){
-                StoreToken storeToken = (StoreToken) request;
-                this.handleStoreRequest(connection, storeToken.filename, storeToken.filesize);
-            }
-
-            // STORE_ACK
-            else if(request instanceof StoreAckToken){
-                StoreAckToken storeAckToken = (StoreAckToken) request;
-                this.handleStoreAckRequest(connection, storeAckToken.filename); 
-            }
-
-            // LOAD
-            else if(request instanceof LoadToken){
-                LoadToken loadToken = (LoadToken) request;
-                this.handleLoadRequest(connection, loadToken.filename, false);
-            }
-            
-            // RELOAD
-            else if(request instanceof ReloadToken){
-                ReloadToken reloadToken = (ReloadToken) request;
-                this.handleLoadRequest(connection, reloadToken.filename, true);
-            }
-
-            // REMOVE
-            else if(request instanceof RemoveToken){
-                RemoveToken removeToken = (RemoveToken) request;
-                this.handleRemoveRequest(connection, removeToken.filename);
-            }
-
-            // REMOVE_ACK
-            else if(request instanceof RemoveAckToken){
-                RemoveAckToken removeAckToken = (RemoveAckToken) request;
-                this.handleRemoveAckRequest(connection, removeAckToken.filename);
-            }
-
-            // ERROR_FILE_DOES_NOT_EXIST
-            else if(request instanceof ErrorFileDoesNotExistFilenameToken){
-                // nothing to do ...
-            }
-
-            // LIST
-            else if(request instanceof ListToken){
-                this.handleListRequest(connection);
-            }
-
-            // LIST OF FILES (rebalancing)
-            else if(request instanceof ListFilesToken){
-                ListFilesToken listFilesToken = (ListFilesToken) request;
-                this.handleListFilesRequest(connection, listFilesToken.files);
-            }
-
-            // REBALANCE COMPLETE
-            else if(request instanceof RebalanceCompleteToken){
-                this.handleRebalanceCompleteRequest(connection);
-            }
-
-            // Invalid Request
-            else{
+            if(!this.requests.handle(connection, request)){
+                // Invalid Request
                 this.handleInvalidRequest(connection, request);
             }
         }
@@ -168,6 +122,41 @@ public class ControllerRequestHandler extends RequestHandler{
         }
     }
 
+    /**
+     * Determines if a request should be handled on the thread that received it.
+     * 
+     * Acknowledgements and rebalance responses from Dstores only update the Index, and
+     * operations waiting in the dispatcher may depend on them, so they are not queued
+     * behind those operations.
+     * 
+     * @param request The request being handled.
+     * @return True if the request should be handled inline, false if not.
+     */
+    public boolean isInlineRequest(Token request){
+        return (request instanceof StoreAckToken ||
+                request instanceof RemoveAckToken ||
+                request instanceof ErrorFileDoesNotExistFilenameToken ||
+                request instanceof ListFilesToken ||
+                request instanceof ListChunkToken ||
+                request instanceof ListEndToken ||
+                request instanceof RebalanceCompleteToken);
+    }
+
+    /**
+     * Determines if a request is one of the file requests sent by Clients.
+     * 
+     * @param request The request being handled.
+     * @return True if the request was sent by a Client, false if not.
+     */
+    private boolean isClientRequest(Token request){
+        return (request instanceof StoreToken ||
+                request instanceof LoadToken ||
+                request instanceof ReloadToken ||
+                request instanceof RemoveToken ||
+                request instanceof ListToken ||
+                request instanceof ListChunkedToken);
+    }
+
     /////////////////
     // JOIN_DSTORE //
     /////////////////
@@ -176,18 +165,18 @@ public class ControllerRequestHandler extends RequestHandler{
      * Handles a JOIN_DSTORE request.
      * 
      * @param connection The connection associated with the request.
-     * @param dstorePort The port number of the Dstore joining the system.
+     * @param joinToken The request token.
      * @throws DstorePortInUseException If the port the Dstore is trying to join on is already in use.
      */
-    public void handleJoinDstoreRequest(Connection connection, int dstorePort) throws Exception{
+    public void handleJoinDstoreRequest(Connection connection, JoinDstoreToken joinToken) throws Exception{
         // addding the Dstore to the index
-        this.controller.getIndex().addDstore(dstorePort, connection);
+        this.controller.getIndex().addDstore(joinToken.port, connection);
 
         // adding the dstore to the server
         this.controller.getServerConnections().add(connection);
 
-        // sending JOIN_ACK to Dstore
-        connection.sendMessage(Protocol.getJoinAckMessage());
+        // sending JOIN_ACK to Dstore (agreeing the codec it requested)
+        Codecs.acceptJoin(connection, joinToken);
 
         // rebalancing system
         this.controller.getRebalancer().rebalance();
@@ -210,8 +199,8 @@ public class ControllerRequestHandler extends RequestHandler{
         // logging
         this.controller.handleEvent(new ServerConnectionEvent(ClientType.CLIENT, connection.getPort()));
 
-        // sending JOIN_ACK to Client
-        connection.sendMessage(Protocol.getJoinAckMessage());
+        // sending JOIN_ACK to Client (agreeing the codec and tagged requests it requested)
+        Codecs.acceptJoin(connection, request, true);
     }
 
     ///////////////////////////
@@ -255,7 +244,7 @@ public class ControllerRequestHandler extends RequestHandler{
         connection.sendMessage(Protocol.getStoreToMessage(dstores));
 
         // waiting for the store to be complete
-        this.controller.getIndex().waitForFileState(filename, OperationState.STORE_ACK_RECIEVED, this.controller.getTimeout());
+        this.controller.getIndex().waitForFileState(filename, OperationState.STORE_ACK_RECIEVED);
 
         // store complete, sending STORE_COMPLETE message to Client
         connection.sendMessage(Protocol.getStoreCompleteMessage());
@@ -283,15 +272,17 @@ public class ControllerRequestHandler extends RequestHandler{
      * 
      * @param connection The connection associated with the request.
      * @param filename The name of the file being loaded.
+     * @param isReload Boolean representing if this load operation is a LOAD or RELOAD.
+     * @param isTagged Boolean representing if the request was tagged (pipelined by the Client).
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the Controller to handle the request.
      * @throws FileDoesNotExist If there is no file in the Index with this name.
      * @throws NoValidDstoresException If there are no valid Dstores remaining to load the file form 
      * (exhausted all possible Dstores).
      * @throws MessageSendException If a message could not be sent through the connection.
      */
-    private void handleLoadRequest(Connection connection, String filename, boolean isReload) throws Exception{
+    private void handleLoadRequest(Connection connection, String filename, boolean isReload, boolean isTagged) throws Exception{
         // getting the dstore to store on
-        int dstoreToLoadFrom = this.controller.getIndex().getDstoreToLoadFrom(connection, filename, isReload);
+        int dstoreToLoadFrom = this.controller.getIndex().getDstoreToLoadFrom(connection, filename, isReload, isTagged);
 
         // getting the file size
         int filesize = this.controller.getIndex().getFileSize(filename);
@@ -330,7 +321,7 @@ public class ControllerRequestHandler extends RequestHandler{
         }
 
         // waiting for the REMOVE to be complete
-        this.controller.getIndex().waitForFileState(filename, OperationState.REMOVE_ACK_RECIEVED, this.controller.getTimeout());
+        this.controller.getIndex().waitForFileState(filename, OperationState.REMOVE_ACK_RECIEVED);
 
         // store complete, sending REMOVE_COMPLETEE message to Client
         connection.sendMessage(Protocol.getRemoveCompleteMessage());
@@ -372,6 +363,42 @@ public class ControllerRequestHandler extends RequestHandler{
         this.controller.handleEvent(new ListCompleteEvent());
     }
 
+    /**
+     * Handles a LIST_CHUNKED request.
+     * 
+     * The files are sent straight from the index a chunk at a time, followed by LIST_END,
+     * so the memory used does not depend on the number of files, and the client receives
+     * the first files without waiting for the whole list.
+     * 
+     * @param connection The connection associated with the request.
+     * @param chunkSize The number of files the client wants in each chunk.
+     * @throws MessageSendException If a message could not be sent through the connection.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected to handle the request.
+     */
+    private void handleListChunkedRequest(Connection connection, int chunkSize) throws Exception{
+        int maxFiles = Math.max(1, Math.min(chunkSize, Protocol.MAX_LIST_CHUNK_SIZE));
+        HashMap<String, Integer> chunk = new HashMap<String, Integer>();
+
+        // sending the files a chunk at a time
+        for(FileEntry file : this.controller.getIndex().getFileEntries()){
+            chunk.put(file.getFilename(), file.getFilesize());
+
+            if(chunk.size() == maxFiles){
+                connection.sendMessage(Protocol.getListChunkMessage(chunk));
+                chunk.clear();
+            }
+        }
+        if(!chunk.isEmpty()){
+            connection.sendMessage(Protocol.getListChunkMessage(chunk));
+        }
+
+        // marking the end of the list
+        connection.sendMessage(Protocol.getListEndMessage());
+
+        // logging
+        this.controller.handleEvent(new ListCompleteEvent());
+    }
+
     ///////////////////
     // LIST OF FILES //
     ///////////////////
@@ -386,6 +413,25 @@ public class ControllerRequestHandler extends RequestHandler{
         this.controller.getIndex().rebalanceListRecieved(connection, files);
     }
 
+    /**
+     * Handles the reception of a chunk of a list of files from a Dstore (rebalancing).
+     * 
+     * @param connection The connection associated with the message.
+     * @param files The list of files provided in the chunk.
+     */
+    private void handleListChunkRequest(Connection connection, HashMap<String, Integer> files){
+        this.controller.getIndex().rebalanceListChunkRecieved(connection, files);
+    }
+
+    /**
+     * Handles the end of a chunked list of files from a Dstore (rebalancing).
+     * 
+     * @param connection The connection associated with the message.
+     */
+    private void handleListEndRequest(Connection connection){
+        this.controller.getIndex().rebalanceListEndRecieved(connection);
+    }
+
     /**
      * Handles the reception of a REBALANCE_COMPLETE message from a DSTORE.
      * 
@@ -3,6 +3,7 @@ package DS.Controller;
 import java.net.Socket;
 
 import Network.NetworkInterface;
+import Network.NetworkOptions;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Exception.*;
 
@@ -26,7 +27,20 @@ public class ControllerTerminal extends NetworkInterface{
      * @param rebalancePeriod The rebalance period.
      */
     public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod){
-        this.controller = new Controller(port, r, timeout, rebalancePeriod, this);
+        this(port, r, timeout, rebalancePeriod, new NetworkOptions());
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the controller should listen on.
+     * @param r The number of data stores to replicate files across.
+     * @param timeout The timeout length for communication.
+     * @param rebalancePeriod The rebalance period.
+     * @param options The optional settings for the controller.
+     */
+    public ControllerTerminal(int port, int r, int timeout, int rebalancePeriod, NetworkOptions options){
+        this.controller = new Controller(port, r, timeout, rebalancePeriod, this, options);
 
         // starting Controller
         this.startNetworkProcess(this.controller); // start  it on seperate thread
@@ -92,6 +106,8 @@ public class ControllerTerminal extends NetworkInterface{
     /**
      * Main method - instantiates a new Controller instance using the command line parammeters.
      * 
+     * Any parameters after the rebalance period are optional settings of the form 'name=value'.
+     * 
      * @param args Parameters for the new Controller.
      */
     public static void main(String[] args){
@@ -101,9 +117,10 @@ public class ControllerTerminal extends NetworkInterface{
             int r = Integer.parseInt(args[1]);
             int timeout = Integer.parseInt(args[2]);
             int rebalancePeriod = Integer.parseInt(args[3]);
+            NetworkOptions options = NetworkOptions.fromArgs(args, 4);
 
             // Creating new DStore instance
-            ControllerTerminal controller = new ControllerTerminal(cPort, r, timeout, rebalancePeriod);
+            ControllerTerminal controller = new ControllerTerminal(cPort, r, timeout, rebalancePeriod, options);
         }
         catch(Exception e){
             System.out.println("Unable to create Controller.");
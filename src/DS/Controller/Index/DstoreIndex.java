@@ -1,23 +1,38 @@
 package DS.Controller.Index;
 
-import java.util.HashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import DS.Controller.Index.State.OperationState;
 import DS.Controller.Index.State.RebalanceState;
 import Network.Connection;
 
 /**
  * Represents the 'State' of a Dstore within the system. Used by the Controller
  * to keep track of the Dstores it is controlling, along with the files stored on them.
+ * 
+ * The states of the files are held by the Index's catalogue - the DstoreIndex only holds
+ * the names and sizes of the files stored on the Dstore (and their total size), and is kept
+ * up to date by the Index as the catalogue changes.
+ * 
+ * The DstoreIndex also counts the loads from the Dstore that are in flight, and keeps an
+ * average of the time loads from the Dstore take, which are used to choose the replica
+ * a file is loaded from.
  */
 public class DstoreIndex implements Comparable<DstoreIndex>{
+
+    // constants
+    private static final double LATENCY_WEIGHT = 0.2; // weight of the newest load time in the average
     
     // member variables
     private volatile int port; // the port the Dstore is listening on
     private volatile Connection connection;
-    private volatile CopyOnWriteArrayList<DstoreFile> files;
+    private volatile ConcurrentHashMap<String, Integer> files; // filename -> filesize
+    private AtomicLong storedBytes;
     private volatile RebalanceState rebalanceState;
+    private AtomicInteger outstandingLoads; // loads from the Dstore in flight
+    private volatile double loadLatency; // average load time in ms (NaN until a load completes)
 
     /**
      * Class constructor.
@@ -28,8 +43,11 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
     public DstoreIndex(int port, Connection connection){
         this.port = port;
         this.connection = connection;
-        this.files = new CopyOnWriteArrayList<DstoreFile>();
+        this.files = new ConcurrentHashMap<String, Integer>();
+        this.storedBytes = new AtomicLong();
         this.rebalanceState = RebalanceState.IDLE;
+        this.outstandingLoads = new AtomicInteger();
+        this.loadLatency = Double.NaN;
     }
 
     ///////////////////////
@@ -37,13 +55,15 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
     ///////////////////////
 
     /**
-     * Adds a new file to the list of files
+     * Adds a new file to the set of files
      * 
      * @param filename The name of the file to be added.
-     * @param filesize The size of the file to be added in bytes.
+     * @param filesize The size of the file in bytes.
      */
     public void addFile(String filename, int filesize){
-        this.files.add(new DstoreFile(filename, filesize));
+        Integer oldFilesize = this.files.put(filename, filesize);
+
+        this.storedBytes.addAndGet(filesize - ((oldFilesize == null) ? 0 : oldFilesize));
     }
 
     /**
@@ -52,40 +72,49 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
      * @param filename The file to be removed
      */
     public void removeFile(String filename){
-        // place holder for the file object
-        DstoreFile foundFile = null;
-
-        // finding the file object
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                foundFile = file;
-            }
-        }
+        Integer filesize = this.files.remove(filename);
 
-        // removing the file if it was found
-        if(foundFile != null){
-            this.files.remove(foundFile);
+        if(filesize != null){
+            this.storedBytes.addAndGet(-filesize);
         }
     }
 
-    ////////////////////
-    // HELPER METHODS //
-    ////////////////////
+    ///////////////////
+    // LOADING FILES //
+    ///////////////////
+
+    /**
+     * Records the start of a load from the Dstore.
+     */
+    public void startLoad(){
+        this.outstandingLoads.incrementAndGet();
+    }
+
+    /**
+     * Records the end of a load from the Dstore.
+     */
+    public void finishLoad(){
+        this.outstandingLoads.decrementAndGet();
+    }
 
     /**
-     * Sets the state of a file to the given state.
+     * Adds the time taken by a load from the Dstore to the Dstore's average load time.
      * 
-     * @param filename The file having it's state changed.
-     * @param state The state the file will be changed to.
+     * @param latency The time taken by the load in ms.
      */
-    public void updateFileState(String filename, OperationState state){
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                file.setState(state);
-            }
+    public synchronized void recordLoadLatency(long latency){
+        if(!this.hasLoadLatency()){
+            this.loadLatency = latency;
+        }
+        else{
+            this.loadLatency += LATENCY_WEIGHT * (latency - this.loadLatency);
         }
     }
 
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
     /**
      * Determines if the given file is stored on the Dstore.
      * 
@@ -93,13 +122,7 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
      * @return True if the file is stored on the Dstore, false if not.
      */
     public boolean hasFile(String filename){
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                return true;
-            }
-        }
-
-        return false;
+        return this.files.containsKey(filename);
     }
 
     /**
@@ -135,31 +158,40 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
         return this.connection;
     }
 
-    public CopyOnWriteArrayList<DstoreFile> getFiles(){
-        return this.files;
+    public Set<String> getFiles(){
+        return this.files.keySet();
     }
 
-    public DstoreFile getFile(String filename){
-        for(DstoreFile file : this.files){
-            if(file.getFilename().equals(filename)){
-                return file;
-            }
-        }
-        
-        return null;
+    /**
+     * Returns the total size of the files stored on the Dstore.
+     * 
+     * @return The number of bytes stored on the Dstore.
+     */
+    public long getStoredBytes(){
+        return this.storedBytes.get();
     }
 
-    public void setFiles(HashMap<String, Integer> files){
-        // clearing old files
-        this.files.clear();
+    public int getOutstandingLoads(){
+        return this.outstandingLoads.get();
+    }
 
-        // adding new files
-        for(String file : files.keySet()){
-            DstoreFile dstoreFile = new DstoreFile(file, files.get(file));
-            dstoreFile.setState(OperationState.IDLE);
+    /**
+     * Returns the average time taken by loads from the Dstore.
+     * 
+     * @return The average load time in ms, or NaN if no load from the Dstore has completed.
+     */
+    public double getLoadLatency(){
+        return this.loadLatency;
+    }
 
-            this.files.add(dstoreFile);
-        }
+    /**
+     * Determines if a load from the Dstore has completed, so that the Dstore has an average
+     * load time.
+     * 
+     * @return True if the Dstore has an average load time, false if not.
+     */
+    public boolean hasLoadLatency(){
+        return !Double.isNaN(this.loadLatency);
     }
 
     public RebalanceState getRebalanceState(){
@@ -171,6 +203,6 @@ public class DstoreIndex implements Comparable<DstoreIndex>{
     }
 
     public String toString(){
-        return (this.port + " : " + this.files.toString());
+        return (this.port + " : " + this.files.keySet().toString());
     }
 }
\ No newline at end of file
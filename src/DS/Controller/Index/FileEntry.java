@@ -0,0 +1,125 @@
+package DS.Controller.Index;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import DS.Controller.Index.State.OperationState;
+
+/**
+ * Represents a file within the Index's catalogue.
+ *
+ * Holds the size of the file and the set of Dstores the file is replicated on,
+ * along with the state of the file on each of these Dstores.
+ */
+public class FileEntry {
+
+    // member variables
+    private String filename;
+    private int filesize;
+    private ConcurrentHashMap<Integer, OperationState> replicas; // Dstore port -> state of file on Dstore
+
+    /**
+     * Class constructor.
+     *
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     */
+    public FileEntry(String filename, int filesize){
+        this.filename = filename;
+        this.filesize = filesize;
+        this.replicas = new ConcurrentHashMap<Integer, OperationState>();
+    }
+
+    //////////////////////////
+    // CONFIGURING REPLICAS //
+    //////////////////////////
+
+    /**
+     * Sets the state of the file on the given Dstore (adding the Dstore as a replica
+     * if the file is not yet stored on it).
+     *
+     * @param dstore The port of the Dstore.
+     * @param state The state of the file on the Dstore.
+     */
+    public void setReplicaState(int dstore, OperationState state){
+        this.replicas.put(dstore, state);
+    }
+
+    /**
+     * Sets the state of the file across all of the Dstores it is stored on.
+     *
+     * @param state The state the file will be changed to.
+     */
+    public void setState(OperationState state){
+        this.replicas.replaceAll((dstore, oldState) -> state);
+    }
+
+    /**
+     * Removes the given Dstore from the replicas of the file.
+     *
+     * @param dstore The port of the Dstore.
+     */
+    public void removeReplica(int dstore){
+        this.replicas.remove(dstore);
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Determines if the file has the given state across all of the Dstores that
+     * it is stored on.
+     *
+     * @param state The state being checked for.
+     * @return True if the file has the state on all of its Dstores, false if not.
+     */
+    public boolean hasState(OperationState state){
+        for(OperationState replicaState : this.replicas.values()){
+            if(replicaState != state){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines if the file is stored on any Dstore.
+     *
+     * @return True if the file has no replicas, false if not.
+     */
+    public boolean hasNoReplicas(){
+        return this.replicas.isEmpty();
+    }
+
+    /**
+     * Converts the FileEntry to a string.
+     *
+     * @return String representation of the FileEntry.
+     */
+    public String toString(){
+        return ("(" + this.filename + ", " + this.filesize + ", " + this.replicas.toString() + ")");
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public int getFilesize(){
+        return this.filesize;
+    }
+
+    /**
+     * Returns the ports of the Dstores the file is stored on.
+     *
+     * @return The list of Dstore ports storing the file.
+     */
+    public ArrayList<Integer> getReplicas(){
+        return new ArrayList<Integer>(this.replicas.keySet());
+    }
+}
@@ -0,0 +1,65 @@
+package DS.Controller.Index;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents a load that a Client has been sent to a Dstore for, and that the Client has
+ * not yet moved on from.
+ *
+ * Dstores do not acknowledge loads to the Controller, so a load is taken to be in flight
+ * until the Client sends its next request (a RELOAD meaning the load failed), disconnects,
+ * or the timeout passes.
+ */
+public class InFlightLoad {
+
+    // member variables
+    private DstoreIndex dstore;
+    private long startTime;
+    private AtomicBoolean finished;
+
+    /**
+     * Class constructor.
+     *
+     * @param dstore The Dstore the file is being loaded from.
+     */
+    public InFlightLoad(DstoreIndex dstore){
+        this.dstore = dstore;
+        this.startTime = System.currentTimeMillis();
+        this.finished = new AtomicBoolean(false);
+
+        this.dstore.startLoad();
+    }
+
+    /**
+     * Finishes the load, recording the time it took on its Dstore. Loads are only finished
+     * once, so a load that is finished by the Client and by its timeout is only counted once.
+     *
+     * @param latency The time the load took in ms, or -1 if it is not known.
+     */
+    public void finish(long latency){
+        if(this.finished.compareAndSet(false, true)){
+            this.dstore.finishLoad();
+
+            if(latency >= 0){
+                this.dstore.recordLoadLatency(latency);
+            }
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public DstoreIndex getDstore(){
+        return this.dstore;
+    }
+
+    /**
+     * Returns the time that has passed since the load started.
+     *
+     * @return The time since the load started in ms.
+     */
+    public long getElapsedTime(){
+        return System.currentTimeMillis() - this.startTime;
+    }
+}
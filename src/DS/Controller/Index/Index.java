@@ -1,16 +1,34 @@
 package DS.Controller.Index;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
 
 import DS.Controller.Controller;
+import DS.Controller.Controller.PlacementStrategy;
+import DS.Controller.Controller.RebalanceMode;
 import DS.Controller.Index.State.OperationState;
 import DS.Controller.Index.State.RebalanceState;
+import DS.Controller.Placement.HashRing;
+import DS.Controller.Placement.PlacementPolicy;
+import DS.Controller.Placement.ReplicaSelector;
+import DS.Controller.Rebalancer.RebalanceInformation;
 import DS.Protocol.Exception.*;
+import DS.Protocol.Token.TokenType.FileToSend;
 import Network.Connection;
 import Network.Client.Client.ClientType;
 import Network.Protocol.Event.ServerConnectionEvent;
@@ -24,16 +42,68 @@ import Network.Protocol.Exception.NetworkException;
  * states. The Controller interacts with the Index to make changes to the system
  * as requests come in from Clients.
  * 
- * Methods are syncrhonized and properties are volatile to support concurrent access
- * that may occur as the Controller serves requests from multiple Clients concurrently.
+ * Files are held in a catalogue that maps each filename to its FileEntry (size, 
+ * replicas and their states), so requests on a file look it up directly rather than 
+ * searching every Dstore. Each DstoreIndex holds a view of the files stored on its
+ * Dstore, which is kept up to date with the catalogue.
+ * 
+ * Properties are concurrent collections and methods are locked to support concurrent access
+ * that may occur as the Controller serves requests from multiple Clients concurrently. Operations
+ * on a file lock the file's stripe (so operations on different files run in parallel) along with 
+ * the read lock of the Dstore membership, and changes to the Dstores in the system take the
+ * membership's write lock.
+ * 
+ * STORE and REMOVE operations are tracked as PendingOperations, which are completed by
+ * the acknowledgements of the Dstores (or timed out by a scheduler), so threads waiting
+ * on an operation or on a state of the system block rather than polling the Index. Operations
+ * are finished on the Index's own threads, so the scheduler's thread never waits on a lock.
+ * 
+ * In an online rebalance, the files being moved are fenced - STORE and REMOVE requests on
+ * them wait until the Dstores moving them have completed, while LOAD and LIST requests are
+ * served from their current placement. The placement of each file is switched as the 
+ * Dstores moving it report REBALANCE_COMPLETE.
+ * 
+ * The replica a file is loaded from is chosen by the Controller's replica selector, from the
+ * loads in flight on each Dstore (a load being in flight until the Client sends its next 
+ * request) and the time loads from each Dstore have taken.
+ * 
+ * With ring placement, the Index keeps a consistent-hash ring of the connected Dstores,
+ * and each file is stored on the Dstores that follow it on the ring.
+ * 
+ * For incremental rebalancing, the Index records the files whose placement has changed
+ * since the last rebalance (the dirty files), and whether the Dstores must be listed
+ * again (e.g., because a Dstore joined or left the system).
  */
 public class Index {
 
+    // constants
+    private static final int FILE_LOCK_STRIPES = 64;
+    private static final int LOAD_RECORD_EXPIRY = 10; // number of timeouts after which a Client's load attempts expire
+
     // member variables
     private Controller controller;
     private volatile CopyOnWriteArrayList<DstoreIndex> dstores;
+    private volatile ConcurrentHashMap<Integer, DstoreIndex> dstoresByPort;
+    private volatile ConcurrentHashMap<Integer, DstoreIndex> dstoresByConnection; // port of the Controller's connection -> Dstore
+    private volatile ConcurrentHashMap<String, FileEntry> files;
     private volatile int minDstores;
-    private volatile ConcurrentHashMap<Connection, ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>> loadRecord;
+    private volatile ConcurrentHashMap<Connection, LoadRecord> loadRecords; // Client -> Dstores tried for its recent loads
+    private volatile ConcurrentHashMap<String, PendingOperation> pendingOperations;
+    private AtomicInteger operationsInProgress; // operations started and not yet acknowledged or timed out
+    private volatile ConcurrentHashMap<Connection, InFlightLoad> inFlightLoads; // Client -> load the Client has not moved on from
+    private volatile ConcurrentHashMap<String, Set<Integer>> fencedFiles; // file -> Dstores still moving the file
+    private volatile ConcurrentHashMap<Integer, RebalanceInformation> rebalanceMoves; // Dstore -> moves not yet completed
+    private volatile ConcurrentHashMap<Integer, Set<String>> listedFiles; // Dstore -> files listed so far in a chunked LIST
+    private volatile Set<String> filesChangedDuringList; // only recorded while an online rebalance lists the Dstores
+    private volatile Set<String> dirtyFiles; // files changed since the last rebalance
+    private volatile boolean listRequired; // true if the Dstores must be listed before the next rebalance
+    private AtomicLong largestFilesize; // size of the largest file seen (used as the balance tolerance when placing by bytes)
+    private HashRing hashRing; // null unless files are placed on a consistent-hash ring
+    private ReentrantReadWriteLock membershipLock;
+    private ReentrantLock[] fileLocks;
+    private ReentrantLock rebalanceLock;
+    private Object stateMonitor;
+    private ExecutorService operationExecutor; // finishes operations and loads once acknowledged or timed out
 
     /**
      * Class constructor.
@@ -45,7 +115,33 @@ public class Index {
         this.controller = controller;
         this.minDstores = controller.getMinDstores();
         this.dstores = new CopyOnWriteArrayList<DstoreIndex>();
-        this.loadRecord = new ConcurrentHashMap<Connection, ConcurrentHashMap<String, CopyOnWriteArrayList<Integer>>>();
+        this.dstoresByPort = new ConcurrentHashMap<Integer, DstoreIndex>();
+        this.dstoresByConnection = new ConcurrentHashMap<Integer, DstoreIndex>();
+        this.files = new ConcurrentHashMap<String, FileEntry>();
+        this.loadRecords = new ConcurrentHashMap<Connection, LoadRecord>();
+        this.pendingOperations = new ConcurrentHashMap<String, PendingOperation>();
+        this.operationsInProgress = new AtomicInteger();
+        this.inFlightLoads = new ConcurrentHashMap<Connection, InFlightLoad>();
+        this.fencedFiles = new ConcurrentHashMap<String, Set<Integer>>();
+        this.rebalanceMoves = new ConcurrentHashMap<Integer, RebalanceInformation>();
+        this.listedFiles = new ConcurrentHashMap<Integer, Set<String>>();
+        this.filesChangedDuringList = null;
+        this.dirtyFiles = ConcurrentHashMap.newKeySet();
+        this.listRequired = true;
+        this.largestFilesize = new AtomicLong();
+        this.hashRing = (controller.getPlacementStrategy() == PlacementStrategy.RING) ? new HashRing(controller.getVirtualNodes()) : null;
+        this.membershipLock = new ReentrantReadWriteLock();
+        this.fileLocks = new ReentrantLock[FILE_LOCK_STRIPES];
+        for(int i = 0; i < FILE_LOCK_STRIPES; i++){
+            this.fileLocks[i] = new ReentrantLock();
+        }
+        this.rebalanceLock = new ReentrantLock();
+        this.stateMonitor = new Object();
+        this.operationExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "index-operation");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
 
@@ -62,30 +158,45 @@ public class Index {
      * 
      * @throws DstorePortInUseException If the port of the Dstore is already in use by another Dstore
      */
-    public synchronized void addDstore(Integer port, Connection connection) throws DstorePortInUseException{
-        // ERROR CHECKING //
+    public void addDstore(Integer port, Connection connection) throws DstorePortInUseException{
+        this.lockMembership();
+        try{
+            // ERROR CHECKING //
 
-        // Dstore Port already in use
-        if(this.getDstorePorts().contains(port)){
-            throw new DstorePortInUseException(port);
-        }
+            // Dstore Port already in use
+            if(this.dstoresByPort.containsKey(port)){
+                throw new DstorePortInUseException(port);
+            }
 
-        // CHECKS COMPLETE //
+            // CHECKS COMPLETE //
+
+            // adding the dstore to the list of dstores
+            DstoreIndex dstore = new DstoreIndex(port, connection);
+            this.dstores.add(dstore);
+            this.dstoresByPort.put(port, dstore);
+            this.dstoresByConnection.put(connection.getPort(), dstore);
+            if(this.hashRing != null){
+                this.hashRing.addDstore(port);
+            }
 
-        // adding the dstore to the list of dstores
-        this.dstores.add(new DstoreIndex(port, connection));
+            // files of the new Dstore are only known once it is listed
+            this.listRequired = true;
 
-        // logging
-        this.controller.handleEvent(new ServerConnectionEvent(ClientType.DSTORE, port));
+            // logging
+            this.controller.handleEvent(new ServerConnectionEvent(ClientType.DSTORE, port));
 
-        // rebalancing 
-        try{
-            // carrying out rebalance
-            //this.controller.getRebalancer().rebalance();
+            // rebalancing 
+            try{
+                // carrying out rebalance
+                //this.controller.getRebalancer().rebalance();
+            }
+            catch(Exception e){
+                // handling failure
+                this.controller.handleError(new RebalanceFailureException(e));
+            }
         }
-        catch(Exception e){
-            // handling failure
-            this.controller.handleError(new RebalanceFailureException(e));
+        finally{
+            this.unlockMembership();
         }
     }
 
@@ -94,9 +205,41 @@ public class Index {
      * 
      * @param port The port of the Dstore to be removed from the system (listen port).
      */
-    public synchronized void removeDstore(Connection dstore){
-        // removing the Dstore from the list of Dstores
-        this.dstores.remove(this.getIndexFromConnection(dstore));
+    public void removeDstore(Connection dstore){
+        this.lockMembership();
+        try{
+            DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+            // removing the Dstore from the list of Dstores
+            this.dstores.remove(dstoreIndex);
+
+            if(dstoreIndex != null){
+                this.dstoresByPort.remove(dstoreIndex.getPort());
+                this.dstoresByConnection.remove(dstoreIndex.getConnection().getPort());
+                if(this.hashRing != null){
+                    this.hashRing.removeDstore(dstoreIndex.getPort());
+                }
+
+                // files of the Dstore need to be replicated elsewhere
+                this.listRequired = true;
+
+                // removing the Dstore's files from the catalogue
+                for(String filename : dstoreIndex.getFiles()){
+                    this.removeReplica(filename, dstoreIndex.getPort());
+                }
+
+                // Dstore will no longer acknowledge its pending operations
+                for(PendingOperation operation : this.pendingOperations.values()){
+                    operation.acknowledge(dstoreIndex.getPort());
+                }
+            }
+        }
+        finally{
+            this.unlockMembership();
+        }
+
+        // waking threads waiting on the state of the system
+        this.signalStateChange();
     }
 
 
@@ -122,10 +265,8 @@ public class Index {
 
         // getting map of file names and sizes
         HashMap<String, Integer> files = new HashMap<String, Integer>();
-        for(DstoreIndex dstore : this.dstores){
-            for(DstoreFile file : dstore.getFiles()){
-                files.put(file.getFilename(), file.getFilesize());
-            }
+        for(FileEntry file : this.files.values()){
+            files.put(file.getFilename(), file.getFilesize());
         }
 
         // returning map
@@ -133,6 +274,25 @@ public class Index {
     }
 
 
+    /**
+     * Returns the entries of the files stored in the system, so that the files can be listed
+     * a chunk at a time.
+     * 
+     * The entries are not copied, so files stored or removed while they are being listed may
+     * or may not be included.
+     * 
+     * @return The entries of the files stored in the system.
+     * @throws NotEnoughDstoresException In the case where there are not enough Dstores connected.
+     */
+    public Collection<FileEntry> getFileEntries() throws Exception{
+        // not enough dstores
+        if(!this.hasEnoughDstores()){
+            throw new NotEnoughDstoresException();
+        }
+
+        return this.files.values();
+    }
+
     ///////////////////
     // STORING FILES //
     ///////////////////
@@ -146,33 +306,51 @@ public class Index {
      * @param filesize The size of the file being added in bytes.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the controller to handle the request.
      * @throws FileAlreadyExists If the file being stored already exists in the Index.
+     * @throws NetworkTimeoutException If the file is being moved by a rebalance that does not
+     * complete within the timeout.
      */
-    public synchronized ArrayList<Integer> startStoring(String filename, int filesize) throws Exception{
-        // ERROR CHECKING //
+    public ArrayList<Integer> startStoring(String filename, int filesize) throws Exception{
+        this.lockUnfencedFile(filename);
+        try{
+            // ERROR CHECKING //
 
-        // not enough dstores
-        if(!this.hasEnoughDstores()){
-            throw new NotEnoughDstoresException();
-        }
+            // not enough dstores
+            if(!this.hasEnoughDstores()){
+                throw new NotEnoughDstoresException();
+            }
 
-        // file already exists
-        if(this.hasFile(filename)){
-            throw new FileAlreadyExistsException(filename);
-        }
+            // file already exists
+            if(this.hasFile(filename)){
+                throw new FileAlreadyExistsException(filename);
+            }
 
-        // ADDING FILE //
+            // ADDING FILE //
 
-        // getting the list of dstores that the file needs to be stored on.
-        ArrayList<Integer> dstoresToStoreOn = this.getDstoresToStoreOn(this.controller.getMinDstores());
+            // getting the list of dstores that the file needs to be stored on.
+            ArrayList<Integer> dstoresToStoreOn = this.getDstoresToStoreOn(filename, this.controller.getMinDstores());
 
-        // adding dstores the file is stored on to the the index 
-        for(Integer port : dstoresToStoreOn){
-            // adding the file to the dstore state
-            this.getIndexFromPort(port).addFile(filename, filesize);
-        }
+            // adding the file to the catalogue
+            FileEntry file = new FileEntry(filename, filesize);
+            for(Integer port : dstoresToStoreOn){
+                file.setReplicaState(port, OperationState.STORE_IN_PROGRESS);
+            }
+            this.files.put(filename, file);
+            this.largestFilesize.accumulateAndGet(filesize, Math::max);
+
+            // adding the file to the views of the dstores it is stored on
+            for(Integer port : dstoresToStoreOn){
+                this.getIndexFromPort(port).addFile(filename, filesize);
+            }
 
-        // returning the list of dstores the file needs to be stored on
-        return dstoresToStoreOn;
+            // tracking the operation
+            this.startOperation(filename, OperationState.STORE_ACK_RECIEVED, dstoresToStoreOn);
+
+            // returning the list of dstores the file needs to be stored on
+            return dstoresToStoreOn;
+        }
+        finally{
+            this.unlockFile(filename);
+        }
     }
 
     /**
@@ -181,9 +359,20 @@ public class Index {
      * @param dstore The connection to the Dstore that the STORE_ACK was receieved from.
      * @param filename The filename referenced by the STORE_ACK.
      */
-    public synchronized void storeAckRecieved(Connection dstore, String filename){
-        // updatiing the dstore index
-        this.getIndexFromConnection(dstore).updateFileState(filename, OperationState.STORE_ACK_RECIEVED);
+    public void storeAckRecieved(Connection dstore, String filename){
+        this.lockFile(filename);
+        try{
+            DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+            // updatiing the state of the file on the dstore
+            this.setReplicaState(filename, dstoreIndex.getPort(), OperationState.STORE_ACK_RECIEVED);
+
+            // acknowledging the operation
+            this.acknowledgeOperation(dstoreIndex.getPort(), filename, OperationState.STORE_ACK_RECIEVED);
+        }
+        finally{
+            this.unlockFile(filename);
+        }
     }
 
     ///////////////////
@@ -196,93 +385,165 @@ public class Index {
      * @param connection The connection to the Client that sent the LOAD request.
      * @param filename The name of the file being requested.
      * @param isReload Boolean representing if this load operation is a LOAD or RELOAD.
+     * @param isTagged Boolean representing if the request was tagged. The Client's next request
+     * does not mean it has moved on from a tagged load, so tagged loads are not tracked.
      * @return The Dstore the file should be loaded from.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the controller to handle the request.
      * @throws FileDoesNotExistException If the file being requested is not stored within the Index.
      * @throws NoValidDstoresException If there are no Dstores left to try to load from (exhausted all possible Dstores).
      */
-    public synchronized int getDstoreToLoadFrom(Connection connection, String filename, boolean isReload) throws Exception{
+    public int getDstoreToLoadFrom(Connection connection, String filename, boolean isReload, boolean isTagged) throws Exception{
+        this.lockFile(filename);
+        try{
 
-        // ERROR CHECKING //
+            // ERROR CHECKING //
 
-        // not enough dstores
-        if(!this.hasEnoughDstores()){
-            throw new NotEnoughDstoresException();
-        }
+            // not enough dstores
+            if(!this.hasEnoughDstores()){
+                throw new NotEnoughDstoresException();
+            }
 
-        // file does not exist
-        if((!this.hasFile(filename) || !this.fileHasState(filename, OperationState.IDLE))){
-            throw new FileDoesNotExistException(filename);
-        }
+            // file does not exist
+            if((!this.hasFile(filename) || !this.fileHasState(filename, OperationState.IDLE))){
+                throw new FileDoesNotExistException(filename);
+            }
+
+            // GETTING DSTORE //
 
-        // GETTING DSTORE //
+            // list of all replicas
+            ArrayList<DstoreIndex> dstores = new ArrayList<DstoreIndex>();
+            for(Integer port : this.files.get(filename).getReplicas()){
+                DstoreIndex dstore = this.dstoresByPort.get(port);
+                if(dstore != null){
+                    dstores.add(dstore);
+                }
+            }
 
-        // list of all ports
-        ArrayList<DstoreIndex> dstores = this.getDstoresStoredOn(filename);
+            // load record for the connection
+            LoadRecord loadRecord = this.loadRecords.computeIfAbsent(connection, client -> new LoadRecord(LOAD_RECORD_EXPIRY * (long) this.controller.getTimeout()));
 
-        // load record for the connection
-        ConcurrentHashMap<String,CopyOnWriteArrayList<Integer>> fileLoadRecord = this.loadRecord.get(connection);
+            // LOAD command (or RELOAD of a file the Client has not recently loaded)
+            if(!isReload || !loadRecord.hasLoaded(filename)){
+                // selecting dstore to load from
+                DstoreIndex selected = this.selectReplica(filename, dstores);
 
-        // Load record is null (Client never performed a LOAD before)
-        if(fileLoadRecord == null){
-            // selecting port to load from
-            int selectedPort = dstores.get(0).getPort();
+                // placing/replacing the mapping in the load record (a RELOAD without a record 
+                // starts one, so that the next RELOAD moves on from the selected Dstore)
+                loadRecord.startLoad(filename, selected.getPort());
+
+                // returning the selected port
+                return isTagged ? selected.getPort() : this.startLoad(connection, selected);
+            }
+            // RELOAD command
+            else{
+                // Dstores that have not already been tried
+                dstores.removeIf(dstore -> loadRecord.hasAttempted(filename, dstore.getPort()));
 
-            // creating new file load record
-            this.loadRecord.put(connection, new ConcurrentHashMap<String,CopyOnWriteArrayList<Integer>>());
+                // throwing Exception if no suitable Dstore is found
+                if(dstores.isEmpty()){
+                    throw new NoValidDstoresException();
+                }
 
-            // adding this file to the load record.
-            this.loadRecord.get(connection).put(filename, new CopyOnWriteArrayList<Integer>());
+                // selecting dstore to load from
+                DstoreIndex selected = this.selectReplica(filename, dstores);
 
-            // adding the port to the fileLoadRecord
-            this.loadRecord.get(connection).get(filename).add(selectedPort);
+                // adding the port to the list of attempted ports
+                loadRecord.addAttempt(filename, selected.getPort());
 
-            // returning selected
-            return selectedPort;
+                // returning the selected port
+                return isTagged ? selected.getPort() : this.startLoad(connection, selected);
+            }
+        }
+        finally{
+            this.unlockFile(filename);
+        }
+    }
+
+    /**
+     * Chooses the replica a file is loaded from, using the Controller's replica selector.
+     * If the file is being moved, the Dstores that are not moving it are chosen from first.
+     * 
+     * @param filename The name of the file being loaded.
+     * @param dstores The Dstores storing the file.
+     * @return The Dstore the file is loaded from.
+     * @throws NoValidDstoresException If there are no Dstores to load from.
+     */
+    private DstoreIndex selectReplica(String filename, ArrayList<DstoreIndex> dstores) throws NoValidDstoresException{
+        // no dstores to choose from
+        if(dstores.isEmpty()){
+            throw new NoValidDstoresException();
         }
-        // Load record is non-null (Client has done performed a LOAD before)
-        else{
-            // LOAD command
-            if(!isReload){
-                // placing/replacing the mapping in the load record
-                fileLoadRecord.put(filename, new CopyOnWriteArrayList<Integer>());
 
-                // selecting port to load from
-                int selectedPort = dstores.get(0).getPort();
+        ReplicaSelector selector = this.controller.getReplicaSelector();
 
-                // adding the selected port to the load record
-                fileLoadRecord.get(filename).add(selectedPort);
+        // file being moved - loading from the Dstores that are not moving it first
+        Set<Integer> movingDstores = this.fencedFiles.get(filename);
+        if(movingDstores != null){
+            ArrayList<DstoreIndex> stillDstores = new ArrayList<DstoreIndex>(dstores);
+            stillDstores.removeIf(dstore -> movingDstores.contains(dstore.getPort()));
 
-                // returning the selected port
-                return selectedPort;
+            if(!stillDstores.isEmpty()){
+                return selector.select(stillDstores);
             }
-            // RELOAD command
-            else{
-                // list of attempted ports
-                CopyOnWriteArrayList<Integer> attemptedPorts = fileLoadRecord.get(filename);
+        }
 
-                // case where attempted is null
-                if(attemptedPorts == null){
-                    return dstores.get(0).getPort();
-                }
+        return selector.select(dstores);
+    }
 
-                // finding Dstore that has not already been tried
-                for(DstoreIndex dstore : dstores){
-                    if(!attemptedPorts.contains(dstore.getPort())){
-                        // adding the port to the list of attempted ports
-                        attemptedPorts.add(dstore.getPort());
+    /**
+     * Records that a Client has been sent to a Dstore to load a file. The load is in flight 
+     * until the Client sends its next request, disconnects, or the timeout passes.
+     * 
+     * @param connection The connection to the Client.
+     * @param dstore The Dstore the file is being loaded from.
+     * @return The port of the Dstore.
+     */
+    private int startLoad(Connection connection, DstoreIndex dstore){
+        InFlightLoad load = new InFlightLoad(dstore);
 
-                        // returning the port
-                        return dstore.getPort();
-                    }
-                }
+        // finishing the Client's previous load (if not already finished)
+        InFlightLoad previousLoad = this.inFlightLoads.put(connection, load);
+        if(previousLoad != null){
+            previousLoad.finish(previousLoad.getElapsedTime());
+        }
 
-                // throwing Exception if no suitable Dstore is found
-                throw new NoValidDstoresException();
+        // load no longer counted as in flight after the timeout
+        CompletableFuture.delayedExecutor(this.controller.getTimeout(), TimeUnit.MILLISECONDS, this.operationExecutor).execute(() -> {
+            if(this.inFlightLoads.remove(connection, load)){
+                load.finish(-1);
             }
+        });
+
+        return dstore.getPort();
+    }
+
+    /**
+     * Finishes the load a Client is in the middle of (if any), as the Client has sent 
+     * another request or disconnected.
+     * 
+     * @param connection The connection to the Client.
+     * @param succeeded True if the load succeeded, false if it failed (the Client sent a
+     * RELOAD), in which case the Dstore is recorded as taking the full timeout.
+     */
+    public void finishLoad(Connection connection, boolean succeeded){
+        InFlightLoad load = this.inFlightLoads.remove(connection);
+
+        if(load != null){
+            load.finish(succeeded ? load.getElapsedTime() : this.controller.getTimeout());
         }
     }
 
+    /**
+     * Removes the load state of a Client that has disconnected (finishing the load it was
+     * in the middle of, and removing its load record).
+     * 
+     * @param connection The connection to the Client.
+     */
+    public void removeClient(Connection connection){
+        this.finishLoad(connection, true);
+        this.loadRecords.remove(connection);
+    }
+
     /**
      * Gathers the size of a file stored in the Index.
      * 
@@ -290,14 +551,13 @@ public class Index {
      * @return The size of the searched file in bytes.
      * @throws Exception If the file is not stored in the Index.
      */
-    public synchronized int getFileSize(String filename) throws Exception{
-        // file exists
-        if(this.hasFile(filename)){
-            // gathering a dstore the file is stored on
-            int port = this.getDstoresStoredOn(filename).get(0).getPort();
+    public int getFileSize(String filename) throws Exception{
+        FileEntry file = this.files.get(filename);
 
+        // file exists
+        if(file != null){
             // returning the size of the file
-            return this.getIndexFromPort(port).getFile(filename).getFilesize();
+            return file.getFilesize();
         }
         // file does not exist
         else{
@@ -317,36 +577,48 @@ public class Index {
      * @param file The file being removed.
      * @throws NotEnoughDstoresException If there are not enough Dstores connected to the controller to handle the request.
      * @throws FileDoesNotExistException If the file being requested is not stored within the Index.
+     * @throws NetworkTimeoutException If the file is being moved by a rebalance that does not
+     * complete within the timeout.
      */
-    public synchronized ArrayList<Connection> startRemoving(String filename) throws Exception{
+    public ArrayList<Connection> startRemoving(String filename) throws Exception{
+        this.lockUnfencedFile(filename);
+        try{
 
-        // ERROR CHECKING //
+            // ERROR CHECKING //
 
-        // not enough dstores
-        if(!this.hasEnoughDstores()){
-            throw new NotEnoughDstoresException();
-        }
+            // not enough dstores
+            if(!this.hasEnoughDstores()){
+                throw new NotEnoughDstoresException();
+            }
 
-        // file does not exist
-        if((!this.hasFile(filename) || !this.fileHasState(filename, OperationState.IDLE))){
-            throw new FileDoesNotExistException(filename);
-        }
+            // file does not exist
+            if((!this.hasFile(filename) || !this.fileHasState(filename, OperationState.IDLE))){
+                throw new FileDoesNotExistException(filename);
+            }
 
-        // getting the list of dstores the file is stored on
-        ArrayList<DstoreIndex> dstores = this.getDstoresStoredOn(filename);
-        ArrayList<Connection> connections = new ArrayList<Connection>();
+            // getting the list of dstores the file is stored on
+            ArrayList<DstoreIndex> dstores = this.getDstoresStoredOn(filename);
+            ArrayList<Connection> connections = new ArrayList<Connection>();
+            ArrayList<Integer> ports = new ArrayList<Integer>();
 
-        // updating the states of the dstores
-        for(DstoreIndex dstore : dstores){
-            // updating the dstore state
-            dstore.updateFileState(filename, OperationState.REMOVE_IN_PROGRESS);
+            // updating the state of the file
+            this.files.get(filename).setState(OperationState.REMOVE_IN_PROGRESS);
 
-            // adding the connection to the list
-            connections.add(dstore.getConnection());
-        }
+            for(DstoreIndex dstore : dstores){
+                // adding the connection to the list
+                connections.add(dstore.getConnection());
+                ports.add(dstore.getPort());
+            }
+
+            // tracking the operation
+            this.startOperation(filename, OperationState.REMOVE_ACK_RECIEVED, ports);
 
-        // returning the dstores the file is to be removed from
-        return connections;
+            // returning the dstores the file is to be removed from
+            return connections;
+        }
+        finally{
+            this.unlockFile(filename);
+        }
     }
 
     /**
@@ -355,9 +627,20 @@ public class Index {
      * @param dstore The Connection for the Dstore that the REMOVE_ACK was recieved from.
      * @param filename The name of the file referenced by the REMOVE_ACK.
      */
-    public synchronized void removeAckRecieved(Connection dstore, String filename){
-        // updating the dstore index
-        this.getIndexFromConnection(dstore).updateFileState(filename, OperationState.REMOVE_ACK_RECIEVED);
+    public void removeAckRecieved(Connection dstore, String filename){
+        this.lockFile(filename);
+        try{
+            DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+            // updating the state of the file on the dstore
+            this.setReplicaState(filename, dstoreIndex.getPort(), OperationState.REMOVE_ACK_RECIEVED);
+
+            // acknowledging the operation
+            this.acknowledgeOperation(dstoreIndex.getPort(), filename, OperationState.REMOVE_ACK_RECIEVED);
+        }
+        finally{
+            this.unlockFile(filename);
+        }
     }
 
     //////////////////////////
@@ -365,36 +648,111 @@ public class Index {
     //////////////////////////
 
     /**
-     * Waits for the state of the given file across all Dstores to match the provided expected state. Will
-     * only wait for the provided amount of time.
+     * Starts tracking an operation on a file. The operation completes once all of the 
+     * given Dstores have acknowledged it, or times out after the Controller's timeout.
      * 
-     * @param filename The name of the file being tracked.
-     * @param expectedState The expected state of the file.
-     * @param timeout The timeout for the tracking.
-     * @throws OperationTimeoutException When the state of the file does not match the expected state within the timeout.
+     * @param filename The name of the file the operation is on.
+     * @param expectedState The state the file will be in once the operation is acknowledged.
+     * @param dstores The ports of the Dstores that must acknowledge the operation.
      */
-    public void waitForFileState(String filename, OperationState expectedState, int timeout) throws Exception{
+    private void startOperation(String filename, OperationState expectedState, ArrayList<Integer> dstores){
+        PendingOperation operation = new PendingOperation(filename, expectedState, dstores);
 
-        // Waiting for File to have State //
-        
-        long timeoutStamp = System.currentTimeMillis() + timeout;
+        // file changed while the Dstores may be being listed
+        this.recordChange(filename);
 
-        while(!this.fileHasState(filename, expectedState)){
-            if(System.currentTimeMillis() < timeoutStamp){
-                Thread.onSpinWait();
-            }
-            else{
+        // completing the operation once acknowledged, or after the timeout
+        operation.setCompletion(operation.getAcknowledgement()
+            .orTimeout(this.controller.getTimeout(), TimeUnit.MILLISECONDS)
+            .handleAsync((result, error) -> {
                 // timeout occured
-                this.handleOperationTimeout(filename, expectedState);
+                if(error != null){
+                    this.finishOperation(operation, false);
+                    throw new CompletionException(new NetworkTimeoutException(filename, expectedState));
+                }
+
+                // operation acknowledged
+                this.finishOperation(operation, true);
+                return null;
+            }, this.operationExecutor));
+
+        this.operationsInProgress.incrementAndGet();
+        this.pendingOperations.put(filename, operation);
+    }
+
+    /**
+     * Records the acknowledgement of an operation by a Dstore.
+     * 
+     * @param dstore The port of the Dstore that acknowledged the operation.
+     * @param filename The name of the file the operation is on.
+     * @param state The state the acknowledgement puts the file in.
+     */
+    private void acknowledgeOperation(int dstore, String filename, OperationState state){
+        PendingOperation operation = this.pendingOperations.get(filename);
+
+        // ignoring acknowledgements for operations not in progress
+        if(operation != null && operation.getExpectedState() == state){
+            operation.acknowledge(dstore);
+        }
+    }
+
+    /**
+     * Updates the index once an operation has been acknowledged or has timed out, and
+     * wakes the threads waiting on the state of the system.
+     * 
+     * @param operation The operation that has finished.
+     * @param acknowledged True if the operation was acknowledged, false if it timed out.
+     */
+    private void finishOperation(PendingOperation operation, boolean acknowledged){
+        this.lockFile(operation.getFilename());
+        try{
+            this.recordChange(operation.getFilename());
+            this.dirtyFiles.add(operation.getFilename());
 
-                // throwing exception
-                throw new NetworkTimeoutException(filename, expectedState);
+            if(acknowledged){
+                this.handleOperationComplete(operation.getFilename(), operation.getExpectedState());
+            }
+            else{
+                this.handleOperationTimeout(operation.getFilename(), operation.getExpectedState());
             }
+
+            this.operationsInProgress.decrementAndGet();
         }
+        finally{
+            this.unlockFile(operation.getFilename());
+        }
+
+        this.signalStateChange();
+    }
+
+    /**
+     * Waits for the operation on the given file to complete (i.e., for the file to reach the
+     * provided expected state across all Dstores). The thread is blocked (rather than polling)
+     * until the operation is acknowledged or times out.
+     * 
+     * @param filename The name of the file being tracked.
+     * @param expectedState The expected state of the file.
+     * @throws NetworkTimeoutException When the state of the file does not match the expected state within the timeout.
+     */
+    public void waitForFileState(String filename, OperationState expectedState) throws Exception{
+        PendingOperation operation = this.pendingOperations.get(filename);
 
-        // Operation Complete Within Timeout //
+        // no such operation in progress
+        if(operation == null || operation.getExpectedState() != expectedState){
+            throw new NetworkTimeoutException(filename, expectedState);
+        }
 
-        this.handleOperationComplete(filename, expectedState);
+        try{
+            // Waiting for the operation to complete //
+            operation.getCompletion().join();
+        }
+        catch(CompletionException e){
+            throw (Exception) e.getCause();
+        }
+        finally{
+            // operation no longer tracked
+            this.pendingOperations.remove(filename, operation);
+        }
     }
 
     /**
@@ -403,26 +761,21 @@ public class Index {
      * @param filename The name of the file that the operation was completed on.
      * @param stateFileIsIn The state that the file is in now that the operation has completed.
      */
-    private synchronized void handleOperationComplete(String filename, OperationState stateFileIsIn){
+    private void handleOperationComplete(String filename, OperationState stateFileIsIn){
         
         // STORE 
         if(stateFileIsIn == OperationState.STORE_ACK_RECIEVED){
             // updating file state to the new state
-            for(DstoreIndex dstore : this.dstores){
-                for(DstoreFile file : dstore.getFiles()){
-                    if(file.getFilename().equals(filename)){
-                        dstore.updateFileState(filename, OperationState.IDLE);
-                    }
-                }
+            FileEntry file = this.files.get(filename);
+            if(file != null){
+                file.setState(OperationState.IDLE);
             }
         }
 
         // REMOVE
         else if(stateFileIsIn == OperationState.REMOVE_ACK_RECIEVED){
             // removing the file from the index
-            for(DstoreIndex dstore : this.dstores){
-                dstore.removeFile(filename);
-            }
+            this.removeFile(filename);
         }
     }
 
@@ -432,21 +785,17 @@ public class Index {
      * @param filename The filename for which the operation did not complete.
      * @param expectedState The state the file should have been in if the operation had compeleted.
      */
-    private synchronized void handleOperationTimeout(String filename, OperationState expectedState){
+    private void handleOperationTimeout(String filename, OperationState expectedState){
         // STORE
         if(expectedState == OperationState.STORE_ACK_RECIEVED){
             // removing the file from the index
-            for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
-                dstore.removeFile(filename);
-            }
+            this.removeFile(filename);
         }
 
         // REMOVE
         else if(expectedState == OperationState.REMOVE_ACK_RECIEVED){
             // removing the file from the index
-            for(DstoreIndex dstore : this.dstores){
-                dstore.removeFile(filename);
-            }
+            this.removeFile(filename);
         }
     }
 
@@ -459,8 +808,10 @@ public class Index {
     /**
      * Starts a system rebalance.
      * 
-     * Disables the Controller request handler, waits for the system to become
-     * IDLE and updates the index to REBALANCE_LIST_IN_PROGRESS.
+     * In an offline rebalance, disables the Controller request handler and waits for the 
+     * system to become IDLE. In an online rebalance, client requests continue to be served, 
+     * and the files they change while the Dstores are listed are recorded. Updates the index
+     * to REBALANCE_LIST_IN_PROGRESS.
      * 
      * @throws NotEnoughDstoresException If there are not enough Dstores connected
      * to the system to carry out the rebalance operation.
@@ -469,30 +820,62 @@ public class Index {
      * @throws NetworkTimeoutException If the system does not become idle within
      * the timeout.
      */
-    public synchronized void startRebalanceList() throws NetworkException{
-        // ERROR CHECKING //
+    public void startRebalanceList() throws NetworkException{
+        // only one rebalance can be started at once (file operations are not blocked)
+        this.rebalanceLock.lock();
+        try{
+            // ERROR CHECKING //
 
-        // not enough dstores
-        if(!this.hasEnoughDstores()){
-            throw new NotEnoughDstoresException();
-        }
+            // not enough dstores
+            if(!this.hasEnoughDstores()){
+                throw new NotEnoughDstoresException();
+            }
 
-        // rebalance already in progress
-        if(this.rebalanceInProgress()){
-            throw new RebalanceAlreadyInProgressException();
-        }
+            // rebalance already in progress
+            if(this.rebalanceInProgress()){
+                throw new RebalanceAlreadyInProgressException();
+            }
 
-        // CHECKS COMPLETE //
+            // CHECKS COMPLETE //
+
+            // OFFLINE - holding client requests until the system has been listed
+            if(this.controller.getRebalanceMode() == RebalanceMode.OFFLINE){
+                // disabling controller request handler
+                this.controller.getRequestHandler().disable();
 
-        // disabling controller request handler
-        this.controller.getRequestHandler().disable();
+                // waiting for system to be idle
+                try{
+                    this.waitForSystemIdle(this.controller.getTimeout());
+                }
+                catch(NetworkTimeoutException e){
+                    // rebalance not started - serving client requests again
+                    this.controller.getRequestHandler().enable();
+                    throw e;
+                }
+            }
+            // ONLINE - recording the files changed by requests served while the Dstores are listed
+            else{
+                this.filesChangedDuringList = ConcurrentHashMap.newKeySet();
+            }
 
-        // waiting for system to be idle
-        this.controller.getIndex().waitForSystemOperationState(OperationState.IDLE, this.controller.getTimeout());
+            // listing covers all changes made so far
+            this.listRequired = false;
+            this.dirtyFiles.clear();
+            this.listedFiles.clear();
 
-        // updating state of all Dstores in the index
-        for(DstoreIndex dstore : this.dstores){
-            dstore.setRebalanceState(RebalanceState.REBALANCE_LIST_IN_PROGRESS);
+            // updating state of all Dstores in the index
+            this.lockMembership();
+            try{
+                for(DstoreIndex dstore : this.dstores){
+                    dstore.setRebalanceState(RebalanceState.REBALANCE_LIST_IN_PROGRESS);
+                }
+            }
+            finally{
+                this.unlockMembership();
+            }
+        }
+        finally{
+            this.rebalanceLock.unlock();
         }
     }
 
@@ -504,62 +887,161 @@ public class Index {
      * @param files A list of filenames mapped to their filesize (the files
      * stored on this Dstore).
      */
-    public synchronized void rebalanceListRecieved(Connection dstore, HashMap<String, Integer> files){
-        // updating the dstore index state
-        this.getIndexFromConnection(dstore).setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
-
-        // updating the DstoreIndex for this Dstore
-        this.getIndexFromConnection(dstore).setFiles(files);
-    }
+    public void rebalanceListRecieved(Connection dstore, HashMap<String, Integer> files){
+        this.lockMembership();
+        try{
+            // updating the dstore index state
+            this.getIndexFromConnection(dstore).setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
 
-    /**
-     * Starts the move stage of a system rebalance. Updates the Index
-     * to REBALANCE_MOVE_IN_PROGRESS.
-     */
-    public synchronized void startRebalanceMove(){
-        // updating index
-        for(DstoreIndex dstore : this.dstores){
-            dstore.setRebalanceState(RebalanceState.REBALANCE_MOVE_IN_PROGRESS);
+            // updating the files stored on this Dstore
+            this.setDstoreFiles(this.getIndexFromConnection(dstore), files);
+        }
+        finally{
+            this.unlockMembership();
         }
+
+        // waking threads waiting on the state of the system
+        this.signalStateChange();
     }
 
     /**
-     * Updates the index after a REBALANCE_COMPLETE message was receieved from a Dstore.
+     * Updates the index after a chunk of a file list (LIST_CHUNK) was recieved from a
+     * Dstore during a system rebalance. The files in the chunk are added to the Dstore, 
+     * and the files the Dstore no longer stores are removed once its whole list has been
+     * recieved.
      * 
-     * @param dstore The Dstore Conectio that the message was receieved from.
+     * @param dstore The Connection to the Dstore that the chunk was recieved from.
+     * @param files A list of filenames mapped to their filesize (some of the files
+     * stored on this Dstore).
      */
-    public synchronized void rebalanceCompleteReceived(Connection dstore){
-        // updating the dstore index state
-        this.getIndexFromConnection(dstore).setRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED);
+    public void rebalanceListChunkRecieved(Connection dstore, HashMap<String, Integer> files){
+        this.lockMembership();
+        try{
+            DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+            // Dstore no longer in the system
+            if(dstoreIndex == null){
+                return;
+            }
+
+            // updating the files stored on this Dstore
+            this.addDstoreFiles(dstoreIndex, files);
+
+            // remembering the files listed so far
+            this.listedFiles.computeIfAbsent(dstoreIndex.getPort(), port -> ConcurrentHashMap.newKeySet()).addAll(files.keySet());
+        }
+        finally{
+            this.unlockMembership();
+        }
     }
 
     /**
-     * Waits for all Dstores in the system to have the provided Rebalance State.
+     * Updates the index after the end of a chunked file list (LIST_END) was recieved from
+     * a Dstore during a system rebalance.
      * 
-     * @param rebalanceState The expected Rebalance State.
-     * @param timeout The timeout to wait for system to have the expected rebalance state.
-     * @throws NetworkTimeoutException Thrown if the expected rebalance state is not reached 
-     * within the timeout.
+     * @param dstore The Connection to the Dstore that the LIST_END was recieved from.
      */
-    public void waitForRebalanceState(RebalanceState rebalanceState, int timeout) throws NetworkTimeoutException{
-        
-        long timeoutStamp = System.currentTimeMillis() + timeout;
+    public void rebalanceListEndRecieved(Connection dstore){
+        this.lockMembership();
+        try{
+            DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
 
-        // waiting until rebalance state is list received
-        while(!this.systemHasRebalanceState(rebalanceState)){
-            if(System.currentTimeMillis() < timeoutStamp){
-                Thread.onSpinWait();
+            // Dstore no longer in the system
+            if(dstoreIndex == null){
+                return;
             }
-            else{
-                // timeout occured
-                this.handleRebalanceTimeout(rebalanceState);
 
-                // throwing exception
-                throw new NetworkTimeoutException(rebalanceState);
-            }
+            // updating the dstore index state
+            dstoreIndex.setRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED);
+
+            // removing the files that were not listed
+            Set<String> listed = this.listedFiles.remove(dstoreIndex.getPort());
+            this.removeUnlistedFiles(dstoreIndex, (listed == null) ? Set.of() : listed);
+        }
+        finally{
+            this.unlockMembership();
         }
 
-        // Rebalance Stage Completed Within Timeout //
+        // waking threads waiting on the state of the system
+        this.signalStateChange();
+    }
+
+    /**
+     * Starts the move stage of a system rebalance. Updates the Index
+     * to REBALANCE_MOVE_IN_PROGRESS.
+     * 
+     * In an online rebalance, the files being moved are fenced until the Dstores
+     * moving them have completed.
+     * 
+     * @param rebalanceInformation The files each Dstore is sending and removing.
+     * @throws RebalancePlacementChangedException If a file to be moved was changed by a
+     * client request after the Dstores were listed.
+     */
+    public void startRebalanceMove(HashMap<Integer, RebalanceInformation> rebalanceInformation) throws RebalancePlacementChangedException{
+        this.lockMembership();
+        try{
+            // ONLINE - fencing the files being moved
+            if(this.controller.getRebalanceMode() == RebalanceMode.ONLINE){
+                this.fenceFiles(rebalanceInformation);
+            }
+
+            // updating index
+            for(DstoreIndex dstore : this.dstores){
+                dstore.setRebalanceState(RebalanceState.REBALANCE_MOVE_IN_PROGRESS);
+            }
+        }
+        finally{
+            this.unlockMembership();
+        }
+    }
+
+    /**
+     * Updates the index after a REBALANCE_COMPLETE message was receieved from a Dstore.
+     * 
+     * @param dstore The Dstore Conectio that the message was receieved from.
+     */
+    public void rebalanceCompleteReceived(Connection dstore){
+        DstoreIndex dstoreIndex = this.getIndexFromConnection(dstore);
+
+        // ONLINE - switching the files moved by the Dstore to their new placement
+        RebalanceInformation moves = this.rebalanceMoves.remove(dstoreIndex.getPort());
+        if(moves != null){
+            this.lockMembership();
+            try{
+                this.applyRebalanceMoves(dstoreIndex.getPort(), moves);
+            }
+            finally{
+                this.unlockMembership();
+            }
+        }
+
+        // updating the dstore index state
+        dstoreIndex.setRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED);
+
+        // waking threads waiting on the state of the system
+        this.signalStateChange();
+    }
+
+    /**
+     * Waits for all Dstores in the system to have the provided Rebalance State.
+     * 
+     * @param rebalanceState The expected Rebalance State.
+     * @param timeout The timeout to wait for system to have the expected rebalance state.
+     * @throws NetworkTimeoutException Thrown if the expected rebalance state is not reached 
+     * within the timeout.
+     */
+    public void waitForRebalanceState(RebalanceState rebalanceState, int timeout) throws NetworkTimeoutException{
+
+        // waiting until rebalance state is list received
+        if(!this.awaitState(() -> this.systemHasRebalanceState(rebalanceState), timeout)){
+            // timeout occured
+            this.handleRebalanceTimeout(rebalanceState);
+
+            // throwing exception
+            throw new NetworkTimeoutException(rebalanceState);
+        }
+
+        // Rebalance Stage Completed Within Timeout //
 
         this.handleRebalanceComplete();
     }
@@ -567,14 +1049,27 @@ public class Index {
     /**
      * Handles the completion of a System rebalance.
      */
-    private synchronized void handleRebalanceComplete(){
-        // enabling controller request handler
-        this.controller.getRequestHandler().enable();
+    private void handleRebalanceComplete(){
+        this.lockMembership();
+        try{
+            // enabling controller request handler
+            this.controller.getRequestHandler().enable();
 
-        // resetting the state of the index
-        for(DstoreIndex dstore : this.dstores){
-            dstore.setRebalanceState(RebalanceState.IDLE);
+            // resetting the state of the index
+            for(DstoreIndex dstore : this.dstores){
+                dstore.setRebalanceState(RebalanceState.IDLE);
+            }
+            this.listedFiles.clear();
+
+            // lifting the fences of an online rebalance
+            this.clearRebalanceMoves();
+        }
+        finally{
+            this.unlockMembership();
         }
+
+        // waking threads waiting on fenced files
+        this.signalStateChange();
     }
 
     /**
@@ -585,13 +1080,328 @@ public class Index {
      * within the timeout.
      */
     private void handleRebalanceTimeout(RebalanceState expectedRebalancetate){
-        // enabling controller request handler
-        this.controller.getRequestHandler().enable();
+        this.lockMembership();
+        try{
+            // placement of the files unknown - listing the Dstores in the next rebalance
+            this.listRequired = true;
+
+            // enabling controller request handler
+            this.controller.getRequestHandler().enable();
+
+            // resetting the state of the index
+            for(DstoreIndex dstore : this.dstores){
+                dstore.setRebalanceState(RebalanceState.IDLE);
+            }
+            this.listedFiles.clear();
+
+            // lifting the fences of an online rebalance
+            this.clearRebalanceMoves();
+        }
+        finally{
+            this.unlockMembership();
+        }
+
+        // waking threads waiting on fenced files
+        this.signalStateChange();
+    }
+
+
+    /**
+     * Abandons a rebalance whose Dstores could not all be instructed, resetting the Index
+     * as if the rebalance had timed out.
+     */
+    public void abandonRebalance(){
+        this.handleRebalanceTimeout(RebalanceState.REBALANCE_COMPLETE_RECIEVED);
+    }
+
+
+    /////////////////////////////
+    // INCREMENTAL REBALANCING //
+    /////////////////////////////
+
 
-        // resetting the state of the index
+    /**
+     * Starts an incremental rebalance (one planned from the Index rather than from
+     * the file lists of the Dstores).
+     * 
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected
+     * to the system to carry out the rebalance operation.
+     * @throws RebalanceAlreadyInProgressException If there is already a rebalance 
+     * operation in progess.
+     */
+    public void startIncrementalRebalance() throws NetworkException{
+        this.rebalanceLock.lock();
+        try{
+            // not enough dstores
+            if(!this.hasEnoughDstores()){
+                throw new NotEnoughDstoresException();
+            }
+
+            // rebalance already in progress
+            if(this.rebalanceInProgress()){
+                throw new RebalanceAlreadyInProgressException();
+            }
+
+            // claiming the rebalance while it is planned (so no other rebalance can start)
+            this.lockMembership();
+            try{
+                for(DstoreIndex dstore : this.dstores){
+                    dstore.setRebalanceState(RebalanceState.REBALANCE_PLANNING);
+                }
+            }
+            finally{
+                this.unlockMembership();
+            }
+        }
+        finally{
+            this.rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Finishes an incremental rebalance. If the rebalance ended before the Dstores were 
+     * instructed (the system was balanced, or the rebalance could not be started), the
+     * claim on the rebalance is released. Otherwise, the Index has already been reset
+     * by the rebalance completing or timing out.
+     */
+    public void finishIncrementalRebalance(){
+        this.lockMembership();
+        try{
+            for(DstoreIndex dstore : this.dstores){
+                if(dstore.getRebalanceState() == RebalanceState.REBALANCE_PLANNING){
+                    dstore.setRebalanceState(RebalanceState.IDLE);
+                }
+            }
+        }
+        finally{
+            this.unlockMembership();
+        }
+
+        // waking threads waiting on the state of the system
+        this.signalStateChange();
+    }
+
+    /**
+     * Takes the files that have changed since the last rebalance, so that changes made
+     * from now on are recorded for the next one.
+     * 
+     * @return The files that have changed.
+     */
+    public Set<String> takeDirtyFiles(){
+        Set<String> taken = ConcurrentHashMap.newKeySet();
+
+        for(String filename : this.dirtyFiles){
+            if(this.dirtyFiles.remove(filename)){
+                taken.add(filename);
+            }
+        }
+
+        return taken;
+    }
+
+    /**
+     * Records files as changed again (e.g., after an incremental rebalance of them failed).
+     * 
+     * @param filenames The files that have changed.
+     */
+    public void addDirtyFiles(Collection<String> filenames){
+        this.dirtyFiles.addAll(filenames);
+    }
+
+    /**
+     * Determines if the system is still balanced after changes to the given files. Only the
+     * replicas of the changed files and the file counts of the Dstores are checked, so the 
+     * cost depends on the amount of change rather than the number of files.
+     * 
+     * With ring placement, the changed files must be stored on the Dstores that follow them
+     * on the ring, and the loads of the Dstores are not checked.
+     * 
+     * @param changedFiles The files that have changed since the last rebalance.
+     * @return True if the system is balanced, false if not.
+     */
+    public boolean isBalanced(Collection<String> changedFiles){
+        // changed files stored on the wrong number of Dstores
+        for(String filename : changedFiles){
+            FileEntry file = this.files.get(filename);
+
+            if(file != null && file.hasState(OperationState.IDLE) && file.getReplicas().size() != this.minDstores){
+                return false;
+            }
+
+            // changed files not stored on their Dstores on the ring
+            if(file != null && this.hashRing != null && file.hasState(OperationState.IDLE) && 
+               !this.hashRing.getDstores(filename, this.minDstores).containsAll(file.getReplicas())){
+                return false;
+            }
+        }
+
+        // files placed by the ring - loads are not balanced
+        if(this.hashRing != null){
+            return true;
+        }
+
+        // files not spread evenly across the Dstores
+        PlacementPolicy policy = this.controller.getPlacementPolicy();
+        long minLoad = Long.MAX_VALUE;
+        long maxLoad = Long.MIN_VALUE;
         for(DstoreIndex dstore : this.dstores){
-            dstore.setRebalanceState(RebalanceState.IDLE);
+            long load = policy.getDstoreLoad(dstore.getFiles().size(), dstore.getStoredBytes());
+
+            minLoad = Math.min(minLoad, load);
+            maxLoad = Math.max(maxLoad, load);
+        }
+
+        return (maxLoad - minLoad <= policy.getTolerance(policy.getFileLoad(this.largestFilesize.get())));
+    }
+
+    /**
+     * Determines if the Dstores must be listed before the system can be rebalanced (because
+     * a Dstore has joined or left the system, or a rebalance did not complete).
+     * 
+     * @return True if the Dstores must be listed, false if not.
+     */
+    public boolean isListRequired(){
+        return this.listRequired;
+    }
+
+
+    ////////////////////////
+    // ONLINE REBALANCING //
+    ////////////////////////
+
+
+    /**
+     * Fences the files being moved by an online rebalance, so that no STORE or REMOVE
+     * is started on them until the Dstores moving them have completed. 
+     * 
+     * Must be called with the membership locked (so no operation is in progress on the
+     * files while they are checked and fenced).
+     * 
+     * @param rebalanceInformation The files each Dstore is sending and removing.
+     * @throws RebalancePlacementChangedException If a file is no longer idle on the Dstore
+     * moving it (it was changed by a client request after the Dstores were listed).
+     */
+    private void fenceFiles(HashMap<Integer, RebalanceInformation> rebalanceInformation) throws RebalancePlacementChangedException{
+        HashMap<String, Set<Integer>> movingDstores = new HashMap<String, Set<Integer>>();
+
+        for(Integer dstore : rebalanceInformation.keySet()){
+            // gathering the files moved by the Dstore
+            ArrayList<String> filesMoved = new ArrayList<String>(rebalanceInformation.get(dstore).getFilesToRemove());
+            for(FileToSend fileToSend : rebalanceInformation.get(dstore).getFilesToSend()){
+                filesMoved.add(fileToSend.filename);
+            }
+
+            for(String filename : filesMoved){
+                FileEntry file = this.files.get(filename);
+
+                // file changed since the Dstores were listed - plan no longer valid
+                if(file == null || !file.hasState(OperationState.IDLE) || !file.getReplicas().contains(dstore)){
+                    throw new RebalancePlacementChangedException(filename);
+                }
+
+                movingDstores.computeIfAbsent(filename, name -> ConcurrentHashMap.newKeySet()).add(dstore);
+            }
         }
+
+        // all files valid - fencing them
+        this.fencedFiles.putAll(movingDstores);
+        this.rebalanceMoves.putAll(rebalanceInformation);
+    }
+
+    /**
+     * Switches the files moved by a Dstore during an online rebalance to their new placement,
+     * and lifts the fence of each file that is no longer being moved by any Dstore.
+     * 
+     * Must be called with the membership locked.
+     * 
+     * @param dstore The port of the Dstore that completed its moves.
+     * @param moves The files the Dstore sent and removed.
+     */
+    private void applyRebalanceMoves(int dstore, RebalanceInformation moves){
+        // adding the Dstores the files were sent to
+        for(FileToSend fileToSend : moves.getFilesToSend()){
+            FileEntry file = this.files.get(fileToSend.filename);
+
+            for(Integer port : fileToSend.dStores){
+                DstoreIndex receiver = this.dstoresByPort.get(port);
+
+                if(file != null && receiver != null){
+                    file.setReplicaState(port, OperationState.IDLE);
+                    receiver.addFile(fileToSend.filename, fileToSend.filesize);
+                }
+            }
+
+            this.unfenceFile(fileToSend.filename, dstore);
+        }
+
+        // removing the files the Dstore removed
+        for(String filename : moves.getFilesToRemove()){
+            DstoreIndex remover = this.dstoresByPort.get(dstore);
+            if(remover != null){
+                remover.removeFile(filename);
+            }
+            this.removeReplica(filename, dstore);
+
+            this.unfenceFile(filename, dstore);
+        }
+    }
+
+    /**
+     * Records that a Dstore is no longer moving a file, lifting the file's fence if 
+     * no other Dstore is moving it.
+     * 
+     * @param filename The name of the file.
+     * @param dstore The port of the Dstore.
+     */
+    private void unfenceFile(String filename, int dstore){
+        Set<Integer> movingDstores = this.fencedFiles.get(filename);
+
+        if(movingDstores != null){
+            movingDstores.remove(dstore);
+
+            if(movingDstores.isEmpty()){
+                this.fencedFiles.remove(filename);
+            }
+        }
+    }
+
+    /**
+     * Lifts all fences and forgets the moves of the current rebalance (once it has completed
+     * or timed out - files whose moves did not complete are corrected by the next rebalance).
+     */
+    private void clearRebalanceMoves(){
+        this.fencedFiles.clear();
+        this.rebalanceMoves.clear();
+        this.filesChangedDuringList = null;
+    }
+
+    /**
+     * Records that a file was changed by a client request, if an online rebalance is
+     * listing the Dstores (the listed files of the Dstores may not include the change).
+     * 
+     * @param filename The name of the file.
+     */
+    private void recordChange(String filename){
+        Set<String> changedFiles = this.filesChangedDuringList;
+
+        if(changedFiles != null){
+            changedFiles.add(filename);
+        }
+    }
+
+    /**
+     * Determines if a file is being changed by a client request, or was changed while an
+     * online rebalance listed the Dstores. The Dstore file lists do not decide the placement
+     * of such files.
+     * 
+     * @param filename The name of the file.
+     * @return True if the file is being (or was) changed, false if not.
+     */
+    private boolean isChangingFile(String filename){
+        FileEntry file = this.files.get(filename);
+        Set<String> changedFiles = this.filesChangedDuringList;
+
+        return ((file != null && !file.hasState(OperationState.IDLE)) || (changedFiles != null && changedFiles.contains(filename)));
     }
 
 
@@ -605,7 +1415,7 @@ public class Index {
      * 
      * @return True if there are enough Dstores, false otherwise.
      */
-    private synchronized boolean hasEnoughDstores(){
+    private boolean hasEnoughDstores(){
         if(this.dstores.size() < this.minDstores){
             // not enough dstores
             return false;
@@ -622,16 +1432,8 @@ public class Index {
      * @param filename The file being checked.
      * @return True if the file is on the system, false otherwise
      */
-    private synchronized boolean hasFile(String filename){
-        for(DstoreIndex dstore : this.dstores){
-            if(dstore.hasFile(filename)){
-                // file found
-                return true;
-            }
-        }
-
-        // file not found.
-        return false;
+    private boolean hasFile(String filename){
+        return this.files.containsKey(filename);
     }
 
     /**
@@ -642,16 +1444,10 @@ public class Index {
      * @param state The state of the file.
      * @return True if the state of the file is the provided state, false if not.
      */
-    public synchronized boolean fileHasState(String filename, OperationState state){
-        for(DstoreIndex dstore : this.getDstoresStoredOn(filename)){
-            for(DstoreFile file : dstore.getFiles()){
-                if(file.getFilename().equals(filename) && file.getState() != state){
-                    return false;
-                }
-            }
-        }
+    public boolean fileHasState(String filename, OperationState state){
+        FileEntry file = this.files.get(filename);
 
-        return true;
+        return (file == null || file.hasState(state));
     }
 
     /**
@@ -661,16 +1457,8 @@ public class Index {
      * @return The DstoreIndex object associated wth the provided port, null if there 
      * was no match.
      */
-    public synchronized DstoreIndex getIndexFromPort(int port){
-        // findiing the matching DstoreIndex
-        for(DstoreIndex dstore : this.dstores){
-            if(dstore.getPort() == port){
-                return dstore;
-            }
-        }
-
-        // returning null if no match found
-        return null;
+    public DstoreIndex getIndexFromPort(int port){
+        return this.dstoresByPort.get(port);
     }
 
     /**
@@ -680,34 +1468,40 @@ public class Index {
      * @return The DstorerIndex object associated with the provided Connectoin object, null
      * if there was no match.
      */
-    public synchronized DstoreIndex getIndexFromConnection(Connection connection){
-        // finding the matching DstoreIndex
-        for(DstoreIndex dstore : this.dstores){
-            if(dstore.getConnection().getPort() == connection.getPort()){
-                return dstore;
-            }
-        }
-
-        // returning null if no match found
-        return null;
+    public DstoreIndex getIndexFromConnection(Connection connection){
+        return this.dstoresByConnection.get(connection.getPort());
     }
 
     /**
-     * Gets a list of Dstores that a file can be stored on. Returns only Dstores
-     * that will remain balanced after storing the file.
+     * Gets a list of Dstores that a file can be stored on. Returns the least loaded
+     * Dstores (as measured by the Controller's placement policy), or the Dstores that
+     * follow the file on the hash ring when files are placed on a ring.
      * 
+     * @param filename The name of the file being stored.
      * @param numberOfDstores The number of Dstoes to store on.
      * @return The list of Dstore ports that the new file can be stored on.
      */
-    public synchronized ArrayList<Integer> getDstoresToStoreOn(int numberOfDstores){
-        // sorting the dstores based on the number of files they contain
-        Collections.sort(this.dstores);
+    public ArrayList<Integer> getDstoresToStoreOn(String filename, int numberOfDstores){
+        // placing the file on the ring
+        if(this.hashRing != null){
+            return this.hashRing.getDstores(filename, numberOfDstores);
+        }
+
+        // reading the load of each dstore once (loads change as files are stored concurrently)
+        PlacementPolicy policy = this.controller.getPlacementPolicy();
+        ArrayList<long[]> loads = new ArrayList<long[]>(); // {load, port} of each dstore
+        for(DstoreIndex dstore : this.dstores){
+            loads.add(new long[]{policy.getDstoreLoad(dstore.getFiles().size(), dstore.getStoredBytes()), dstore.getPort()});
+        }
+
+        // sorting the dstores based on their load
+        loads.sort(Comparator.comparingLong(load -> load[0]));
 
         ArrayList<Integer> ports = new ArrayList<Integer>();
 
         // picking the first r dstores to store on
         for(int i =0; i < numberOfDstores; i++){
-            ports.add(this.dstores.get(i).getPort());
+            ports.add((int) loads.get(i)[1]);
         }
 
         // returning the list of dstores
@@ -720,17 +1514,23 @@ public class Index {
      * @param filename The name of the file being searched.
      * @return The list of DstoreIndexes that store the file.
      */
-    public synchronized ArrayList<DstoreIndex> getDstoresStoredOn(String filename){
+    public ArrayList<DstoreIndex> getDstoresStoredOn(String filename){
         ArrayList<DstoreIndex> indexes = new ArrayList<DstoreIndex>();
-        
-        // looping through all dstores and seeing if they contain the file
-        for(DstoreIndex dstore : this.dstores){
-            if(dstore.hasFile(filename)){
+        FileEntry file = this.files.get(filename);
+
+        // file not stored on the system.
+        if(file == null){
+            return indexes;
+        }
+
+        // gathering the dstores the file is replicated on
+        for(Integer port : file.getReplicas()){
+            DstoreIndex dstore = this.dstoresByPort.get(port);
+            if(dstore != null){
                 indexes.add(dstore);
             }
         }
 
-        // file not stored on the system.
         return indexes;
     }
 
@@ -738,8 +1538,8 @@ public class Index {
      * Gathers the file distribution for the system. The file distribution
      * is a mapping of Dstores to the files that are stored on them. 
      * 
-     * Note that this method does not take into account the state of the files
-     * stored on the Dstores.
+     * Files that are being stored or removed are not included, as their placement
+     * is decided by the operation.
      * 
      * @return A mapping of Dstores to the files stored on them.
      */
@@ -751,8 +1551,11 @@ public class Index {
         for(DstoreIndex dstore : this.dstores){
             HashMap<String, Integer> files = new HashMap<String, Integer>();
 
-            for(DstoreFile file : dstore.getFiles()){
-                files.put(file.getFilename(), file.getFilesize());
+            for(String filename : dstore.getFiles()){
+                FileEntry file = this.files.get(filename);
+                if(file != null && file.hasState(OperationState.IDLE)){
+                    files.put(filename, file.getFilesize());
+                }
             }
 
             fileDistribution.put(dstore.getPort(), files);
@@ -768,58 +1571,264 @@ public class Index {
      * @param fileDistribution The file distribution being set into the index.
      */
     public void setFileDistribution(HashMap<Integer, HashMap<String, Integer>> fileDistribution){
-        // iterating through file distribution
-        for(Integer dstore : fileDistribution.keySet()){
-            // setting the file list into the index
-            this.getIndexFromPort(dstore).setFiles(fileDistribution.get(dstore));
+        this.lockMembership();
+        try{
+            // iterating through file distribution
+            for(Integer dstore : fileDistribution.keySet()){
+                // setting the file list into the index
+                this.setDstoreFiles(this.getIndexFromPort(dstore), fileDistribution.get(dstore));
+            }
+        }
+        finally{
+            this.unlockMembership();
         }
     }
 
     /**
-     * Waits for the system to have the expected operation state. 
-     * The system has a particular state when all files acrosss all 
-     * dstores have the same state.
+     * Sets the files stored on a Dstore, updating the catalogue to match. The files
+     * are set as IDLE on the Dstore. Files being changed by client requests are left
+     * to those requests.
      * 
-     * @param timeout The length of time that will be waited for the system to 
-     * have the expected state.
-     * @throws NetworkTimeout If the system does not reach the expected state 
-     * within the timeout.
+     * @param dstore The Dstore the files are stored on.
+     * @param files The files stored on the Dstore, mapped to their sizes.
      */
-    public synchronized void waitForSystemOperationState(OperationState expectedState, int timeout) throws NetworkTimeoutException{
-        
-        long timeoutStamp = System.currentTimeMillis() + timeout;
+    private void setDstoreFiles(DstoreIndex dstore, HashMap<String, Integer> files){
+        // Dstore no longer in the system
+        if(dstore == null){
+            return;
+        }
+
+        this.removeUnlistedFiles(dstore, files.keySet());
+        this.addDstoreFiles(dstore, files);
+    }
 
-        // looping while system is not idle
-        while(!this.systemHasOperationState(expectedState)){
-            if(System.currentTimeMillis() < timeoutStamp){
-                // no timeout yet - need to wait
-                Thread.onSpinWait();
+    /**
+     * Removes the files that are no longer stored on a Dstore. Files being changed by 
+     * client requests are left to those requests.
+     * 
+     * @param dstore The Dstore the files were stored on.
+     * @param listed The names of the files still stored on the Dstore.
+     */
+    private void removeUnlistedFiles(DstoreIndex dstore, Set<String> listed){
+        for(String filename : new ArrayList<String>(dstore.getFiles())){
+            if(!listed.contains(filename) && !this.isChangingFile(filename)){
+                dstore.removeFile(filename);
+                this.removeReplica(filename, dstore.getPort());
             }
-            else{
-                // throwing exception
-                throw new NetworkTimeoutException(OperationState.IDLE);
+        }
+    }
+
+    /**
+     * Adds files stored on a Dstore, updating the catalogue to match. The files are set
+     * as IDLE on the Dstore. Files being changed by client requests are left to those
+     * requests.
+     * 
+     * @param dstore The Dstore the files are stored on.
+     * @param files The files stored on the Dstore, mapped to their sizes.
+     */
+    private void addDstoreFiles(DstoreIndex dstore, HashMap<String, Integer> files){
+        for(String filename : files.keySet()){
+            if(this.isChangingFile(filename)){
+                continue;
+            }
+
+            FileEntry file = this.files.computeIfAbsent(filename, name -> new FileEntry(name, files.get(name)));
+            file.setReplicaState(dstore.getPort(), OperationState.IDLE);
+            dstore.addFile(filename, file.getFilesize());
+            this.largestFilesize.accumulateAndGet(file.getFilesize(), Math::max);
+        }
+    }
+
+    /**
+     * Sets the state of a file on one of the Dstores it is stored on.
+     * 
+     * @param filename The name of the file.
+     * @param dstore The port of the Dstore.
+     * @param state The new state of the file on the Dstore.
+     */
+    private void setReplicaState(String filename, int dstore, OperationState state){
+        FileEntry file = this.files.get(filename);
+
+        if(file != null){
+            file.setReplicaState(dstore, state);
+        }
+    }
+
+    /**
+     * Removes a Dstore from the replicas of a file, removing the file from the catalogue
+     * if it is no longer stored on any Dstore.
+     * 
+     * @param filename The name of the file.
+     * @param dstore The port of the Dstore.
+     */
+    private void removeReplica(String filename, int dstore){
+        FileEntry file = this.files.get(filename);
+
+        if(file != null){
+            file.removeReplica(dstore);
+
+            if(file.hasNoReplicas()){
+                this.files.remove(filename);
+            }
+        }
+    }
+
+    /**
+     * Removes a file from the catalogue and from the Dstores it is stored on.
+     * 
+     * @param filename The name of the file.
+     */
+    private void removeFile(String filename){
+        FileEntry file = this.files.remove(filename);
+
+        if(file != null){
+            for(Integer port : file.getReplicas()){
+                DstoreIndex dstore = this.dstoresByPort.get(port);
+                if(dstore != null){
+                    dstore.removeFile(filename);
+                }
             }
         }
+    }
+
+    /**
+     * Waits for the system to be idle, i.e., for no STORE or REMOVE operation to be in 
+     * progress. Operations are counted as they start and finish, so the catalogue is not
+     * searched each time the state of the system changes.
+     * 
+     * @param timeout The length of time that will be waited for the system to 
+     * be idle.
+     * @throws NetworkTimeout If the system does not become idle within the timeout.
+     */
+    public void waitForSystemIdle(int timeout) throws NetworkTimeoutException{
+
+        // waiting while system is not idle
+        if(!this.awaitState(() -> this.operationsInProgress.get() == 0, timeout)){
+            // throwing exception
+            throw new NetworkTimeoutException(OperationState.IDLE);
+        }
 
         // System Is Idle Within Timeout //
     }
 
     /**
-     * Determines if the system has a particular operation state.
+     * Waits for a condition on the state of the system to hold. The condition is checked
+     * again each time the state of the system changes.
+     * 
+     * The calling thread must not hold any of the Index's locks.
      * 
-     * @param expectedState The expected state of the system.
-     * @return True if the system is idle, false if not.
+     * @param condition The condition being waited for.
+     * @param timeout The maximum time to wait in milliseconds.
+     * @return True if the condition holds, false if it did not hold within the timeout.
      */
-    private synchronized boolean systemHasOperationState(OperationState expectedState){
-        for(DstoreIndex dstore : this.dstores){
-            for(DstoreFile file : dstore.getFiles()){
-                if(file.getState() != expectedState){
+    private boolean awaitState(BooleanSupplier condition, long timeout){
+        long timeoutStamp = System.currentTimeMillis() + timeout;
+
+        synchronized(this.stateMonitor){
+            while(!condition.getAsBoolean()){
+                long remaining = timeoutStamp - System.currentTimeMillis();
+
+                // timeout occured
+                if(remaining <= 0){
                     return false;
                 }
+
+                // waiting to be notified of a change in state
+                try{
+                    this.stateMonitor.wait(remaining);
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return condition.getAsBoolean();
+                }
             }
+
+            return true;
         }
+    }
 
-        return true;
+    /**
+     * Wakes the threads waiting on the state of the system.
+     */
+    private void signalStateChange(){
+        synchronized(this.stateMonitor){
+            this.stateMonitor.notifyAll();
+        }
+    }
+
+    /////////////
+    // LOCKING //
+    /////////////
+
+    /**
+     * Locks a file for an operation. Operations on files in different stripes run in
+     * parallel, and all file operations exclude changes to the Dstores in the system.
+     * 
+     * @param filename The name of the file being locked.
+     */
+    private void lockFile(String filename){
+        this.membershipLock.readLock().lock();
+        this.getFileLock(filename).lock();
+    }
+
+    /**
+     * Locks a file for a STORE or REMOVE operation, first waiting for any rebalance
+     * moving the file to complete.
+     * 
+     * @param filename The name of the file being locked.
+     * @throws NetworkTimeoutException If the file is still being moved after the timeout.
+     */
+    private void lockUnfencedFile(String filename) throws NetworkTimeoutException{
+        while(true){
+            // waiting for the file to not be fenced
+            if(!this.awaitState(() -> !this.fencedFiles.containsKey(filename), this.controller.getTimeout())){
+                throw new NetworkTimeoutException(filename, OperationState.IDLE);
+            }
+
+            this.lockFile(filename);
+
+            // file not fenced before it was locked
+            if(!this.fencedFiles.containsKey(filename)){
+                return;
+            }
+
+            this.unlockFile(filename);
+        }
+    }
+
+    /**
+     * Unlocks a file locked by lockFile.
+     * 
+     * @param filename The name of the file being unlocked.
+     */
+    private void unlockFile(String filename){
+        this.getFileLock(filename).unlock();
+        this.membershipLock.readLock().unlock();
+    }
+
+    /**
+     * Locks the Index for a change to the Dstores in the system (or to all of their
+     * files). Waits for operations on files to finish, and excludes new ones.
+     */
+    private void lockMembership(){
+        this.membershipLock.writeLock().lock();
+    }
+
+    /**
+     * Unlocks the Index after a change to the Dstores in the system.
+     */
+    private void unlockMembership(){
+        this.membershipLock.writeLock().unlock();
+    }
+
+    /**
+     * Gathers the lock for the stripe a file belongs to.
+     * 
+     * @param filename The name of the file.
+     * @return The lock of the file's stripe.
+     */
+    private ReentrantLock getFileLock(String filename){
+        return this.fileLocks[Math.floorMod(filename.hashCode(), this.fileLocks.length)];
     }
 
     /**
@@ -829,7 +1838,7 @@ public class Index {
      * @param expectedState The RebalanceState expected of the system.
      * @return True if the system has the expected state, false if not.
      */
-    private synchronized boolean systemHasRebalanceState(RebalanceState expectedState){
+    private boolean systemHasRebalanceState(RebalanceState expectedState){
         for(DstoreIndex dstore : this.dstores){
             if(dstore.getRebalanceState() != expectedState){
                 return false;
@@ -845,7 +1854,7 @@ public class Index {
      * 
      * @return True if the system is currently being rebalanced, false otherwise.
      */
-    private synchronized boolean rebalanceInProgress(){
+    private boolean rebalanceInProgress(){
         for(DstoreIndex dstore : this.dstores){
             if(dstore.getRebalanceState() != RebalanceState.IDLE){
                 return true;
@@ -884,15 +1893,6 @@ public class Index {
      * @return ArrayList of all files stored in the system.
      */
     public ArrayList<String> getFiles(){
-        // getting list of all files
-        ArrayList<String> allFiles = new ArrayList<String>();
-        for(DstoreIndex dstore : this.dstores){
-            for(DstoreFile file: dstore.getFiles()){
-                allFiles.add(file.getFilename());
-            }
-        }
-
-        // removing duplicates and returning
-        return new ArrayList<String>(new HashSet<String>(allFiles));
+        return new ArrayList<String>(this.files.keySet());
     }
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package DS.Controller.Index;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the Dstores a Client has tried to load each of its recent files from, so that a
+ * RELOAD of a file is sent to a Dstore the Client has not yet tried.
+ *
+ * The record is bounded - only the files the Client loaded most recently are kept (older
+ * files are evicted as new ones are loaded), and a file's attempts expire once the given time
+ * has passed since its last attempt (a Client reloads a file straight after a failed load).
+ * The Index removes the record when the Client disconnects.
+ */
+public class LoadRecord {
+
+    // constants
+    private static final int MAX_FILES = 16; // number of recently loaded files kept for the Client
+
+    // member variables
+    private long expiry;
+    private LinkedHashMap<String, LoadAttempts> files; // filename -> attempts, least recently loaded first
+
+    /**
+     * Class constructor.
+     *
+     * @param expiry The time in ms after which the attempts of a file expire.
+     */
+    public LoadRecord(long expiry){
+        this.expiry = expiry;
+        this.files = new LinkedHashMap<String, LoadAttempts>(MAX_FILES, 0.75f, true){
+            protected boolean removeEldestEntry(Map.Entry<String, LoadAttempts> eldest){
+                return this.size() > MAX_FILES;
+            }
+        };
+    }
+
+    /////////////////////
+    // RECORDING LOADS //
+    /////////////////////
+
+    /**
+     * Records a LOAD of a file, replacing the previous attempts of the file.
+     *
+     * @param filename The name of the file.
+     * @param dstore The port of the Dstore the file is loaded from.
+     */
+    public synchronized void startLoad(String filename, int dstore){
+        this.files.put(filename, new LoadAttempts(dstore));
+    }
+
+    /**
+     * Records a RELOAD of a file.
+     *
+     * @param filename The name of the file.
+     * @param dstore The port of the Dstore the file is loaded from.
+     */
+    public synchronized void addAttempt(String filename, int dstore){
+        LoadAttempts attempts = this.getAttempts(filename);
+
+        if(attempts == null){
+            this.files.put(filename, new LoadAttempts(dstore));
+        }
+        else{
+            attempts.add(dstore);
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Determines if the Client has loaded the file recently.
+     *
+     * @param filename The name of the file.
+     * @return True if the file's attempts are recorded, false if not.
+     */
+    public synchronized boolean hasLoaded(String filename){
+        return (this.getAttempts(filename) != null);
+    }
+
+    /**
+     * Determines if the Client has already tried to load a file from a Dstore.
+     *
+     * @param filename The name of the file.
+     * @param dstore The port of the Dstore.
+     * @return True if the Client has tried to load the file from the Dstore, false if not.
+     */
+    public synchronized boolean hasAttempted(String filename, int dstore){
+        LoadAttempts attempts = this.getAttempts(filename);
+
+        return (attempts != null && attempts.contains(dstore));
+    }
+
+    /**
+     * Gathers the attempts of a file, removing them if they have expired.
+     *
+     * @param filename The name of the file.
+     * @return The attempts of the file, or null if there are none.
+     */
+    private LoadAttempts getAttempts(String filename){
+        LoadAttempts attempts = this.files.get(filename);
+
+        // attempts expired
+        if(attempts != null && System.currentTimeMillis() - attempts.lastAttempt > this.expiry){
+            this.files.remove(filename);
+            return null;
+        }
+
+        return attempts;
+    }
+
+    /**
+     * The Dstores a file has been loaded from (held as an array, as a file is only loaded
+     * from as many Dstores as it is replicated on).
+     */
+    private static class LoadAttempts {
+
+        // member variables
+        private int[] dstores;
+        private long lastAttempt;
+
+        /**
+         * Class constructor.
+         *
+         * @param dstore The port of the first Dstore the file is loaded from.
+         */
+        private LoadAttempts(int dstore){
+            this.dstores = new int[]{dstore};
+            this.lastAttempt = System.currentTimeMillis();
+        }
+
+        /**
+         * Adds a Dstore to the attempts.
+         *
+         * @param dstore The port of the Dstore.
+         */
+        private void add(int dstore){
+            this.dstores = Arrays.copyOf(this.dstores, this.dstores.length + 1);
+            this.dstores[this.dstores.length - 1] = dstore;
+            this.lastAttempt = System.currentTimeMillis();
+        }
+
+        /**
+         * Determines if the file has been loaded from a Dstore.
+         *
+         * @param dstore The port of the Dstore.
+         * @return True if the file has been loaded from the Dstore, false if not.
+         */
+        private boolean contains(int dstore){
+            for(int attempted : this.dstores){
+                if(attempted == dstore){
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package DS.Controller.Index;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import DS.Controller.Index.State.OperationState;
+
+/**
+ * Represents a STORE or REMOVE operation on a file that is waiting to be
+ * acknowledged by the Dstores involved in it.
+ *
+ * Each acknowledgement counts down the Dstores being waited on, and the
+ * operation's acknowledgement future completes once all of them have responded.
+ * The Index attaches the completion of the operation (and its timeout) to this
+ * future, so threads waiting on the operation do not need to poll the Index.
+ */
+public class PendingOperation {
+
+    // member variables
+    private String filename;
+    private OperationState expectedState;
+    private Set<Integer> awaitedDstores;
+    private CompletableFuture<Void> acknowledgement;
+    private volatile CompletableFuture<Void> completion;
+
+    /**
+     * Class constructor.
+     *
+     * @param filename The name of the file the operation is on.
+     * @param expectedState The state the file will be in once the operation has been acknowledged.
+     * @param dstores The ports of the Dstores that must acknowledge the operation.
+     */
+    public PendingOperation(String filename, OperationState expectedState, Collection<Integer> dstores){
+        this.filename = filename;
+        this.expectedState = expectedState;
+        this.awaitedDstores = ConcurrentHashMap.newKeySet();
+        this.awaitedDstores.addAll(dstores);
+        this.acknowledgement = new CompletableFuture<Void>();
+
+        // nothing to wait for
+        if(this.awaitedDstores.isEmpty()){
+            this.acknowledgement.complete(null);
+        }
+    }
+
+    /**
+     * Records the acknowledgement of the operation by a Dstore.
+     *
+     * Also used when a Dstore leaves the system, as it will no longer acknowledge
+     * the operation.
+     *
+     * @param dstore The port of the Dstore.
+     */
+    public void acknowledge(int dstore){
+        if(this.awaitedDstores.remove(dstore) && this.awaitedDstores.isEmpty()){
+            this.acknowledgement.complete(null);
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public OperationState getExpectedState(){
+        return this.expectedState;
+    }
+
+    /**
+     * Returns the future that completes once all Dstores have acknowledged
+     * the operation.
+     *
+     * @return The acknowledgement future.
+     */
+    public CompletableFuture<Void> getAcknowledgement(){
+        return this.acknowledgement;
+    }
+
+    /**
+     * Returns the future that completes once the Index has been updated for
+     * the outcome of the operation. Completes exceptionally if the operation
+     * timed out.
+     *
+     * @return The completion future.
+     */
+    public CompletableFuture<Void> getCompletion(){
+        return this.completion;
+    }
+
+    public void setCompletion(CompletableFuture<Void> completion){
+        this.completion = completion;
+    }
+}
@@ -42,6 +42,7 @@ public class State{
         //states
         REBALANCE_LIST_IN_PROGRESS("Rebalance List In Progess"),
         REBALANCE_LIST_RECIEVED("Rebalance List Recieved"),
+        REBALANCE_PLANNING("Rebalance Planning"),
         REBALANCE_MOVE_IN_PROGRESS("Rebalance Move In Progress"),
         REBALANCE_COMPLETE_RECIEVED("Rebalance Complete Recieved"),
         IDLE("Idle");
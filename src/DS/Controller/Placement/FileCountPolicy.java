@@ -0,0 +1,23 @@
+package DS.Controller.Placement;
+
+/**
+ * Placement policy that balances the number of files stored on each Dstore.
+ * 
+ * The system is balanced when every Dstore stores between Floor(R * F / N) and 
+ * Ceiling(R * F / N) files (i.e., the most and least loaded Dstores differ by at 
+ * most one file).
+ */
+public class FileCountPolicy implements PlacementPolicy {
+
+    public long getFileLoad(long filesize){
+        return 1;
+    }
+
+    public long getDstoreLoad(int files, long storedBytes){
+        return files;
+    }
+
+    public long getTolerance(long largestFileLoad){
+        return 1;
+    }
+}
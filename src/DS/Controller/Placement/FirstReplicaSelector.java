@@ -0,0 +1,15 @@
+package DS.Controller.Placement;
+
+import java.util.List;
+
+import DS.Controller.Index.DstoreIndex;
+
+/**
+ * Replica selector that always loads from the first replica of the file.
+ */
+public class FirstReplicaSelector implements ReplicaSelector {
+
+    public DstoreIndex select(List<DstoreIndex> replicas){
+        return replicas.get(0);
+    }
+}
@@ -0,0 +1,152 @@
+package DS.Controller.Placement;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A consistent-hash ring used to choose the Dstores a file is replicated on.
+ *
+ * Each Dstore is placed on the ring at a number of points (virtual nodes), and a file is
+ * stored on the first R distinct Dstores found walking the ring clockwise from the hash of
+ * its name. When a Dstore joins or leaves the system, only the files whose walk passes one
+ * of its points change their Dstores (roughly 1/N of the files), so the rebalance that
+ * follows only moves those files.
+ *
+ * The ring only depends on the Dstores in it and the number of virtual nodes, so rings
+ * built from the same Dstores always place files identically.
+ */
+public class HashRing {
+
+    // member variables
+    private int virtualNodes;
+    private ConcurrentSkipListMap<Long, Integer> ring; // point on ring -> Dstore port
+
+    /**
+     * Class constructor.
+     *
+     * @param virtualNodes The number of points each Dstore is placed at on the ring.
+     */
+    public HashRing(int virtualNodes){
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.ring = new ConcurrentSkipListMap<Long, Integer>();
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param virtualNodes The number of points each Dstore is placed at on the ring.
+     * @param dstores The ports of the Dstores on the ring.
+     */
+    public HashRing(int virtualNodes, Collection<Integer> dstores){
+        this(virtualNodes);
+
+        for(Integer dstore : dstores){
+            this.addDstore(dstore);
+        }
+    }
+
+    /////////////////////////
+    // CONFIGURING DSTORES //
+    /////////////////////////
+
+    /**
+     * Places a Dstore on the ring.
+     *
+     * @param dstore The port of the Dstore.
+     */
+    public void addDstore(int dstore){
+        for(int i = 0; i < this.virtualNodes; i++){
+            this.ring.put(HashRing.hash(dstore + "#" + i), dstore);
+        }
+    }
+
+    /**
+     * Removes a Dstore from the ring.
+     *
+     * @param dstore The port of the Dstore.
+     */
+    public void removeDstore(int dstore){
+        for(int i = 0; i < this.virtualNodes; i++){
+            this.ring.remove(HashRing.hash(dstore + "#" + i), dstore);
+        }
+    }
+
+    ///////////////////////
+    // PLACING THE FILES //
+    ///////////////////////
+
+    /**
+     * Gathers the Dstores a file is placed on.
+     *
+     * @param filename The name of the file.
+     * @param numberOfDstores The number of Dstores the file is replicated on.
+     * @return The ports of the Dstores the file is placed on (fewer than requested if there
+     * are not enough Dstores on the ring).
+     */
+    public ArrayList<Integer> getDstores(String filename, int numberOfDstores){
+        ArrayList<Integer> dstores = new ArrayList<Integer>();
+        HashSet<Integer> found = new HashSet<Integer>();
+        long point = HashRing.hash(filename);
+
+        // walking clockwise from the file's point
+        for(Integer dstore : this.ring.tailMap(point).values()){
+            if(dstores.size() == numberOfDstores){
+                return dstores;
+            }
+            if(found.add(dstore)){
+                dstores.add(dstore);
+            }
+        }
+
+        // wrapping around to the start of the ring
+        for(Map.Entry<Long, Integer> entry : this.ring.headMap(point).entrySet()){
+            if(dstores.size() == numberOfDstores){
+                return dstores;
+            }
+            if(found.add(entry.getValue())){
+                dstores.add(entry.getValue());
+            }
+        }
+
+        return dstores;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Hashes a key onto the ring (64-bit FNV-1a, followed by a finalising mix so that
+     * similar keys, e.g., the virtual nodes of a Dstore, are spread around the ring).
+     *
+     * @param key The key being hashed.
+     * @return The point of the key on the ring.
+     */
+    private static long hash(String key){
+        long hash = 0xcbf29ce484222325L;
+        for(byte b : key.getBytes(StandardCharsets.UTF_8)){
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+
+        return hash;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getVirtualNodes(){
+        return this.virtualNodes;
+    }
+}
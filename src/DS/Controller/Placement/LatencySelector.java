@@ -0,0 +1,72 @@
+package DS.Controller.Placement;
+
+import java.util.List;
+
+import DS.Controller.Index.DstoreIndex;
+
+/**
+ * Replica selector that loads from the replica expected to serve the load soonest.
+ * 
+ * Each replica is scored by its average load time (an exponentially weighted moving average)
+ * multiplied by the number of loads it would have in flight, so a fast replica is preferred 
+ * until it is busier than the slower ones. Replicas that have not yet served a load are
+ * taken to be as fast as the fastest replica that has, and are scored by the loads they
+ * already have in flight (so an idle one is tried before the others, but loads are not all
+ * sent to it while its first load is still in flight).
+ */
+public class LatencySelector implements ReplicaSelector {
+
+    public DstoreIndex select(List<DstoreIndex> replicas){
+        double untriedLatency = LatencySelector.getUntriedLatency(replicas);
+
+        DstoreIndex selected = replicas.get(0);
+        double selectedScore = LatencySelector.getScore(selected, untriedLatency);
+
+        for(DstoreIndex replica : replicas){
+            double score = LatencySelector.getScore(replica, untriedLatency);
+
+            if(score < selectedScore){
+                selected = replica;
+                selectedScore = score;
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Scores a replica by the time it is expected to take to serve another load.
+     * 
+     * @param replica The replica being scored.
+     * @param untriedLatency The load time taken for replicas that have not yet served a load.
+     * @return The score of the replica (lower is better).
+     */
+    private static double getScore(DstoreIndex replica, double untriedLatency){
+        // replica not yet tried - scored by the loads it has in flight
+        if(!replica.hasLoadLatency()){
+            return untriedLatency * replica.getOutstandingLoads();
+        }
+
+        return replica.getLoadLatency() * (replica.getOutstandingLoads() + 1);
+    }
+
+    /**
+     * Gathers the load time taken for the replicas that have not yet served a load, which is
+     * the lowest average load time of the replicas that have.
+     * 
+     * @param replicas The replicas being selected from.
+     * @return The load time in ms (1 if no replica has served a load, so that the replicas
+     * are scored by their loads in flight alone).
+     */
+    private static double getUntriedLatency(List<DstoreIndex> replicas){
+        double latency = Double.POSITIVE_INFINITY;
+
+        for(DstoreIndex replica : replicas){
+            if(replica.hasLoadLatency()){
+                latency = Math.min(latency, replica.getLoadLatency());
+            }
+        }
+
+        return Double.isInfinite(latency) ? 1 : latency;
+    }
+}
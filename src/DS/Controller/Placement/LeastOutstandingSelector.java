@@ -0,0 +1,23 @@
+package DS.Controller.Placement;
+
+import java.util.List;
+
+import DS.Controller.Index.DstoreIndex;
+
+/**
+ * Replica selector that loads from the replica with the fewest loads in flight.
+ */
+public class LeastOutstandingSelector implements ReplicaSelector {
+
+    public DstoreIndex select(List<DstoreIndex> replicas){
+        DstoreIndex selected = replicas.get(0);
+
+        for(DstoreIndex replica : replicas){
+            if(replica.getOutstandingLoads() < selected.getOutstandingLoads()){
+                selected = replica;
+            }
+        }
+
+        return selected;
+    }
+}
@@ -0,0 +1,38 @@
+package DS.Controller.Placement;
+
+/**
+ * Decides how the load of the Dstores is measured when choosing the Dstores to store a
+ * file on, and when balancing the files across the Dstores during a rebalance.
+ * 
+ * A Dstore's load is the sum of the loads of the files stored on it, and the system is
+ * balanced when the most and least loaded Dstores differ by no more than the policy's
+ * tolerance.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Returns the load a file adds to the Dstore it is stored on.
+     * 
+     * @param filesize The size of the file in bytes.
+     * @return The load of the file.
+     */
+    public long getFileLoad(long filesize);
+
+    /**
+     * Returns the load of a Dstore.
+     * 
+     * @param files The number of files stored on the Dstore.
+     * @param storedBytes The total size of the files stored on the Dstore.
+     * @return The load of the Dstore.
+     */
+    public long getDstoreLoad(int files, long storedBytes);
+
+    /**
+     * Returns the greatest difference in load between the most and least loaded Dstores
+     * for the system to be balanced.
+     * 
+     * @param largestFileLoad The load of the largest file in the system.
+     * @return The tolerated difference in load.
+     */
+    public long getTolerance(long largestFileLoad);
+}
@@ -0,0 +1,34 @@
+package DS.Controller.Placement;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import DS.Controller.Index.DstoreIndex;
+
+/**
+ * Replica selector that picks two replicas at random and loads from the one with fewer
+ * loads in flight. 
+ * 
+ * Avoids every concurrent load being sent to the same least loaded replica (as the counts
+ * seen by concurrent selections are the same), while still steering loads away from busy
+ * replicas.
+ */
+public class PowerOfTwoSelector implements ReplicaSelector {
+
+    public DstoreIndex select(List<DstoreIndex> replicas){
+        // only one replica to choose from
+        if(replicas.size() == 1){
+            return replicas.get(0);
+        }
+
+        // picking two distinct replicas
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(replicas.size());
+        int second = (first + 1 + random.nextInt(replicas.size() - 1)) % replicas.size();
+
+        DstoreIndex firstReplica = replicas.get(first);
+        DstoreIndex secondReplica = replicas.get(second);
+
+        return (secondReplica.getOutstandingLoads() < firstReplica.getOutstandingLoads()) ? secondReplica : firstReplica;
+    }
+}
@@ -0,0 +1,23 @@
+package DS.Controller.Placement;
+
+import java.util.List;
+
+import DS.Controller.Index.DstoreIndex;
+
+/**
+ * Decides which replica of a file a Client is sent to when it loads the file.
+ * 
+ * Selectors are given the Dstores the file can be loaded from, and choose between them using
+ * the loads the Controller has sent to each Dstore that are still in flight, and the time
+ * previous loads from each Dstore have taken.
+ */
+public interface ReplicaSelector {
+
+    /**
+     * Chooses the Dstore a file is loaded from.
+     * 
+     * @param replicas The Dstores the file can be loaded from (never empty).
+     * @return The Dstore the file is loaded from.
+     */
+    public DstoreIndex select(List<DstoreIndex> replicas);
+}
@@ -0,0 +1,27 @@
+package DS.Controller.Placement;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import DS.Controller.Index.DstoreIndex;
+
+/**
+ * Replica selector that takes turns between the replicas of a file, so the loads of a
+ * file are spread evenly across its replicas.
+ */
+public class RoundRobinSelector implements ReplicaSelector {
+
+    // member variables
+    private AtomicInteger turn;
+
+    /**
+     * Class constructor.
+     */
+    public RoundRobinSelector(){
+        this.turn = new AtomicInteger();
+    }
+
+    public DstoreIndex select(List<DstoreIndex> replicas){
+        return replicas.get(Math.floorMod(this.turn.getAndIncrement(), replicas.size()));
+    }
+}
@@ -0,0 +1,24 @@
+package DS.Controller.Placement;
+
+/**
+ * Placement policy that balances the number of bytes stored on each Dstore, so that
+ * a Dstore holding a few large files is not treated as lighter than one holding many 
+ * small files.
+ * 
+ * The system is balanced when the most and least loaded Dstores differ by no more than
+ * the size of the largest file (the granularity at which bytes can be moved between Dstores).
+ */
+public class StoredBytesPolicy implements PlacementPolicy {
+
+    public long getFileLoad(long filesize){
+        return filesize;
+    }
+
+    public long getDstoreLoad(int files, long storedBytes){
+        return storedBytes;
+    }
+
+    public long getTolerance(long largestFileLoad){
+        return largestFileLoad;
+    }
+}
@@ -0,0 +1,420 @@
+package DS.Controller.Rebalancer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import DS.Controller.Placement.HashRing;
+import DS.Controller.Placement.PlacementPolicy;
+import DS.Protocol.Token.TokenType.FileToSend;
+
+/**
+ * Plans the rebalance of an unbalanced System.
+ *
+ * The Dstores are held in a set ordered by their load, as measured by the System's placement
+ * policy (used as a double-ended priority queue, so the least and most loaded Dstores are found in logarithmic
+ * time), and the files on each Dstore are held in hash sets. Each move is applied to the
+ * System as it is planned, so planning a rebalance takes time proportional to the number of
+ * moves rather than re-sorting the Dstores and replaying the previous moves for every file
+ * that is moved.
+ *
+ * When files are placed on a hash ring, each file is instead moved onto the Dstores that
+ * follow it on the ring, so only the files whose Dstores on the ring have changed are moved.
+ */
+public class RebalancePlanner {
+
+    // member variables
+    private System system;
+    private HashMap<Integer, RebalanceInformation> rebalanceInformation;
+    private HashMap<Integer, LinkedHashSet<String>> filesOnDstore; // Dstore -> files stored on the Dstore
+    private HashMap<Integer, HashSet<String>> filesReceived; // Dstore -> files the Dstore will receive during the rebalance
+    private HashMap<String, Integer> replicaCounts; // file -> number of Dstores the file is stored on
+    private HashMap<Integer, DstoreLoad> loads;
+    private TreeSet<DstoreLoad> loadOrder;
+    private PlacementPolicy policy;
+    private long largestFileLoad;
+
+    /**
+     * Class constructor.
+     *
+     * @param system The unbalanced system being rebalanced (updated as the rebalance is planned).
+     */
+    public RebalancePlanner(System system){
+        this.system = system;
+        this.rebalanceInformation = new HashMap<Integer, RebalanceInformation>();
+        this.filesOnDstore = new HashMap<Integer, LinkedHashSet<String>>();
+        this.filesReceived = new HashMap<Integer, HashSet<String>>();
+        this.replicaCounts = new HashMap<String, Integer>();
+        this.loads = new HashMap<Integer, DstoreLoad>();
+        this.loadOrder = new TreeSet<DstoreLoad>();
+        this.policy = system.getPlacementPolicy();
+        this.largestFileLoad = 0;
+
+        // indexing the file distribution
+        for(Integer dstore : system.getDstores()){
+            HashMap<String, Integer> files = system.getFilesOnDstore(dstore);
+
+            this.rebalanceInformation.put(dstore, new RebalanceInformation());
+            this.filesOnDstore.put(dstore, new LinkedHashSet<String>(files.keySet()));
+            this.filesReceived.put(dstore, new HashSet<String>());
+
+            long storedBytes = 0;
+            for(String filename : files.keySet()){
+                this.replicaCounts.merge(filename, 1, Integer::sum);
+                storedBytes += files.get(filename);
+                this.largestFileLoad = Math.max(this.largestFileLoad, this.policy.getFileLoad(files.get(filename)));
+            }
+
+            DstoreLoad load = new DstoreLoad(dstore, this.policy.getDstoreLoad(files.size(), storedBytes));
+            this.loads.put(dstore, load);
+            this.loadOrder.add(load);
+        }
+    }
+
+    /////////////////////////
+    // PLANNING THE SYSTEM //
+    /////////////////////////
+
+    /**
+     * Plans the rebalance of the system. Files not stored R times are first replicated onto
+     * the least loaded Dstores, and files are then moved from the most loaded Dstores to the
+     * least loaded ones until the loads of the Dstores differ by no more than the placement 
+     * policy's tolerance (e.g., when balancing on the number of files, until every Dstore
+     * stores between Floor(R * F / N) and Ceiling(R * F / N) files).
+     *
+     * @return A RebalancedSystem object that contains the rebalanced file distribution and
+     * rebalance information.
+     */
+    public RebalancedSystem plan(){
+        // FILES PLACED ON A RING //
+
+        if(this.system.getHashRing() != null){
+            this.placeFilesOnRing(this.system.getHashRing());
+
+            return new RebalancedSystem(this.system, this.rebalanceInformation);
+        }
+
+        // FILES NOT STORED R TIMES //
+
+        this.replicateFiles();
+
+        // FILES NOT STORED EVENLY //
+
+        this.spreadFiles();
+
+        // RETURNING RESULT //
+
+        return new RebalancedSystem(this.system, this.rebalanceInformation);
+    }
+
+    /**
+     * Sends each file that is not stored R times to the least loaded Dstores that do not
+     * already store it.
+     */
+    private void replicateFiles(){
+        // gathering the files not stored R times
+        ArrayList<String> filesNotStoredMinTimes = new ArrayList<String>();
+        for(String filename : this.replicaCounts.keySet()){
+            if(this.replicaCounts.get(filename) < this.system.getMinDstores()){
+                filesNotStoredMinTimes.add(filename);
+            }
+        }
+
+        for(String filename : filesNotStoredMinTimes){
+            int neededDstores = this.system.getMinDstores() - this.replicaCounts.get(filename);
+
+            // gathering the least loaded dstores that do not store the file
+            ArrayList<Integer> dstoresToSendTo = new ArrayList<Integer>();
+            for(DstoreLoad load : this.loadOrder){
+                if(!this.filesOnDstore.get(load.dstore).contains(filename)){
+                    dstoresToSendTo.add(load.dstore);
+
+                    if(dstoresToSendTo.size() == neededDstores){
+                        break;
+                    }
+                }
+            }
+
+            // no dstores to send to
+            if(dstoresToSendTo.isEmpty()){
+                continue;
+            }
+
+            // sending the file from a dstore that stores it
+            Integer dstoreToSendFrom = this.getDstoreThatHasFile(filename);
+            this.rebalanceInformation.get(dstoreToSendFrom).getFilesToSend().add(new FileToSend(filename, this.getFileSize(dstoreToSendFrom, filename), dstoresToSendTo));
+
+            for(Integer dstore : dstoresToSendTo){
+                this.addFile(dstore, filename, this.getFileSize(dstoreToSendFrom, filename));
+            }
+        }
+    }
+
+    /**
+     * Moves every file onto the Dstores that follow it on the hash ring. Each Dstore on the
+     * ring that does not store the file is sent it by one of the Dstores that currently store
+     * it, and the Dstores that are not on the file's part of the ring then remove it.
+     *
+     * @param hashRing The hash ring of the Dstores in the system.
+     */
+    private void placeFilesOnRing(HashRing hashRing){
+        // gathering the dstores currently storing each file
+        HashMap<String, ArrayList<Integer>> dstoresOfFile = new HashMap<String, ArrayList<Integer>>();
+        for(Integer dstore : this.filesOnDstore.keySet()){
+            for(String filename : this.filesOnDstore.get(dstore)){
+                dstoresOfFile.computeIfAbsent(filename, file -> new ArrayList<Integer>()).add(dstore);
+            }
+        }
+
+        for(String filename : dstoresOfFile.keySet()){
+            ArrayList<Integer> currentDstores = dstoresOfFile.get(filename);
+            ArrayList<Integer> ringDstores = hashRing.getDstores(filename, this.system.getMinDstores());
+
+            // gathering the dstores on the ring that do not store the file
+            ArrayList<Integer> dstoresToSendTo = new ArrayList<Integer>();
+            for(Integer dstore : ringDstores){
+                if(!currentDstores.contains(dstore)){
+                    dstoresToSendTo.add(dstore);
+                }
+            }
+
+            // sending the file from a dstore that stores it
+            Integer dstoreToSendFrom = currentDstores.get(0);
+            int filesize = this.getFileSize(dstoreToSendFrom, filename);
+            if(!dstoresToSendTo.isEmpty()){
+                this.rebalanceInformation.get(dstoreToSendFrom).getFilesToSend().add(new FileToSend(filename, filesize, dstoresToSendTo));
+
+                for(Integer dstore : dstoresToSendTo){
+                    this.addFile(dstore, filename, filesize);
+                }
+            }
+
+            // removing the file from the dstores not on its part of the ring
+            for(Integer dstore : currentDstores){
+                if(!ringDstores.contains(dstore)){
+                    this.rebalanceInformation.get(dstore).getFilesToRemove().add(filename);
+                    this.removeFile(dstore, filename);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves files from the most loaded Dstores to the least loaded Dstores until the files
+     * are spread evenly.
+     */
+    private void spreadFiles(){
+        long tolerance = this.policy.getTolerance(this.largestFileLoad);
+
+        while(!this.loadOrder.isEmpty()){
+            DstoreLoad mostLoaded = this.loadOrder.last();
+            DstoreLoad leastLoaded = this.loadOrder.first();
+
+            // files stored evenly
+            if(mostLoaded.load - leastLoaded.load <= tolerance){
+                return;
+            }
+
+            // no move can narrow the spread
+            if(!this.moveFileFrom(mostLoaded)){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves a file from the given Dstore to the least loaded Dstore that does not already
+     * store one of its files.
+     * 
+     * Only Dstores whose load is lower than the sending Dstore's by more than the tolerance
+     * receive files, and the file moved is lighter than the difference in load, so every
+     * move narrows the spread of the loads.
+     *
+     * @param dstoreSending The Dstore sending a file.
+     * @return True if a file was moved, false if no Dstore could receive one of its files.
+     */
+    private boolean moveFileFrom(DstoreLoad dstoreSending){
+        long tolerance = this.policy.getTolerance(this.largestFileLoad);
+        Integer dstoreToSendTo = null;
+        String fileToSend = null;
+
+        // finding the least loaded dstore that can receive a file
+        for(DstoreLoad load : this.loadOrder){
+            // moving to this dstore would not narrow the spread
+            if(dstoreSending.load - load.load <= tolerance){
+                break;
+            }
+
+            fileToSend = this.getFileToSend(dstoreSending.dstore, load.dstore, dstoreSending.load - load.load);
+            if(fileToSend != null){
+                dstoreToSendTo = load.dstore;
+                break;
+            }
+        }
+
+        // no suitable dstore and file found
+        if(fileToSend == null){
+            return false;
+        }
+
+        // the dstore sending the file must send the file and then remove it
+        RebalanceInformation information = this.rebalanceInformation.get(dstoreSending.dstore);
+        int filesize = this.getFileSize(dstoreSending.dstore, fileToSend);
+        information.getFilesToSend().add(new FileToSend(fileToSend, filesize, new ArrayList<Integer>(List.of(dstoreToSendTo))));
+        information.getFilesToRemove().add(fileToSend);
+
+        this.addFile(dstoreToSendTo, fileToSend, filesize);
+        this.removeFile(dstoreSending.dstore, fileToSend);
+
+        return true;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Finds a file on the sending Dstore that is not stored on the receiving Dstore. Files
+     * the sending Dstore only receives during this rebalance cannot be sent on.
+     * 
+     * A file with at most half the difference in load is preferred (moving it narrows the
+     * difference the most), otherwise the first file lighter than the difference is used.
+     *
+     * @param dstoreSending The Dstore sending the file.
+     * @param dstoreReceiving The Dstore receiving the file.
+     * @param difference The difference in load between the two Dstores.
+     * @return The name of the file, or null if there is no such file.
+     */
+    private String getFileToSend(Integer dstoreSending, Integer dstoreReceiving, long difference){
+        HashSet<String> filesOnReceiver = this.filesOnDstore.get(dstoreReceiving);
+        HashSet<String> filesReceived = this.filesReceived.get(dstoreSending);
+        String lighterFile = null;
+
+        for(String filename : this.filesOnDstore.get(dstoreSending)){
+            if(!filesOnReceiver.contains(filename) && !filesReceived.contains(filename)){
+                long fileLoad = this.policy.getFileLoad(this.getFileSize(dstoreSending, filename));
+
+                // file narrows the difference the most
+                if(fileLoad <= difference / 2){
+                    return filename;
+                }
+
+                // file narrows the difference
+                if(lighterFile == null && fileLoad < difference){
+                    lighterFile = filename;
+                }
+            }
+        }
+
+        return lighterFile;
+    }
+
+    /**
+     * Finds a Dstore that stores a file. Only used for files not stored R times, so
+     * checking each Dstore is cheap in comparison to indexing the Dstores of every file.
+     *
+     * @param filename The name of the file.
+     * @return The Dstore that stores the file, or null if no Dstore stores it.
+     */
+    private Integer getDstoreThatHasFile(String filename){
+        for(Integer dstore : this.filesOnDstore.keySet()){
+            if(this.filesOnDstore.get(dstore).contains(filename)){
+                return dstore;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gathers the size of a file stored on a Dstore.
+     *
+     * @param dstore The Dstore the file is stored on.
+     * @param filename The name of the file.
+     * @return The size of the file in bytes.
+     */
+    private int getFileSize(Integer dstore, String filename){
+        return this.system.getFilesOnDstore(dstore).get(filename);
+    }
+
+    /**
+     * Adds a file to a Dstore, updating the system and the load of the Dstore.
+     *
+     * @param dstore The Dstore the file is being added to.
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     */
+    private void addFile(Integer dstore, String filename, int filesize){
+        this.filesOnDstore.get(dstore).add(filename);
+        this.filesReceived.get(dstore).add(filename);
+        this.replicaCounts.merge(filename, 1, Integer::sum);
+        this.system.addFileToDstore(dstore, filename, filesize);
+        this.updateLoad(dstore, this.policy.getFileLoad(filesize));
+    }
+
+    /**
+     * Removes a file from a Dstore, updating the system and the load of the Dstore.
+     *
+     * @param dstore The Dstore the file is being removed from.
+     * @param filename The name of the file.
+     */
+    private void removeFile(Integer dstore, String filename){
+        long fileLoad = this.policy.getFileLoad(this.getFileSize(dstore, filename));
+
+        this.filesOnDstore.get(dstore).remove(filename);
+        this.replicaCounts.merge(filename, -1, Integer::sum);
+        this.system.removeFileFromDstore(dstore, filename);
+        this.updateLoad(dstore, -fileLoad);
+    }
+
+    /**
+     * Changes the load of a Dstore, re-ordering the Dstore by its new load.
+     *
+     * @param dstore The Dstore.
+     * @param change The change in the load of the Dstore.
+     */
+    private void updateLoad(Integer dstore, long change){
+        DstoreLoad load = this.loads.get(dstore);
+
+        this.loadOrder.remove(load);
+        load.load += change;
+        this.loadOrder.add(load);
+    }
+
+    /**
+     * The load of a Dstore, ordered by the load (and then by the port of the Dstore, so
+     * that Dstores with the same load are distinct).
+     */
+    private static class DstoreLoad implements Comparable<DstoreLoad> {
+
+        // member variables
+        private Integer dstore;
+        private long load;
+
+        /**
+         * Class constructor.
+         *
+         * @param dstore The port of the Dstore.
+         * @param load The load of the Dstore.
+         */
+        private DstoreLoad(Integer dstore, long load){
+            this.dstore = dstore;
+            this.load = load;
+        }
+
+        /**
+         * Compares the load of this Dstore with another Dstore.
+         *
+         * @param otherLoad The load of the other Dstore.
+         * @return Negative if this Dstore is less loaded, positive if it is more loaded.
+         */
+        public int compareTo(DstoreLoad otherLoad){
+            int comparison = Long.compare(this.load, otherLoad.load);
+
+            return (comparison != 0) ? comparison : Integer.compare(this.dstore, otherLoad.dstore);
+        }
+    }
+}
@@ -41,7 +41,9 @@ public class RebalancedSystem{
         this.rebalanceInformation.get(dstoreSendingFile).getFilesToSend().add(fileToSend);
 
         // updating the file distribution
-        this.system.updateFromRebalanceInformation(this.rebalanceInformation);
+        for(int dstore : fileToSend.dStores){
+            this.system.addFileToDstore(dstore, fileToSend.filename, fileToSend.filesize);
+        }
     }
 
     /**
@@ -54,7 +56,7 @@ public class RebalancedSystem{
         this.rebalanceInformation.get(dstoreRemovingFile).getFilesToRemove().add(fileToRemove);
 
         // updating the file distribution
-        this.system.updateFromRebalanceInformation(this.rebalanceInformation);
+        this.system.removeFileFromDstore(dstoreRemovingFile, fileToRemove);
     }
 
     /////////////////////////
@@ -1,29 +1,38 @@
 package DS.Controller.Rebalancer;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Set;
 
 import DS.Controller.Controller;
+import DS.Controller.Controller.PlacementStrategy;
+import DS.Controller.Controller.RebalanceMode;
+import DS.Controller.Controller.RebalancePlanning;
 import DS.Controller.Index.DstoreIndex;
+import DS.Controller.Index.Index;
 import DS.Controller.Index.State.RebalanceState;
+import DS.Controller.Placement.HashRing;
 import DS.Protocol.Protocol;
+import DS.Protocol.Event.Rebalance.IncrementalRebalanceStartedEvent;
 import DS.Protocol.Event.Rebalance.RebalanceCompleteEvent;
 import DS.Protocol.Event.Rebalance.RebalanceFileListGatheredEvent;
 import DS.Protocol.Event.Rebalance.RebalanceNotRequiredEvent;
 import DS.Protocol.Event.Rebalance.RebalanceStartedEvent;
 import DS.Protocol.Exception.RebalanceFailureException;
-import DS.Protocol.Token.TokenType.FileToSend;
 import Network.Protocol.Exception.NetworkException;
 
 /**
  * Handles the rebalancing of the file system.
+ * 
+ * A full rebalance lists the files of every Dstore and plans the system from these lists.
+ * With incremental planning, the periodic rebalance only checks the files changed since the
+ * last rebalance (and plans from the Index if they have unbalanced the system), and the
+ * Dstores are only listed every full rebalance period, or when a Dstore joins or leaves.
  */
 public class Rebalancer extends Thread{
     
     // member variables
     private Controller controller;
+    private volatile long lastFullRebalance;
 
     /**
      * Class constructor.
@@ -33,6 +42,7 @@ public class Rebalancer extends Thread{
     public Rebalancer(Controller controller){
         // initializing
         this.controller = controller;
+        this.lastFullRebalance = 0;
     }
 
     /**
@@ -58,7 +68,12 @@ public class Rebalancer extends Thread{
                 Thread.sleep(this.controller.getRebalancePeriod());
 
                 // rebalance system
-                this.rebalance();
+                if(this.isIncrementalRebalanceDue()){
+                    this.rebalanceIncrementally();
+                }
+                else{
+                    this.rebalance();
+                }
             }
             catch(Exception e){
                 // handling failure through controller
@@ -82,324 +97,196 @@ public class Rebalancer extends Thread{
      * the timeout.
      * @throws MessageSendException If a message could not be sent through a connection
      * channel.
+     * @throws RebalancePlacementChangedException If (in an online rebalance) a file to be
+     * moved was changed by a client request while the rebalance was being planned.
      */
     public void rebalance() throws NetworkException{
 
         // event for rebalance starting
         this.controller.handleEvent(new RebalanceStartedEvent());
 
+        // recording the time of the full rebalance
+        this.lastFullRebalance = java.lang.System.currentTimeMillis();
+
         // GATHERING FILE LIST //
 
         // starting rebalance list
         this.controller.getIndex().startRebalanceList();
 
-        // sending LIST requests to dstores
+        // sending LIST_CHUNKED requests to dstores (so no Dstore's list is held in a single message)
         for(DstoreIndex dstore : this.controller.getIndex().getDstores()){
-            dstore.getConnection().sendMessage(Protocol.getListMessage());
+            dstore.getConnection().sendMessage(Protocol.getListChunkedMessage(Protocol.MAX_LIST_CHUNK_SIZE));
         }
 
         // waiting for all Dstores to respond
         this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_LIST_RECIEVED, this.controller.getTimeout());
     
         // creating System instance
-        System system = new System(this.controller.getMinDstores(), this.controller.getIndex().getFileDistribution());
+        System system = this.getSystem(this.controller.getIndex().getFileDistribution());
 
         // event for file list gathered 
         this.controller.handleEvent(new RebalanceFileListGatheredEvent());
 
-        // CHECKING IF SYSTEM IS BALANCED //
-
-        if(!system.isBalanced()){
-
-            // REBALANCING //
-
-            // starting the moving process
-            this.controller.getIndex().startRebalanceMove();
-
-            // calculating the adjustments
-            RebalancedSystem rebalancedSystem = Rebalancer.getRebalancedSystem(system);
-
-            // sending rebalance messages
-            for(Integer dstore : rebalancedSystem.getRebalanceInformation().keySet()){
-                // forming message
-                String rebalanceMessage = rebalancedSystem.getRebalanceInformation().get(dstore).getRebalanceMessage();
-
-                // sending message
-                this.controller.getIndex().getIndexFromPort(dstore).getConnection().sendMessage(rebalanceMessage);
-            }
-
-            // waiting for rebalance complete responses
-            this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED, this.controller.getTimeout());
-
-            // REBALANCE COMPLETE //
-
-            // updating the index
-            this.controller.getIndex().setFileDistribution(rebalancedSystem.getSystem().getFileDistribution());
-
-            // creating event to show rebalance successfull
-            this.controller.handleEvent(new RebalanceCompleteEvent());
-        }
-        else{
-            // event for rebalance not required
-            this.controller.handleEvent(new RebalanceNotRequiredEvent());
-        }
+        // rebalancing the system
+        this.rebalanceSystem(system);
     }
 
-    /////////////////////////////
-    // CALCULATING ADJUSTMENTS //
-    /////////////////////////////
-
     /**
-     * Creates a RebalancedSystem object for an unbalanced system.
+     * Rebalances the system incrementally. The files changed since the last rebalance are
+     * checked, and if they have unbalanced the system, the system is planned from the Index
+     * (without listing the Dstores).
      * 
-     * @param system The unbalanced system that is being rebalanced.
-     * @return A RebalancedSystem object that contains the rebalanced
-     * file distribution and rebalance information.
+     * @throws NotEnoughDstoresException If there are not enough Dstores connected
+     * to the system to carry out the rebalance operation.
+     * @throws RebalanceAlreadyInProgressException If there is already a rebalance 
+     * operation in progess.
+     * @throws NetworkTimeoutException If the Dstores do not complete the rebalance within
+     * the timeout.
+     * @throws MessageSendException If a message could not be sent through a connection
+     * channel.
+     * @throws RebalancePlacementChangedException If (in an online rebalance) a file to be
+     * moved was changed by a client request while the rebalance was being planned.
      */
-    private static RebalancedSystem getRebalancedSystem(System system){
-        // creating rebalance information object
-        HashMap<Integer, RebalanceInformation> rebalanceInformation = new HashMap<Integer, RebalanceInformation>(); 
-
-        // adding a mapping for each connection into the rebalance information object
-        for(Integer dstore : system.getDstores()){
-            rebalanceInformation.put(dstore, new RebalanceInformation());
-        }
-
-        // creating rebalanced system object
-        RebalancedSystem rebalancedSystem = new RebalancedSystem(system, rebalanceInformation);
-
-        // FILES OT STORED R TIMES //
-
-        if(!system.filesStoredMinTimes()){
-            // rebalancing system for files not stored evenly
-            rebalancedSystem = Rebalancer.rebalanceForNotStoredMinTimes(rebalancedSystem);
-        }
+    public void rebalanceIncrementally() throws NetworkException{
+        Index index = this.controller.getIndex();
 
-        // FILES NOT STORED EVENLY //
+        // gathering the files changed since the last rebalance
+        Set<String> dirtyFiles = index.takeDirtyFiles();
 
-        if(!system.filesStoredEvenly()){
-            // rebalancing system for files not stored evenly
-            rebalancedSystem = Rebalancer.rebalanceForNotStoredEvenly(rebalancedSystem);
+        // nothing changed - nothing to rebalance
+        if(dirtyFiles.isEmpty()){
+            return;
         }
 
-        return rebalancedSystem;
-    }
-
-    /**
-     * Rebalances the given system in the case where one or more files are not stored R times.
-     * 
-     * @param rebalancedSystem The RebalancedSystem object that is being rebalanced due to not
-     * all files beign stored R times.
-     * @return The RebalancedSystem object that has been updated so that all files are stored
-     * R times.
-     */
-    private static RebalancedSystem rebalanceForNotStoredMinTimes(RebalancedSystem rebalancedSystem){
-        // CALCUATING REBALANCE INFORMATION //
-
-        // gathering list of files not stored r times
-        HashMap<String, Integer> filesNotStoredMinTimes = rebalancedSystem.getSystem().getFilesNotStoredMinTimes();
+        try{
+            // event for rebalance starting
+            this.controller.handleEvent(new IncrementalRebalanceStartedEvent(dirtyFiles.size()));
 
-        // iterating through files not stored R times
-        for(String file : filesNotStoredMinTimes.keySet()){
-            int neededDstores = rebalancedSystem.getSystem().getMinDstores() - filesNotStoredMinTimes.get(file);
+            // CHECKING THE CHANGED FILES //
 
-            // gathering dstores to store the file on
-            ArrayList<Integer> dstoresToStoreOn = Rebalancer.getDstoresToSendTo(rebalancedSystem.getSystem(), file, neededDstores);
+            if(index.isBalanced(dirtyFiles)){
+                // event for rebalance not required
+                this.controller.handleEvent(new RebalanceNotRequiredEvent());
+                return;
+            }
 
-            // gathering dstore to send the file to the others
-            Integer dstoreToSendFrom = rebalancedSystem.getSystem().getDstoreThatHasFile(file);
+            // PLANNING FROM THE INDEX //
 
-            // creating file to send object
-            FileToSend fileToSend = new FileToSend(file, rebalancedSystem.getSystem().getFileSize(file), dstoresToStoreOn);
+            index.startIncrementalRebalance();
 
-            // adding FileToSend object to rebalance information
-            rebalancedSystem.addFileToSend(dstoreToSendFrom, fileToSend);
+            try{
+                this.rebalanceSystem(this.getSystem(index.getFileDistribution()));
+            }
+            finally{
+                // releasing the rebalance if the Dstores were never instructed
+                index.finishIncrementalRebalance();
+            }
+        }
+        catch(NetworkException e){
+            // changes not rebalanced - keeping them for the next rebalance
+            index.addDirtyFiles(dirtyFiles);
+            throw e;
         }
-
-        // RETURNING RESULT //
-
-        return rebalancedSystem;
     }
 
     /**
-     * Rebalances the given system in the case where files are not stored evenly across 
-     * the Dstores.
+     * Rebalances the given system, if it is not already balanced. 
      * 
-     * @param rebalancedSystem The RebalancedSystem object that is being rebalanced due to
-     * files not being stored evenly across Dstores.
-     * @return The RebalancedSystem object that has been updated so that files are stored
-     * across dstores evenly.
+     * @param system The current file distribution of the system.
+     * @throws NetworkException If the Dstores could not be instructed, or did not complete
+     * the rebalance within the timeout.
      */
-    private static RebalancedSystem rebalanceForNotStoredEvenly(RebalancedSystem rebalancedSystem){
-        // calculating min and max values
-        double r = rebalancedSystem.getSystem().getMinDstores();
-        double f = rebalancedSystem.getSystem().getNumberOfFiles();
-        double n = rebalancedSystem.getSystem().getNumberOfDstores();
-        double averageFiles = r * f / n;
-        double minFiles = Math.floor(averageFiles);
-        double maxFiles = Math.ceil(averageFiles);
-
-        // iterating over dstores
-        for(Integer dstore : rebalancedSystem.getSystem().getDstores()){
-            
-            // DEALING WITH TOO LITTLE FILES //
+    private void rebalanceSystem(System system) throws NetworkException{
 
-            while(rebalancedSystem.getSystem().getFilesOnDstore(dstore).size() < minFiles){
-
-                // FINDING FILE THAT CAN BE STOLEN //
+        // CHECKING IF SYSTEM IS BALANCED //
 
-                FileOnDstore fileOnDstoreToSteal = Rebalancer.getFileToSteal(rebalancedSystem.getSystem(), dstore);
+        if(!system.isBalanced()){
 
-                // CREATING FILE TO SEND OBJECT //
+            // REBALANCING //
 
-                FileToSend fileToSend = new FileToSend(fileOnDstoreToSteal.getFilename(), fileOnDstoreToSteal.getFileSize(), new ArrayList<Integer>(List.of(dstore)));
+            // calculating the adjustments
+            RebalancedSystem rebalancedSystem = Rebalancer.getRebalancedSystem(system);
 
-                // UPDATING REBALANCE INFORMATION //
+            // starting the moving process
+            this.controller.getIndex().startRebalanceMove(rebalancedSystem.getRebalanceInformation());
 
-                // the dstore the file is being stolen from must send the file
-                rebalancedSystem.addFileToSend(fileOnDstoreToSteal.getDstore(), fileToSend);
+            // sending rebalance messages
+            try{
+                for(Integer dstore : rebalancedSystem.getRebalanceInformation().keySet()){
+                    // forming message
+                    String rebalanceMessage = rebalancedSystem.getRebalanceInformation().get(dstore).getRebalanceMessage();
 
-                // the dstore the file is being stolen from must remove the file
-                rebalancedSystem.addFileToRemove(fileOnDstoreToSteal.getDstore(), fileToSend.filename);
+                    // sending message
+                    this.controller.getIndex().getIndexFromPort(dstore).getConnection().sendMessage(rebalanceMessage);
+                }
+            }
+            catch(Exception e){
+                // not all Dstores instructed - abandoning the rebalance
+                this.controller.getIndex().abandonRebalance();
+                throw e;
             }
 
-            // DEALING WITH TOO MANY FILES //
-
-            while(rebalancedSystem.getSystem().getFilesOnDstore(dstore).size() > maxFiles){
-
-                // FINDING FILE THAT CAN BE SENT //
-
-                FileOnDstore fileOnDstoreToSend = Rebalancer.getFileToSend(rebalancedSystem.getSystem(), dstore);
-
-                // CREATING FILE TO SEND OBJECT //
-
-                FileToSend fileToSend = new FileToSend(fileOnDstoreToSend.getFilename(), fileOnDstoreToSend.getFileSize(), new ArrayList<Integer>(List.of(fileOnDstoreToSend.getDstore())));
-
-                // UPDATING REBALANCE INFORMATION //
+            // waiting for rebalance complete responses
+            this.controller.getIndex().waitForRebalanceState(RebalanceState.REBALANCE_COMPLETE_RECIEVED, this.controller.getTimeout());
 
-                // the dstore the file is being stolen from must send the file
-                rebalancedSystem.addFileToSend(dstore, fileToSend);
+            // REBALANCE COMPLETE //
 
-                // the dstore the file is being stolen from must remove the file
-                rebalancedSystem.addFileToRemove(dstore, fileToSend.filename);
+            // updating the index (an online rebalance has updated it as each Dstore completed)
+            if(this.controller.getRebalanceMode() == RebalanceMode.OFFLINE){
+                this.controller.getIndex().setFileDistribution(rebalancedSystem.getSystem().getFileDistribution());
             }
-        }
 
-        // RETURNING RESULT //
-
-        return rebalancedSystem;
+            // creating event to show rebalance successfull
+            this.controller.handleEvent(new RebalanceCompleteEvent());
+        }
+        else{
+            // event for rebalance not required
+            this.controller.handleEvent(new RebalanceNotRequiredEvent());
+        }
     }
 
-    ////////////////////
-    // HELPER METHODS //
-    ////////////////////
-
     /**
-     * Gathers a specified number of Dstores that the provided file can be sent. The file
-     * can be sent to any Dstores that it is not already stored on.
+     * Determines if the next periodic rebalance can be an incremental one.
      * 
-     * @param system The System being rebalanced.
-     * @param filename The name of the file being sent to other Dstores.
-     * @param neededDstores The number of Dstores the file must be sent to.
-     * @return A list of dstores the file can be sent to.
+     * @return True if incremental planning is enabled, the Dstores do not need to be listed
+     * and the full rebalance period has not passed, false if not.
      */
-    public static ArrayList<Integer> getDstoresToSendTo(System system, String filename, int neededDstores){
-        // getting sorted list of dstores
-        ArrayList<Integer> sortedDstores = system.getDstoresSortedByFiles();
-
-        // forming list of dstores that the file can be sent to
-        ArrayList<Integer> dstoresToSendTo = new ArrayList<Integer>();
-        for(Integer dstore : sortedDstores){
-            // only chosing dstores that do not already store the file
-            if(!system.getFilesOnDstore(dstore).keySet().contains(filename)){
-                // adding dstoe to the list
-                dstoresToSendTo.add(dstore);
-
-                // breaking from the loop if the needed amount have been found.
-                if(dstoresToSendTo.size() == neededDstores){
-                    break;
-                }
-            }
-        }
-
-        // returning the list of dstores
-        return dstoresToSendTo;
+    private boolean isIncrementalRebalanceDue(){
+        return (this.controller.getRebalancePlanning() == RebalancePlanning.INCREMENTAL &&
+                !this.controller.getIndex().isListRequired() &&
+                java.lang.System.currentTimeMillis() - this.lastFullRebalance < this.controller.getFullRebalancePeriod());
     }
 
     /**
-     * Finds a Dstore and file within the provided System that can be stolen
-     * by the provided Dstore. A file can be stolen if the file is not already
-     * contained on the Dstore that is stealing the file.
+     * Creates the System for a file distribution. When files are placed on a hash ring, the 
+     * System is given a ring of the Dstores in the distribution (rather than the Index's ring, 
+     * which may have changed since the distribution was gathered).
      * 
-     * @param system The system the Dstore stealing a file is contained within.
-     * @param dstoreStealing The Dstore stealing the file.
-     * @return A FileOnDstore object representing a file on a Dstore that can be stolen
-     * by the provided Dstore.
+     * @param fileDistribution The distribution of files across Dstores.
+     * @return The System for the file distribution.
      */
-    public static FileOnDstore getFileToSteal(System system, Integer dstoreStealing){
-        // sort dstores based on files 
-        ArrayList<Integer> sortedDstores = system.getDstoresSortedByFiles();
-
-        // reversing the list - most-to-fewest
-        Collections.reverse(sortedDstores);
-
-        // list of the files on the dstore stealing
-        ArrayList<String> filesOnDstoreStealing = new ArrayList<String>(system.getFilesOnDstore(dstoreStealing).keySet());
-
-        // finding file that can be stolen (first file on highest ranking dstore that is not already on the dstore stealing)
-        for(Integer dstoreToStealFrom : sortedDstores){
-            // only picking dstore that is not the one stealing
-            if(dstoreToStealFrom != dstoreStealing){
-                // iterating over this dstore's files
-                for(String fileToSteal : system.getFilesOnDstore(dstoreToStealFrom).keySet()){
-                    // finding file that is not on the dstore stealing
-                    if(!filesOnDstoreStealing.contains(fileToSteal)){
-                        // returning the FileOnDstore
-                        return new FileOnDstore(dstoreToStealFrom, fileToSteal, system.getFileSize(fileToSteal));
-                    }
-                }
-            }
+    private System getSystem(HashMap<Integer, HashMap<String, Integer>> fileDistribution){
+        if(this.controller.getPlacementStrategy() == PlacementStrategy.RING){
+            HashRing hashRing = new HashRing(this.controller.getVirtualNodes(), fileDistribution.keySet());
+
+            return new System(this.controller.getMinDstores(), fileDistribution, this.controller.getPlacementPolicy(), hashRing);
         }
 
-        // no suitable file found - returning null
-        return null;
+        return new System(this.controller.getMinDstores(), fileDistribution, this.controller.getPlacementPolicy());
     }
 
+    /////////////////////////////
+    // CALCULATING ADJUSTMENTS //
+    /////////////////////////////
+
     /**
-     * Finds a Dstore within the System, and File within the provided Dstore that can be sent
-     * to this Dstore. A file can be sent to another Dstore if it is not already containned on
-     * the Dstore it is being sent to.
+     * Creates a RebalancedSystem object for an unbalanced system.
      * 
-     * @param system The System the Dstore sending a file is contained within.
-     * @param dstoreSending The Dstore sending a file.
-     * @return A FileOnDstore object representing a file on the Dstore that can be sent
-     * to another Dstore within the System.
+     * @param system The unbalanced system that is being rebalanced.
+     * @return A RebalancedSystem object that contains the rebalanced
+     * file distribution and rebalance information.
      */
-    public static FileOnDstore getFileToSend(System system, Integer dstoreSending){
-        // sort dstores based on files 
-        ArrayList<Integer> sortedDstores = system.getDstoresSortedByFiles();
-
-        // list of the files on the dstore sending
-        ArrayList<String> filesOnDstoreSending = new ArrayList<String>(system.getFilesOnDstore(dstoreSending).keySet());
-
-        // finding file that can be stolen (first file on highest ranking dstore that is not already on the dstore stealing)
-        for(Integer dstoreToSendTo : sortedDstores){
-            // only picking dstore that is not the one stealing
-            if(dstoreToSendTo != dstoreSending){
-                // list of files on the dstore to send to
-                ArrayList<String> filesOnDstoreToSendTo = new ArrayList<String>(system.getFilesOnDstore(dstoreToSendTo).keySet());
-
-                // seeinng if dstore sending has a file that can be send to this dstore
-                for(String fileToSend : filesOnDstoreSending){
-                    if(!filesOnDstoreToSendTo.contains(fileToSend)){
-                        // suitable file found - returning the file on dstore object
-                        return new FileOnDstore(dstoreToSendTo, fileToSend, system.getFileSize(fileToSend));
-                    }
-                }
-            }
-        }
-
-        // no suitable file found - returning null
-        return null;
+    private static RebalancedSystem getRebalancedSystem(System system){
+        return new RebalancePlanner(system).plan();
     }
 }
\ No newline at end of file
@@ -2,24 +2,27 @@ package DS.Controller.Rebalancer;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.HashSet;
 
-import DS.Protocol.Token.TokenType.FileToSend;
+import DS.Controller.Placement.HashRing;
+import DS.Controller.Placement.PlacementPolicy;
 
 /**
  * Stores the contents of the Distributed File Storage System.
  * 
  * The contents of the distributed File Storage System include the 
  * minimum number of Dstores that each file must be replicated over
- * and the mapping of files across Dstores (file distribution).
+ * and the mapping of files across Dstores (file distribution), along with
+ * the policy used to measure how evenly the files are spread, and the hash
+ * ring of the Dstores if files are placed on a ring.
  */
 public class System{
 
     // member variables
     private int minDstores;
     private HashMap<Integer, HashMap<String, Integer>> fileDistribution;
+    private PlacementPolicy placementPolicy;
+    private HashRing hashRing; // null unless files are placed on a consistent-hash ring
 
     /**
      * Class constructor.
@@ -27,11 +30,29 @@ public class System{
      * @param minDstores The minimum number of Dstores that each file must be replicated
      * over.
      * @param fileDistribution The distribution of files across Dstores within the System.
+     * @param placementPolicy The policy that measures the load of the Dstores.
      */
-    public System(int minDstores, HashMap<Integer, HashMap<String, Integer>> fileDistribution){
+    public System(int minDstores, HashMap<Integer, HashMap<String, Integer>> fileDistribution, PlacementPolicy placementPolicy){
         // initializing
         this.minDstores = minDstores;
         this.fileDistribution = fileDistribution;
+        this.placementPolicy = placementPolicy;
+        this.hashRing = null;
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param minDstores The minimum number of Dstores that each file must be replicated
+     * over.
+     * @param fileDistribution The distribution of files across Dstores within the System.
+     * @param placementPolicy The policy that measures the load of the Dstores.
+     * @param hashRing The hash ring of the Dstores in the file distribution, that decides 
+     * the Dstores each file is stored on.
+     */
+    public System(int minDstores, HashMap<Integer, HashMap<String, Integer>> fileDistribution, PlacementPolicy placementPolicy, HashRing hashRing){
+        this(minDstores, fileDistribution, placementPolicy);
+        this.hashRing = hashRing;
     }
 
     ///////////////////////////////////
@@ -62,33 +83,6 @@ public class System{
         this.fileDistribution.get(dstore).remove(file);
     }
 
-    /**
-     * Updates the provided system state to reflect the changes made in the provided
-     * rebalance information.
-     * 
-     * @param rebalanceInformation The description of the changes made to the system state.
-     */
-    public void updateFromRebalanceInformation(HashMap<Integer, RebalanceInformation> rebalanceInformation){
-        // dealing with rebalance information for each dstore
-        for(Integer dstore : rebalanceInformation.keySet()){
-
-            // DEALING WITH FILES SENT //
-
-            for(FileToSend fileToSend : rebalanceInformation.get(dstore).getFilesToSend()){
-                for(int dstorePort : fileToSend.dStores){
-                    this.addFileToDstore(dstorePort, fileToSend.filename, fileToSend.filesize);
-                }
-            }
-
-            // DEALING WITH FILES REMOVED //
-            
-            for(String fileToRemove : rebalanceInformation.get(dstore).getFilesToRemove()){
-                // removing the file from the file distribution
-                this.removeFileFromDstore(dstore, fileToRemove);
-            }
-        }
-    }
-
     //////////////////////////
     // CHECKING IF BALANCED //
     //////////////////////////
@@ -97,11 +91,17 @@ public class System{
      * Determines if the System is balanced.
      * 
      * The System is balanced if all files are replicated the minimum
-     * number of times, and if files are stored evenly across Dstores.
+     * number of times, and if files are stored evenly across Dstores (or,
+     * when files are placed on a ring, if every file is stored on the Dstores
+     * that follow it on the ring).
      * 
      * @return True if the system is balanced, false if not.
      */
     public boolean isBalanced(){
+        if(this.hashRing != null){
+            return (this.filesStoredMinTimes() && this.filesStoredOnRing());
+        }
+
         return (this.filesStoredMinTimes() && this.filesStoredEvenly());
     }
 
@@ -120,30 +120,55 @@ public class System{
     /**
      * Determines if the files within the system are stored evenly across the Dstores.
      * 
-     * Files are stored evenly if each Dstore stores between Floor(R * F / N) and 
-     * Ceiling(R * F / N) files, where R is the replication factor, F is the number
-     * of files, and N is the number of Dstores (i.e., each Dstore stores the average
-     * amount of files).
+     * Files are stored evenly if the loads of the most and least loaded Dstores (as measured
+     * by the placement policy) differ by no more than the policy's tolerance. When balancing on
+     * the number of files, this means each Dstore stores between Floor(R * F / N) and 
+     * Ceiling(R * F / N) files, where R is the replication factor, F is the number of files,
+     * and N is the number of Dstores.
      * 
      * @return True if the files are stored evenly, false if not.
      */
     public boolean filesStoredEvenly(){
-        // calculating min and max values
-        double r = this.minDstores;
-        double f = this.getNumberOfFiles();
-        double n = this.getNumberOfDstores();
-        double averageFiles = r * f / n;
-        double minFiles = Math.floor(averageFiles);
-        double maxFiles = Math.ceil(averageFiles);
-
-        // looping over dstores and checking the number of files they store
-        for(int dstoreCount : this.getDstoreFileCount().values()){
-            if(dstoreCount < minFiles || dstoreCount > maxFiles){
-                return false;
+        long minLoad = Long.MAX_VALUE;
+        long maxLoad = Long.MIN_VALUE;
+        long largestFileLoad = 0;
+
+        // finding the loads of the least and most loaded dstores
+        for(HashMap<String, Integer> dstoreFiles : this.fileDistribution.values()){
+            long storedBytes = 0;
+            for(int filesize : dstoreFiles.values()){
+                storedBytes += filesize;
+                largestFileLoad = Math.max(largestFileLoad, this.placementPolicy.getFileLoad(filesize));
+            }
+
+            long load = this.placementPolicy.getDstoreLoad(dstoreFiles.size(), storedBytes);
+            minLoad = Math.min(minLoad, load);
+            maxLoad = Math.max(maxLoad, load);
+        }
+
+        // no dstores - nothing to spread
+        if(this.fileDistribution.isEmpty()){
+            return true;
+        }
+
+        return (maxLoad - minLoad <= this.placementPolicy.getTolerance(largestFileLoad));
+    }
+
+    /**
+     * Determines if every file within the system is stored only on the Dstores that
+     * follow it on the hash ring.
+     * 
+     * @return True if the files are stored on their Dstores on the ring, false if not.
+     */
+    public boolean filesStoredOnRing(){
+        for(Integer dstore : this.fileDistribution.keySet()){
+            for(String file : this.fileDistribution.get(dstore).keySet()){
+                if(!this.hashRing.getDstores(file, this.minDstores).contains(dstore)){
+                    return false;
+                }
             }
         }
 
-        // not returned false - file spread is good - returning true
         return true;
     }
 
@@ -208,38 +233,6 @@ public class System{
         return dstoreCount;
     }
 
-    /**
-     * Returns a list of all Dstores in the System, sorted by the number of files they 
-     * contain, in ascending order.
-     * 
-     * @return A list of all Dstores in the System, sorted according to the number of files 
-     * they contain.
-     */
-    public ArrayList<Integer> getDstoresSortedByFiles(){
-        // creating mapping for sorting (cannot sort a map of object -> map, but can sort map of object -> list)
-        HashMap<Integer, ArrayList<String>> dstoresList = new HashMap<Integer, ArrayList<String>>();
-        for(Integer dstore : this.fileDistribution.keySet()){
-            dstoresList.put(dstore, new ArrayList<String>(this.fileDistribution.get(dstore).keySet()));
-        }
-
-        // getting list of dstores in order of files they store
-        List<Integer> sortedDstoresList = dstoresList.entrySet().stream()
-            .collect(
-                    Collectors.toMap(
-                            Map.Entry::getKey,
-                            entry -> entry.getValue().size()
-                        ) // get a map where key=original key and value list size
-            )
-            .entrySet()
-            .stream() // sort map by value - list size
-            .sorted(Map.Entry.<Integer, Integer>comparingByValue())
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
-
-        // returning the sorted list of dstores
-        return new ArrayList<Integer>(sortedDstoresList);
-    }
-
     /////////////////////////
     // FILE HELPER METHODS //
     /////////////////////////
@@ -278,17 +271,12 @@ public class System{
      * @return The number of file stored in the System.
      */
     public int getNumberOfFiles(){
-        // list to hold all files
-        ArrayList<String> files = new ArrayList<String>();
+        // set to hold all files
+        HashSet<String> files = new HashSet<String>();
 
-        // iterating through dstordes and adding files to list
-        for(Integer dstore : this.fileDistribution.keySet()){
-            for(String file : this.fileDistribution.get(dstore).keySet()){
-                // only adding file if it's not yet been added
-                if(!files.contains(file)){
-                    files.add(file);
-                }
-            }
+        // iterating through dstores and adding their files to the set
+        for(HashMap<String, Integer> dstoreFiles : this.fileDistribution.values()){
+            files.addAll(dstoreFiles.keySet());
         }
 
         // returning number of files
@@ -315,20 +303,17 @@ public class System{
      * found in the file distribution.
      */
     public int getFileSize(String file){
-        // setting initial value for the filesize
-        int filesize = -1;
+        // finding a dstore that stores the file
+        for(HashMap<String, Integer> dstoreFiles : this.fileDistribution.values()){
+            Integer filesize = dstoreFiles.get(file);
 
-        // iterating through the file distributio to find the file
-        for(Integer dstore : this.fileDistribution.keySet()){
-            for(String f : this.fileDistribution.get(dstore).keySet()){
-                if(f.equals(file)){
-                    filesize = this.fileDistribution.get(dstore).get(f);
-                }
+            if(filesize != null){
+                return filesize;
             }
         }
 
-        // returning the filesize
-        return filesize;
+        // no record of the file
+        return -1;
     }
     
     /**
@@ -342,17 +327,10 @@ public class System{
         // map to hold all mappings
         HashMap<String, Integer> fileCount = new HashMap<String, Integer>();
 
-        // iterating through dstordes and adding files to list
-        for(Integer dstore : this.fileDistribution.keySet()){
-            for(String file : this.fileDistribution.get(dstore).keySet()){
-                // file not yet added - has a count of one
-                if(!fileCount.keySet().contains(file)){
-                    fileCount.put(file, 1);
-                }
-                // file already added - increment count by 1
-                else{
-                    fileCount.put(file, fileCount.get(file) + 1);
-                }
+        // iterating through dstores and counting each of their files
+        for(HashMap<String, Integer> dstoreFiles : this.fileDistribution.values()){
+            for(String file : dstoreFiles.keySet()){
+                fileCount.merge(file, 1, Integer::sum);
             }
         }
 
@@ -393,6 +371,14 @@ public class System{
         return this.minDstores;
     }
 
+    public PlacementPolicy getPlacementPolicy(){
+        return this.placementPolicy;
+    }
+
+    public HashRing getHashRing(){
+        return this.hashRing;
+    }
+
     public HashMap<Integer, HashMap<String, Integer>> getFileDistribution(){
         return this.fileDistribution;
     }
@@ -0,0 +1,29 @@
+package DS.DSClient;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * A request sent by a DSClient to the Controller, from which the Controller's replies to
+ * the request are read.
+ *
+ * A request is either sent on its own, with its replies read straight from the connection
+ * (so the Client's other requests wait until it is finished), or tagged and pipelined with
+ * the Client's other requests (see RequestPipeline).
+ */
+public interface ControllerRequest {
+
+    /**
+     * Waits for the next reply to the request.
+     *
+     * @return The reply.
+     * @throws MessageReceivedException If the reply could not be received, or could not be
+     * received within the Client's timeout.
+     */
+    public Token getReply() throws Exception;
+
+    /**
+     * Finishes the request, once all of its replies have been read or it has failed. Any
+     * further replies to the request are discarded.
+     */
+    public void finish();
+}
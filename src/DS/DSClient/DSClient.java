@@ -1,19 +1,36 @@
 package DS.DSClient;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import DS.Protocol.Codecs;
+import DS.Protocol.Codecs.CodecType;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
 import DS.Protocol.Event.Operation.RemoveCompleteEvent;
+import DS.Protocol.Event.Operation.ReplicaStoreCompleteEvent;
 import DS.Protocol.Event.Operation.StoreCompleteEvent;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.*;
 import DS.Protocol.Token.TokenType.*;
 import Network.*;
 import Network.Client.Client;
+import Network.Client.ConnectionPool;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Event.NetworkEvent;
 import Network.Protocol.Exception.ClientSetupException;
@@ -32,9 +49,51 @@ import Network.Server.Server.ServerType;
  * into the 'handleInputRequest' method.
  * 
  * The class is essentially a request handler for the DSClient.
+ * 
+ * A STORE uploads the file to all of the Dstores it is stored on in parallel, from a
+ * single memory-mapped copy of the file. Alternatively, the file can be uploaded to the
+ * first Dstore only, which forwards it along the rest of the Dstores as a chain (so the
+ * Client sends the file once).
+ * 
+ * Connections to Dstores are kept in a ConnectionPool and reused across operations.
+ * 
+ * Each operation can also be run asynchronously (e.g., storeFileAsync), returning a future
+ * of its result. If the Controller agrees to tagged requests, the Client's requests are
+ * pipelined on its connection to the Controller (see RequestPipeline), so its operations run
+ * at the same time. Otherwise, each request waits for the Client's previous request to
+ * finish before it is sent.
+ * 
+ * The operations of a Client can be run from any number of threads. The asynchronous
+ * operations in flight at once are bounded - once the bound is reached, a new operation
+ * either waits for one to finish (blocking the calling thread) or fails straight away.
+ * 
+ * Options:
+ *  - store-mode : parallel | chain (default parallel).
+ *  - codec : text | binary - codec requested when joining the Controller and Dstores (default text).
+ *  - list-chunk-size : files in each chunk when listing from the terminal with LIST_CHUNKED (default 0 - a single LIST).
+ *  - pipeline : true | false - requests tagged requests from the Controller, so that they are pipelined (default false).
+ *  - max-in-flight : asynchronous operations in flight at once (default 256).
+ *  - backpressure : block | fail - what happens to an asynchronous operation started while max-in-flight are in flight (default block).
  */
 public class DSClient extends Client{
 
+    // constants
+    private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    // member variables
+    private StoreMode storeMode;
+    private CodecType codec;
+    private int listChunkSize;
+    private boolean pipelining;
+    private RequestPipeline pipeline; // null unless the Controller agreed to tagged requests
+    private Semaphore serverPermit; // held by a request sent on its own until it is finished
+    private int maxInFlight;
+    private BackpressurePolicy backpressure;
+    private Semaphore inFlight; // held by each asynchronous operation until it is done
+    private ExecutorService operationExecutor;
+    private ExecutorService uploadExecutor;
+    private ConnectionPool dstoreConnections;
+
     /**
      * Class Constructor.
      * 
@@ -43,8 +102,40 @@ public class DSClient extends Client{
      * @param networkInterface The interface component for the Client.
      */
     public DSClient(int cPort, int timeout, NetworkInterface networkInterface) {
+        this(cPort, timeout, networkInterface, new NetworkOptions());
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param cPort The port of the Controller.
+     * @param timeout The message timeout period.
+     * @param networkInterface The interface component for the Client.
+     * @param options The optional settings for the Client.
+     */
+    public DSClient(int cPort, int timeout, NetworkInterface networkInterface, NetworkOptions options) {
         // initialising member variables
-        super(cPort, timeout, networkInterface);
+        super(cPort, timeout, networkInterface, options);
+        this.storeMode = options.getEnum("store-mode", StoreMode.class, StoreMode.PARALLEL);
+        this.codec = options.getEnum("codec", CodecType.class, CodecType.TEXT);
+        this.listChunkSize = options.getInt("list-chunk-size", 0);
+        this.pipelining = options.getBoolean("pipeline", false);
+        this.pipeline = null;
+        this.serverPermit = new Semaphore(1);
+        this.maxInFlight = Math.max(1, options.getInt("max-in-flight", DEFAULT_MAX_IN_FLIGHT));
+        this.backpressure = options.getEnum("backpressure", BackpressurePolicy.class, BackpressurePolicy.BLOCK);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.dstoreConnections = new ConnectionPool(this::connectToDstore, this.getSecondaryServerConnections()::remove, timeout, options);
+        this.uploadExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "store-upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.operationExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "client-operation");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     ///////////
@@ -62,7 +153,7 @@ public class DSClient extends Client{
             // JOIN_CLIENT //
 
             // sending JOIN_CLIENT message to controller
-            this.getServerConnection().sendMessage(Protocol.getJoinClientMessage());
+            this.getServerConnection().sendMessage(Protocol.getJoinClientMessage(Codecs.getRequestName(this.codec), this.pipelining));
 
             // waiting for JOIN_ACK
             Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
@@ -73,6 +164,15 @@ public class DSClient extends Client{
                 throw new InvalidMessageException(response.message, this.getServerConnection().getPort());
             }
 
+            // switching to the agreed codec
+            Codecs.joined(this.getServerConnection(), (JoinAckToken) response);
+
+            // pipelining requests if tagged requests were agreed
+            if(this.pipelining && ((JoinAckToken) response).tagged){
+                this.pipeline = new RequestPipeline(this, this.getServerConnection());
+                this.pipeline.start();
+            }
+
             // JOIN_CLIENT_HEARTBEAT //
 
             // sending JOIN_CLIENT_HEARTBEAT message to controller
@@ -96,6 +196,13 @@ public class DSClient extends Client{
         }
     }
 
+    /**
+     * Closes the DSClient's idle connections to Dstores.
+     */
+    public void close(){
+        this.dstoreConnections.close();
+    }
+
     ////////////////////
     // EVENT HANDLING //
     ////////////////////
@@ -174,28 +281,73 @@ public class DSClient extends Client{
      */
     public void storeFile(File file, int filesize) throws Exception{
         // sending the store message to the controller
-        this.getServerConnection().sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
+        ControllerRequest request = this.sendRequest(Protocol.getStoreMessage(file.getName(), filesize));
 
-        // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        try{
+            // gathering response
+            Token response = request.getReply();
         
-        // STORE_TO
-        if(response instanceof StoreToToken){
-            // gathering the token
-            StoreToToken storeToToken = (StoreToToken) response;
+            // STORE_TO
+            if(response instanceof StoreToToken){
+                // gathering the token
+                StoreToToken storeToToken = (StoreToToken) response;
+
+                // mapping the file (read once, shared by the uploads to each dstore)
+                MappedByteBuffer fileContent;
+                try(FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                    fileContent = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, filesize);
+                }
             
-            // sending file to each dstore
-            for(int dstore : storeToToken.ports){
-                this.sendFileToDstore(file, filesize, dstore);
+                // sending file to the first dstore, which forwards it along the rest
+                if(this.storeMode == StoreMode.CHAIN && !storeToToken.ports.isEmpty()){
+                    ArrayList<Integer> chain = storeToToken.ports;
+                    String message = Protocol.getStoreChainMessage(file.getName(), filesize, chain.subList(1, chain.size()));
+
+                    this.sendFileToDstore(file, fileContent, message, chain.get(0));
+                }
+                // sending file to each dstore in parallel
+                else{
+                    String message = Protocol.getStoreMessage(file.getName(), filesize);
+
+                    ArrayList<CompletableFuture<Void>> uploads = new ArrayList<CompletableFuture<Void>>();
+                    for(int dstore : storeToToken.ports){
+                        uploads.add(CompletableFuture.runAsync(() -> {
+                            try{
+                                this.sendFileToDstore(file, fileContent.duplicate(), message, dstore);
+                            }
+                            catch(Exception e){
+                                throw new CompletionException(e);
+                            }
+                        }, this.uploadExecutor));
+                    }
+
+                    // waiting for the uploads to finish
+                    this.awaitUploads(uploads);
+                }
+
+                // waiting for response from Controller
+                response = request.getReply();
+
+                // STORE_COMPLETE
+                if(response instanceof StoreCompleteToken){
+                    // logging operation complete
+                    this.handleEvent(new StoreCompleteEvent(file.getName(), filesize));
+                }
+
+                // Invalid Response
+                else{
+                    throw new InvalidMessageException(response.message, this.getServerPort());
+                }
             }
 
-            // waiting for response from Controller
-            response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+            // ERROR_NOT_ENOUGH_DSTORES
+            else if(response instanceof ErrorNotEnoughDStoresToken){
+                throw new NotEnoughDstoresException();
+            }
 
-            // STORE_COMPLETE
-            if(response instanceof StoreCompleteToken){
-                // logging operation complete
-                this.handleEvent(new StoreCompleteEvent(file.getName(), filesize));
+            // ERROR_FILE_ALREADY_EXISTS
+            else if(response instanceof ErrorFileAlreadyExistsToken){
+                throw new FileAlreadyExistsException(file.getName());
             }
 
             // Invalid Response
@@ -203,20 +355,34 @@ public class DSClient extends Client{
                 throw new InvalidMessageException(response.message, this.getServerPort());
             }
         }
-
-        // ERROR_NOT_ENOUGH_DSTORES
-        else if(response instanceof ErrorNotEnoughDStoresToken){
-            throw new NotEnoughDstoresException();
+        finally{
+            request.finish();
         }
+    }
 
-        // ERROR_FILE_ALREADY_EXISTS
-        else if(response instanceof ErrorFileAlreadyExistsToken){
-            throw new FileAlreadyExistsException(file.getName());
+    /**
+     * Waits for the uploads of a file to all of its Dstores to finish.
+     * 
+     * @param uploads The uploads of the file.
+     * @throws Exception The error of the first upload that failed (once all of the uploads
+     * have finished).
+     */
+    private void awaitUploads(ArrayList<CompletableFuture<Void>> uploads) throws Exception{
+        Exception error = null;
+
+        for(CompletableFuture<Void> upload : uploads){
+            try{
+                upload.join();
+            }
+            catch(CompletionException e){
+                if(error == null){
+                    error = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
         }
 
-        // Invalid Response
-        else{
-            throw new InvalidMessageException(response.message, this.getServerPort());
+        if(error != null){
+            throw error;
         }
     }
 
@@ -224,70 +390,47 @@ public class DSClient extends Client{
      * Sends the file with the given name to the Dstore listening on the provided port.
      * 
      * @param file The file to be sent to the Dstore
+     * @param fileContent The content of the file.
+     * @param storeMessage The request that stores the file (STORE or STORE_CHAIN).
      * @param dstore The Dstore the file is being send to.
      * 
      * @throws MessageSendException If a message couldn't be sent through the connection.
      * @throws MessageReceievedException If a message could not be receieved through the connection.
      * @throws InvalidMessageException If a message of the wrong form is receieved during the communication.
      */
-    private void sendFileToDstore(File file, int filesize, int dstore) throws Exception{
-        // loading the file
-        FileInputStream fileInput = new FileInputStream(file);
+    private void sendFileToDstore(File file, ByteBuffer fileContent, String storeMessage, int dstore) throws Exception{
+        long startTime = System.nanoTime();
 
-        // setting up the connection
-        Connection connection = new Connection(this.getNetworkInterface(), dstore, ServerType.DSTORE);
-
-        // adding connection to client
-        this.getSecondaryServerConnections().add(connection);
-
-        // sending client join message
-        connection.sendMessage(Protocol.getJoinClientMessage());
+        // gathering a connection to the dstore
+        Connection connection = this.dstoreConnections.acquire(dstore);
 
         try{
+            // sending store message
+            connection.sendMessage(storeMessage);
+
             // waiting for acknowledgement
             Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
 
-            // making sure response is JOIN_ACK
-            if(response instanceof JoinAckToken){
-                // sending store message
-                connection.sendMessage(Protocol.getStoreMessage(file.getName(), filesize));
+            // making sure acknowledgement was receieved
+            if(response instanceof AckToken){
+                // sending the file to the dstore
+                connection.sendBytes(fileContent);
 
-                // waiting for acknowledgement
-                response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
+                // giving the connection back to the pool
+                this.dstoreConnections.release(connection);
 
-                // making sure acknowledgement was receieved
-                if(response instanceof AckToken){
-                    // sending the file to the dstore
-                    byte[] fileContent = fileInput.readNBytes(filesize);
-                    connection.sendBytes(fileContent);
-
-                    // closing streams
-                    connection.close();
-                    fileInput.close();
-                }
-                // invalid response received
-                else{
-                    // closing streams
-                    connection.close();
-                    fileInput.close();
-
-                    // throwing exception
-                    throw new InvalidMessageException(response.message, connection.getPort());
-                }
+                // logging the upload
+                this.handleEvent(new ReplicaStoreCompleteEvent(file.getName(), dstore, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
             }
             // invalid response received
             else{
-                // closing streams
-                connection.close();
-                fileInput.close();
-
                 // throwing exception
                 throw new InvalidMessageException(response.message, connection.getPort());
             }
         }
         catch(Exception e){
             // closing connection
-            connection.close();
+            this.dstoreConnections.discard(connection);
 
             // throwing exception
             throw e;
@@ -324,10 +467,16 @@ public class DSClient extends Client{
         }
 
         // sending LOAD message to controller
-        this.getServerConnection().sendMessage(message);
+        ControllerRequest request = this.sendRequest(message);
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response;
+        try{
+            response = request.getReply();
+        }
+        finally{
+            request.finish();
+        }
         
         // LOAD_FROM
         if(response instanceof LoadFromToken){
@@ -388,44 +537,69 @@ public class DSClient extends Client{
      * @throws MessageReceievedException If a message could not be receieved through the connection.
      */
     private byte[] loadFileFromDstore(int port, String filename, int filesize) throws Exception{
+        // gathering a connection to the dstore
+        Connection connection = this.dstoreConnections.acquire(port);
+
+        try{
+            // sending LOAD_DATA message
+            connection.sendMessage(Protocol.getLoadDataMessage(filename));
+
+            // reading file data
+            byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.getTimeout());
+
+            // giving the connection back to the pool
+            this.dstoreConnections.release(connection);
+
+            return fileContent;
+        }
+        catch(Exception e){
+            // closing connection
+            this.dstoreConnections.discard(connection);
+
+            // throwing exception
+            throw e;
+        }
+    }
+
+    /**
+     * Sets up a new connection to a Dstore (used by the pool of Dstore connections).
+     * 
+     * @param dstore The port of the Dstore.
+     * @return The connection to the Dstore, which has joined the Dstore.
+     * 
+     * @throws ConnectionSetupException If the connection could not be set up.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws MessageReceievedException If a message could not be receieved through the connection.
+     * @throws InvalidMessageException If the Dstore did not acknowledge the join.
+     */
+    private Connection connectToDstore(int dstore) throws Exception{
         // setting up the connection
-        Connection connection = new Connection(this.getNetworkInterface(), port, ServerType.DSTORE);
-        
+        Connection connection = new Connection(this.getNetworkInterface(), dstore, ServerType.DSTORE);
+
         // adding connection to client
         this.getSecondaryServerConnections().add(connection);
 
-        // sending JOIN_CLIENT message
-        connection.sendMessage(Protocol.getJoinClientMessage());
-
         try{
+            // sending client join message
+            connection.sendMessage(Protocol.getJoinClientMessage(Codecs.getRequestName(this.codec)));
+
             // waiting for acknowledgement
             Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.getTimeout()));
 
             // making sure response is JOIN_ACK
-            if(response instanceof JoinAckToken){
-                 // sending LOAD_DATA message
-                connection.sendMessage(Protocol.getLoadDataMessage(filename));
-
-                // reading file data
-                byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.getTimeout());
-
-                // closing connection
-                connection.close();
-
-                return fileContent;
-            }
-            // invalid response received
-            else{
-                // closing streams
-                connection.close();
-
-                // throwing exception
+            if(!(response instanceof JoinAckToken)){
                 throw new InvalidMessageException(response.message, connection.getPort());
             }
+
+            // switching to the agreed codec
+            Codecs.joined(connection, (JoinAckToken) response);
+
+            return connection;
         }
         catch(Exception e){
             // closing connection
             connection.close();
+            this.getSecondaryServerConnections().remove(connection);
 
             // throwing exception
             throw e;
@@ -451,10 +625,16 @@ public class DSClient extends Client{
      */
     public void removeFile(String filename) throws Exception{
         // sending remove to controller
-        this.getServerConnection().sendMessage(Protocol.getRemoveMessage(filename));
+        ControllerRequest request = this.sendRequest(Protocol.getRemoveMessage(filename));
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response;
+        try{
+            response = request.getReply();
+        }
+        finally{
+            request.finish();
+        }
 
         // REMOVE
         if(response instanceof RemoveCompleteToken){
@@ -490,10 +670,16 @@ public class DSClient extends Client{
      */
     public HashMap<String, Integer> getFileList() throws Exception{
         // sending message to Controller
-        this.getServerConnection().sendMessage(Protocol.getListMessage());
+        ControllerRequest request = this.sendRequest(Protocol.getListMessage());
 
         // gathering response
-        Token response = RequestTokenizer.getToken(this.getServerConnection().getMessageWithinTimeout(this.getTimeout()));
+        Token response;
+        try{
+            response = request.getReply();
+        }
+        finally{
+            request.finish();
+        }
 
         // LIST file1 file2 ...
         if(response instanceof ListFilesToken){
@@ -517,4 +703,235 @@ public class DSClient extends Client{
             throw new InvalidMessageException(response.message, this.getServerPort());
         }
     }
+
+    /**
+     * Handles a LIST_CHUNKED request, which lists the files a chunk at a time.
+     * 
+     * The files are read from the returned listing as they arrive, so the memory used does
+     * not depend on the number of files. The listing must be read to its end (unless the
+     * Client's requests are pipelined, its other requests wait until it has been).
+     * 
+     * @param chunkSize The number of files in each chunk (capped by the Controller).
+     * @return The listing the chunks are read from.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     */
+    public FileListing listFiles(int chunkSize) throws Exception{
+        // sending message to Controller
+        ControllerRequest request = this.sendRequest(Protocol.getListChunkedMessage(chunkSize));
+
+        return new FileListing(this, request);
+    }
+
+    ///////////////////////////
+    // ASYNCHRONOUS REQUESTS //
+    ///////////////////////////
+
+    /**
+     * Stores a file in the system asynchronously.
+     * 
+     * @param file The file object to be stored.
+     * @param filesize The size of the file being stored.
+     * @return Future completed once the file has been stored (or completed exceptionally with
+     * the error that storeFile would throw).
+     */
+    public CompletableFuture<Void> storeFileAsync(File file, int filesize){
+        return this.runOperation(() -> {
+            this.storeFile(file, filesize);
+            return null;
+        });
+    }
+
+    /**
+     * Loads a file from the system asynchronously.
+     * 
+     * @param filename The name of the file being loaded.
+     * @return Future of the content of the file.
+     */
+    public CompletableFuture<byte[]> loadFileAsync(String filename){
+        return this.runOperation(() -> this.loadFile(filename, false));
+    }
+
+    /**
+     * Removes a file from the system asynchronously.
+     * 
+     * @param filename The name of the file being removed.
+     * @return Future completed once the file has been removed.
+     */
+    public CompletableFuture<Void> removeFileAsync(String filename){
+        return this.runOperation(() -> {
+            this.removeFile(filename);
+            return null;
+        });
+    }
+
+    /**
+     * Gathers the list of files stored in the system asynchronously.
+     * 
+     * @return Future of the map of filename to filesize for the files in the system.
+     */
+    public CompletableFuture<HashMap<String, Integer>> getFileListAsync(){
+        return this.runOperation(() -> this.getFileList());
+    }
+
+    /**
+     * Runs an operation on the Client's operation threads, once it can be put in flight.
+     * 
+     * With BLOCK backpressure, the calling thread waits until fewer than max-in-flight
+     * operations are in flight. With FAIL backpressure, the operation fails straight away
+     * instead.
+     * 
+     * @param operation The operation.
+     * @return Future of the result of the operation (completed exceptionally with a
+     * TooManyOperationsException if the operation could not be put in flight).
+     */
+    private <T> CompletableFuture<T> runOperation(Callable<T> operation){
+        // putting the operation in flight
+        try{
+            if(this.backpressure == BackpressurePolicy.BLOCK){
+                this.inFlight.acquire();
+            }
+            else if(!this.inFlight.tryAcquire()){
+                return CompletableFuture.failedFuture(new TooManyOperationsException(this.maxInFlight));
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        try{
+            return CompletableFuture.supplyAsync(() -> {
+                try{
+                    return operation.call();
+                }
+                catch(Exception e){
+                    throw new CompletionException(e);
+                }
+                finally{
+                    // done before the future completes, so that the operations the caller
+                    // starts once it completes do not wait for this one
+                    this.inFlight.release();
+                }
+            }, this.operationExecutor);
+        }
+        catch(RejectedExecutionException e){
+            // operation could not be started - taking it back out of flight
+            this.inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    //////////////
+    // REQUESTS //
+    //////////////
+
+    /**
+     * Sends a request to the Controller.
+     * 
+     * The request is pipelined if the Controller agreed to tagged requests. Otherwise, its
+     * replies are read straight from the connection, so it waits for the Client's previous
+     * request to finish before it is sent.
+     * 
+     * @param message The request.
+     * @return The request, from which its replies are read (and which must be finished).
+     * @throws MessageSendException If the request could not be sent.
+     * @throws InterruptedException If the thread was interrupted while waiting to send the request.
+     */
+    private ControllerRequest sendRequest(String message) throws Exception{
+        // pipelined - sent alongside the Client's other requests
+        if(this.pipeline != null){
+            return this.pipeline.send(message);
+        }
+
+        // sent on its own
+        this.serverPermit.acquire();
+        try{
+            this.getServerConnection().sendMessage(message);
+        }
+        catch(Exception e){
+            this.serverPermit.release();
+            throw e;
+        }
+
+        return new SingleRequest();
+    }
+
+    /**
+     * A request sent on its own, whose replies are read straight from the connection to
+     * the Controller.
+     */
+    private class SingleRequest implements ControllerRequest {
+
+        // member variables
+        private AtomicBoolean finished;
+
+        /**
+         * Class constructor.
+         */
+        private SingleRequest(){
+            this.finished = new AtomicBoolean(false);
+        }
+
+        public Token getReply() throws Exception{
+            return RequestTokenizer.getToken(DSClient.this.getServerConnection().getMessageWithinTimeout(DSClient.this.getTimeout()));
+        }
+
+        public void finish(){
+            // letting the next request be sent
+            if(this.finished.compareAndSet(false, true)){
+                DSClient.this.serverPermit.release();
+            }
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getListChunkSize(){
+        return this.listChunkSize;
+    }
+
+    /**
+     * Returns the maximum number of asynchronous operations in flight.
+     * 
+     * @return The number of operations that can be started and not yet done at once.
+     */
+    public int getMaxInFlight(){
+        return this.maxInFlight;
+    }
+
+    /**
+     * Returns the number of asynchronous operations in flight.
+     * 
+     * @return The number of operations started and not yet done.
+     */
+    public int getOperationsInFlight(){
+        return this.maxInFlight - this.inFlight.availablePermits();
+    }
+
+    ////////////////
+    // STORE MODE //
+    ////////////////
+
+    /**
+     * The ways a file can be uploaded to the Dstores it is stored on.
+     */
+    public enum StoreMode {
+        PARALLEL, // the Client uploads the file to every Dstore
+        CHAIN; // the Client uploads the file to the first Dstore, which forwards it along the rest
+    }
+
+    //////////////////
+    // BACKPRESSURE //
+    //////////////////
+
+    /**
+     * What happens to an asynchronous operation started while the maximum number of
+     * operations are in flight.
+     */
+    public enum BackpressurePolicy {
+        BLOCK, // the calling thread waits until an operation is done
+        FAIL; // the operation fails with a TooManyOperationsException
+    }
 }
\ No newline at end of file
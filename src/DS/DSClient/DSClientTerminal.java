@@ -13,6 +13,7 @@ import DS.Protocol.Token.RequestTokenizer;
 import DS.Protocol.Token.Token;
 import DS.Protocol.Token.TokenType.*;
 import Network.NetworkInterface;
+import Network.NetworkOptions;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Exception.*;
 
@@ -39,8 +40,19 @@ public class DSClientTerminal extends NetworkInterface{
      * @param timeout The message timeout period.
      */
     public DSClientTerminal(int cPort, int timeout) {
+        this(cPort, timeout, new NetworkOptions());
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param cPort The port of the Controller.
+     * @param timeout The message timeout period.
+     * @param options The optional settings for the Client.
+     */
+    public DSClientTerminal(int cPort, int timeout, NetworkOptions options) {
         // initialising member variables
-        this.client = new DSClient(cPort, timeout, this);
+        this.client = new DSClient(cPort, timeout, this, options);
 
         // connecting to network
         this.startNetworkProcess(this.client);
@@ -199,6 +211,15 @@ public class DSClientTerminal extends NetworkInterface{
      * @throws Exception If the request could not be handeled.
      */
     public void handleListInput() throws Exception{
+        // gathering the list of files a chunk at a time
+        if(this.client.getListChunkSize() > 0){
+            FileListing listing = this.client.listFiles(this.client.getListChunkSize());
+            while(listing.nextChunk() != null){
+                // nothing to do with the chunk ...
+            }
+            return;
+        }
+
         // gathering the list of files
         HashMap<String, Integer> files = this.client.getFileList();
 
@@ -268,10 +289,12 @@ public class DSClientTerminal extends NetworkInterface{
 
         // Controller disconnected
         if(error.getException() instanceof ControllerDisconnectException){
+            this.client.close();
             System.exit(0);
         }
         // Client Start Exception
         else if(error.getException() instanceof ClientStartException){
+            this.client.close();
             System.exit(0);
         }
     }
@@ -284,6 +307,9 @@ public class DSClientTerminal extends NetworkInterface{
     
     /**
      * Main method - instantiates a new Client instance using the command line parammeters.
+     * 
+     * Any parameters after the timeout are optional settings of the form 'name=value'.
+     * 
      * @param args Parameters for the new Client.
      */
     public static void main(String[] args){
@@ -291,9 +317,10 @@ public class DSClientTerminal extends NetworkInterface{
             // gathering parameters
             int cPort = Integer.parseInt(args[0]);
             int timeout = Integer.parseInt(args[1]);
+            NetworkOptions options = NetworkOptions.fromArgs(args, 2);
 
             // Creating new Client instance
-            new DSClientTerminal(cPort, timeout);
+            new DSClientTerminal(cPort, timeout, options);
         }
         catch(Exception e){
             System.out.println("Unable to create Client.");
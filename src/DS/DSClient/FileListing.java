@@ -0,0 +1,106 @@
+package DS.DSClient;
+
+import java.util.HashMap;
+
+import DS.Protocol.Event.Operation.ListCompleteEvent;
+import DS.Protocol.Exception.InvalidMessageException;
+import DS.Protocol.Exception.NotEnoughDstoresException;
+import DS.Protocol.Token.Token;
+import DS.Protocol.Token.TokenType.ErrorNotEnoughDStoresToken;
+import DS.Protocol.Token.TokenType.ListChunkToken;
+import DS.Protocol.Token.TokenType.ListEndToken;
+
+/**
+ * The list of files stored in the system, read a chunk at a time as it arrives in reply to
+ * a LIST_CHUNKED request (see DSClient.listFiles).
+ * 
+ * Only one chunk of the list is held at a time (or, if the Client's requests are pipelined,
+ * the few chunks the pipeline holds for a request), and the first chunk can be read as soon
+ * as it arrives. Unless the Client's requests are pipelined, the chunks are read straight
+ * from the connection the request was sent on, so the Client's other requests wait until
+ * the whole list has been read.
+ */
+public class FileListing {
+
+    // member variables
+    private DSClient client;
+    private ControllerRequest request;
+    private boolean complete;
+
+    /**
+     * Class constructor.
+     * 
+     * @param client The Client that requested the list.
+     * @param request The LIST_CHUNKED request.
+     */
+    public FileListing(DSClient client, ControllerRequest request){
+        this.client = client;
+        this.request = request;
+        this.complete = false;
+    }
+
+    /**
+     * Gathers the next chunk of the list, waiting for it to arrive.
+     * 
+     * @return Map of filename to filesize for the files in the chunk, or null once the whole
+     * list has been read.
+     * @throws MessageReceievedException If the chunk could not be receieved through the connection.
+     * @throws NotEnoughDstoresException If there are not enough Dstores in the system to list the files.
+     * @throws InvalidMessageException If the response was not part of the list.
+     */
+    public HashMap<String, Integer> nextChunk() throws Exception{
+        if(this.complete){
+            return null;
+        }
+
+        // gathering response
+        Token response;
+        try{
+            response = this.request.getReply();
+        }
+        catch(Exception e){
+            this.complete = true;
+            this.request.finish();
+            throw e;
+        }
+
+        // LIST_CHUNK file1 size1 file2 size2 ...
+        if(response instanceof ListChunkToken){
+            return ((ListChunkToken) response).files;
+        }
+
+        this.complete = true;
+        this.request.finish();
+
+        // LIST_END
+        if(response instanceof ListEndToken){
+            // logging operation complete
+            this.client.handleEvent(new ListCompleteEvent());
+
+            return null;
+        }
+
+        // ERROR_NOT_ENOUGH_DSTORES
+        else if(response instanceof ErrorNotEnoughDStoresToken){
+            throw new NotEnoughDstoresException();
+        }
+
+        // Invalid response
+        else{
+            throw new InvalidMessageException(response.message, this.client.getServerPort());
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Determines if the whole list has been read.
+     * 
+     * @return True if the list has been read to its end (or failed), false if not.
+     */
+    public boolean isComplete(){
+        return this.complete;
+    }
+}
@@ -0,0 +1,218 @@
+package DS.DSClient;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import DS.Protocol.Protocol;
+import DS.Protocol.Token.RequestTokenizer;
+import DS.Protocol.Token.Token;
+import Network.Connection;
+import Network.Protocol.Exception.MessageReceivedException;
+import Network.Protocol.Exception.MessageSendException;
+import Network.Protocol.Exception.MessageTimeoutException;
+
+/**
+ * Pipelines a DSClient's requests on its connection to the Controller.
+ *
+ * Each request is tagged with an ID ("#<tag> <request>"), and the Controller tags its replies
+ * to the request with the same ID, so any number of requests can be in flight on the
+ * connection at once and the Controller can answer them in any order. The replies are read
+ * by the pipeline's own thread, which passes each reply to the request it is tagged with.
+ *
+ * Each request holds a bounded number of unread replies. The pipeline's thread waits while
+ * a request is full (so a slow reader of a long reply, e.g., a chunked LIST, pushes back on
+ * the Controller rather than the reply being buffered), and fails the request if it is not
+ * read within the Client's timeout.
+ *
+ * Pipelining is only used once the Controller has agreed to tagged requests while the
+ * Client joined it.
+ */
+public class RequestPipeline implements Runnable {
+
+    // constants
+    private static final int MAX_QUEUED_REPLIES = 4; // unread replies held for a single request
+
+    // member variables
+    private DSClient client;
+    private Connection connection;
+    private AtomicInteger lastTag;
+    private ConcurrentHashMap<Integer, PipelinedRequest> requests; // tag -> request not yet finished
+    private volatile Exception error; // set once replies can no longer be read
+
+    /**
+     * Class constructor.
+     *
+     * @param client The Client the requests are sent by.
+     * @param connection The connection to the Controller.
+     */
+    public RequestPipeline(DSClient client, Connection connection){
+        this.client = client;
+        this.connection = connection;
+        this.lastTag = new AtomicInteger();
+        this.requests = new ConcurrentHashMap<Integer, PipelinedRequest>();
+        this.error = null;
+    }
+
+    /**
+     * Starts reading the replies to the requests on a new thread.
+     */
+    public void start(){
+        this.client.getConnectionThreadFactory().start(this);
+    }
+
+    /**
+     * Method run when thread started.
+     */
+    public void run(){
+        try{
+            // looping while connection open
+            while(this.connection.isOpen()){
+                Token reply = RequestTokenizer.getToken(this.connection.getMessage());
+
+                // passing the reply to its request (replies to finished requests are discarded)
+                PipelinedRequest request = (reply.tag == null) ? null : this.requests.get(reply.tag);
+                if(request != null){
+                    request.addReply(reply);
+                }
+            }
+        }
+        catch(Exception e){
+            // failing the requests still waiting for replies
+            this.error = e;
+            for(PipelinedRequest request : this.requests.values()){
+                request.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Sends a request to the Controller.
+     *
+     * @param message The request.
+     * @return The request, from which its replies are read.
+     * @throws MessageSendException If the request could not be sent.
+     */
+    public ControllerRequest send(String message) throws MessageSendException{
+        int tag = this.lastTag.incrementAndGet() & Integer.MAX_VALUE;
+        PipelinedRequest request = new PipelinedRequest(tag);
+        this.requests.put(tag, request);
+
+        // replies can no longer be read
+        if(this.error != null){
+            request.finish();
+            throw new MessageSendException(message, this.connection.getPort(), this.error);
+        }
+
+        try{
+            this.connection.sendMessage(Protocol.getTaggedMessage(tag, message));
+        }
+        catch(MessageSendException e){
+            request.finish();
+            throw e;
+        }
+
+        return request;
+    }
+
+    ///////////////////////
+    // PIPELINED REQUEST //
+    ///////////////////////
+
+    /**
+     * A request in the pipeline, which holds its replies until they are read.
+     */
+    private class PipelinedRequest implements ControllerRequest {
+
+        // member variables
+        private int tag;
+        private ArrayDeque<Token> replies;
+        private Exception error;
+        private boolean finished;
+
+        /**
+         * Class constructor.
+         *
+         * @param tag The tag of the request.
+         */
+        private PipelinedRequest(int tag){
+            this.tag = tag;
+            this.replies = new ArrayDeque<Token>();
+            this.error = null;
+            this.finished = false;
+        }
+
+        public synchronized Token getReply() throws Exception{
+            long deadline = System.currentTimeMillis() + RequestPipeline.this.client.getTimeout();
+
+            // waiting for a reply
+            while(this.replies.isEmpty() && this.error == null){
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0){
+                    throw new MessageReceivedException(RequestPipeline.this.connection.getPort(), new MessageTimeoutException());
+                }
+
+                this.wait(remaining);
+            }
+
+            // replies are read before the pipeline's error (waking the pipeline if it is waiting for space)
+            if(!this.replies.isEmpty()){
+                this.notifyAll();
+                return this.replies.poll();
+            }
+
+            throw new MessageReceivedException(RequestPipeline.this.connection.getPort(), this.error);
+        }
+
+        public synchronized void finish(){
+            RequestPipeline.this.requests.remove(this.tag, this);
+
+            // discarding the unread replies (waking the pipeline if it is waiting for space)
+            this.finished = true;
+            this.replies.clear();
+            this.notifyAll();
+        }
+
+        /**
+         * Adds a reply to the request, waiting while the request holds the maximum number
+         * of unread replies. The request is failed if its replies are not read within the
+         * Client's timeout.
+         *
+         * @param reply The reply.
+         * @throws InterruptedException If the pipeline's thread is interrupted while waiting.
+         */
+        private synchronized void addReply(Token reply) throws InterruptedException{
+            long deadline = System.currentTimeMillis() + RequestPipeline.this.client.getTimeout();
+
+            // waiting for space
+            while(this.replies.size() >= MAX_QUEUED_REPLIES && !this.finished){
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0){
+                    this.fail(new MessageTimeoutException());
+                    this.finish();
+                    return;
+                }
+
+                this.wait(remaining);
+            }
+
+            // request finished - discarding the reply
+            if(this.finished){
+                return;
+            }
+
+            this.replies.add(reply);
+            this.notifyAll();
+        }
+
+        /**
+         * Fails the request, as no more replies can be read.
+         *
+         * @param error The error that stopped the replies being read.
+         */
+        private synchronized void fail(Exception error){
+            this.error = error;
+            this.notifyAll();
+        }
+    }
+}
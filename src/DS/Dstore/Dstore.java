@@ -1,9 +1,13 @@
 package DS.Dstore;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
+import DS.Protocol.Codecs;
+import DS.Protocol.Codecs.CodecType;
 import DS.Protocol.Protocol;
 import DS.Protocol.Exception.*;
 import DS.Protocol.Token.RequestTokenizer;
@@ -11,6 +15,7 @@ import DS.Protocol.Token.Token;
 import DS.Protocol.Token.TokenType.ErrorDstorePortInUseToken;
 import DS.Protocol.Token.TokenType.JoinAckToken;
 import Network.*;
+import Network.Client.ConnectionPool;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Event.NetworkEvent;
 import Network.Protocol.Exception.ClientDisconnectException;
@@ -28,17 +33,40 @@ import Network.Server.ServerThread;
   *
   * Connects to a Controller to join a data store and servers requests from DSClients
   * and the Controller.
+  *
+  * Files being received are written to temporary files in a directory of their own within
+  * the file store (so they are never mistaken for stored files, and are on the same file
+  * system as the stored files), and moved into place once they have been received in full.
+  *
+  * Connections to other Dstores (used to send files during a rebalance) are joined once
+  * and kept open in a pool, so that many files can be sent over them back-to-back.
+  * The sending of these files is run by a TransferScheduler.
+  *
+  * Options:
+  *  - peer-connections  : The maximum number of connections to each other Dstore (default 1).
+  *  - peer-idle-timeout : Time in ms after which an unused connection to another Dstore is
+  *                        closed (default 60000).
+  *  - codec             : text | binary - codec requested when joining the Controller and
+  *                        other Dstores (default text).
   */
 public class Dstore extends Server{
 
+    // constants
+    private static final String TEMP_DIRECTORY = ".receiving"; // directory within the file store holding files being received
+
     // member variables
     private int port;
     private int cPort;
     private int timeout;
     private String folderPath;
     private File fileStore;
+    private File tempStore; // directory of the files being received
     private ServerThread controllerThread;
     private NetworkInterface networkInterface;
+    private ConnectionPool peerConnections;
+    private AtomicLong peerHandshakes;
+    private TransferScheduler transferScheduler;
+    private CodecType codec;
 
     /**
      * Class constructor.
@@ -50,14 +78,32 @@ public class Dstore extends Server{
      * @param networkInterface The network interface for the Dstore.
      */
     public Dstore(int port, int cPort, int timeout, String folderPath, NetworkInterface networkInterface){
+        this(port, cPort, timeout, folderPath, networkInterface, new NetworkOptions());
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the DStore will listen on.
+     * @param cPort The port the Controller that the DStore will connect to is on.
+     * @param timeout The timout period for the DStore.
+     * @param fileFolder The folder where the DStore will store files.
+     * @param networkInterface The network interface for the Dstore.
+     * @param options The optional settings for the Dstore.
+     */
+    public Dstore(int port, int cPort, int timeout, String folderPath, NetworkInterface networkInterface, NetworkOptions options){
         // initializing member variables
-        super(ServerType.DSTORE, port, networkInterface);
+        super(ServerType.DSTORE, port, networkInterface, options);
         this.port = port;
         this.cPort = cPort;
         this.timeout = timeout;
         this.folderPath = folderPath;
         this.networkInterface = networkInterface;
         this.setRequestHandler(new DstoreRequestHandler(this));
+        this.peerConnections = new ConnectionPool(this::connectToPeer, this.getServerConnections()::remove, timeout, options.getInt("peer-connections", 1), options.getLong("peer-idle-timeout", 60000));
+        this.peerHandshakes = new AtomicLong();
+        this.transferScheduler = new TransferScheduler(this, options);
+        this.codec = options.getEnum("codec", CodecType.class, CodecType.TEXT);
     }
 
     ///////////
@@ -96,7 +142,7 @@ public class Dstore extends Server{
             this.controllerThread = new ServerThread(this, connection);
 
             // sending JOIN message to Controller
-            this.controllerThread.getConnection().sendMessage(Protocol.getJoinDstoreMessage(port));
+            this.controllerThread.getConnection().sendMessage(Protocol.getJoinDstoreMessage(port, Codecs.getRequestName(this.codec)));
 
             // handling response from Controller
 
@@ -105,6 +151,9 @@ public class Dstore extends Server{
             if(response instanceof JoinAckToken){
                 // Join Successful
 
+                // switching to the agreed codec
+                Codecs.joined(this.controllerThread.getConnection(), (JoinAckToken) response);
+
                 // starting the connection thread
                 this.controllerThread.start();
 
@@ -119,6 +168,52 @@ public class Dstore extends Server{
         }
     }
 
+    /**
+     * Sets up a new connection to another Dstore (used by the pool of peer connections).
+     * 
+     * @param port The port of the other Dstore.
+     * @return The connection to the Dstore, which has joined the Dstore.
+     * @throws ConnectionSetupException If the connection could not be set up.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws MessageReceievedException If a message could not be receieved through the connection.
+     * @throws InvalidMessageException If the Dstore did not acknowledge the join.
+     */
+    private Connection connectToPeer(int port) throws Exception{
+        // setting up the connection
+        Connection connection = new Connection(this.getNetworkInterface(), port, ServerType.DSTORE);
+
+        // adding connection to server
+        this.getServerConnections().add(connection);
+
+        try{
+            // sending dstore join message
+            connection.sendMessage(Protocol.getJoinDstoreMessage(this.port, Codecs.getRequestName(this.codec)));
+
+            // waiting for acknowledgement
+            Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.timeout));
+
+            // making sure response is JOIN_ACK
+            if(!(response instanceof JoinAckToken)){
+                throw new InvalidMessageException(response.message, connection.getPort());
+            }
+
+            // switching to the agreed codec
+            Codecs.joined(connection, (JoinAckToken) response);
+
+            this.peerHandshakes.incrementAndGet();
+
+            return connection;
+        }
+        catch(Exception e){
+            // closing connection
+            connection.close();
+            this.getServerConnections().remove(connection);
+
+            // throwing exception
+            throw e;
+        }
+    }
+
     /**
      * Makes sure the DStores file store is ready to use by creating a directory
      * if one doesnt already exist.
@@ -133,6 +228,27 @@ public class Dstore extends Server{
         if(!this.fileStore.exists()){
             this.fileStore.mkdir();
         }
+
+        // creating the directory of files being received
+        this.tempStore = new File(this.fileStore, TEMP_DIRECTORY);
+        if(!this.tempStore.exists()){
+            this.tempStore.mkdir();
+        }
+
+        // removing partially received files left behind by a previous run
+        for(File file : this.tempStore.listFiles()){
+            file.delete();
+        }
+    }
+
+    /**
+     * Closes the Dstore, along with its idle connections to other Dstores.
+     */
+    public void close(){
+        super.close();
+
+        // closing connections to other Dstores
+        this.peerConnections.close();
     }
 
     ////////////////////
@@ -214,13 +330,40 @@ public class Dstore extends Server{
         // creating hashmap of files
         HashMap<String, Integer> files = new HashMap<String, Integer>();
         for(File file : fileList){
-            files.put(file.getName(), (int) file.length());
+            // ignoring the directory of files that are still being received
+            if(!this.isTempStore(file)){
+                files.put(file.getName(), (int) file.length());
+            }
         }
 
         // returning map of files
         return files;
     }
 
+    /**
+     * Creates the temporary file that a file being received is written to, before it is
+     * moved into place.
+     * 
+     * @param filename The name of the file being received.
+     * @return The temporary file (with a short generated name, in the file store's directory
+     * of files being received, so that it can be moved into place atomically).
+     * @throws IOException If the file could not be created.
+     */
+    public File createTempFile(String filename) throws IOException{
+        return File.createTempFile("file", null, this.tempStore);
+    }
+
+    /**
+     * Determines if an entry of the file store is the directory of files that are still
+     * being received.
+     * 
+     * @param file The entry of the file store.
+     * @return True if the entry is the directory of files being received, false if not.
+     */
+    public boolean isTempStore(File file){
+        return file.getName().equals(TEMP_DIRECTORY) && file.isDirectory();
+    }
+
 
     /////////////////////////
     // GETTERS AND SETTERS //
@@ -246,6 +389,28 @@ public class Dstore extends Server{
         return this.fileStore;
     }
 
+    public ConnectionPool getPeerConnections(){
+        return this.peerConnections;
+    }
+
+    public TransferScheduler getTransferScheduler(){
+        return this.transferScheduler;
+    }
+
+    public CodecType getCodec(){
+        return this.codec;
+    }
+
+    /**
+     * Returns the number of connections to other Dstores that have been set up (i.e., the
+     * number of JOIN_DSTORE handshakes carried out).
+     * 
+     * @return The number of peer handshakes.
+     */
+    public long getPeerHandshakes(){
+        return this.peerHandshakes.get();
+    }
+
     public ServerThread getControllerThread(){
         return this.controllerThread;
     }
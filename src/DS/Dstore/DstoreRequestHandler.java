@@ -3,6 +3,7 @@ package DS.Dstore;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import DS.Protocol.Codecs;
 import DS.Protocol.Protocol;
 import DS.Protocol.Event.Operation.ListCompleteEvent;
 import DS.Protocol.Event.Operation.LoadCompleteEvent;
@@ -19,14 +20,16 @@ import Network.Protocol.Event.ServerConnectionEvent;
 import Network.Protocol.Exception.MessageSendException;
 import Network.Protocol.Exception.RequestHandlingException;
 import Network.Server.RequestHandler;
+import Network.Server.RequestTable;
 import Network.Server.Server.ServerType;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Handles requests sent to a Dstore by a DSClient and Controller.
@@ -35,6 +38,7 @@ public class DstoreRequestHandler extends RequestHandler{
     
     // member variables
     private Dstore dstore;
+    private RequestTable requests;
 
     /**
      * Class constructor.
@@ -45,6 +49,19 @@ public class DstoreRequestHandler extends RequestHandler{
         // initializing
         super(dstore);
         this.dstore = dstore;
+        this.requests = new RequestTable();
+
+        // registering the requests handled by the Dstore
+        this.requests.register(JoinClientToken.class, this::handleJoinClientRequest);
+        this.requests.register(JoinDstoreToken.class, this::handleJoinDstoreRequest);
+        this.requests.register(StoreToken.class, (connection, request) -> this.handleStoreRequest(connection, request.filename, request.filesize));
+        this.requests.register(StoreChainToken.class, (connection, request) -> this.handleStoreChainRequest(connection, request.filename, request.filesize, request.chain));
+        this.requests.register(LoadDataToken.class, (connection, request) -> this.handleLoadDataRequest(connection, request.filename));
+        this.requests.register(RemoveToken.class, (connection, request) -> this.handleRemoveRequest(connection, request.filename));
+        this.requests.register(ListToken.class, (connection, request) -> this.handleListRequest(connection));
+        this.requests.register(ListChunkedToken.class, (connection, request) -> this.handleListChunkedRequest(connection, request.chunkSize));
+        this.requests.register(RebalanceToken.class, (connection, request) -> this.handleRebalanceRequest(connection, request.filesToSend, request.filesToRemove));
+        this.requests.register(RebalanceStoreToken.class, (connection, request) -> this.handleRebalanceStoreRequest(connection, request.filename, request.filesize));
     }
 
     //////////
@@ -60,53 +77,8 @@ public class DstoreRequestHandler extends RequestHandler{
     public void handleRequestAux(Connection connection, Token request){
         // handling request
         try{
-            // JOIN_CLIENT //
-            if(request instanceof JoinClientToken){
-                this.handleJoinClientRequest(connection);
-            }
-
-            // JOIN_DSTORE //
-            else if(request instanceof JoinDstoreToken){
-                this.handleJoinDstoreRequest(connection);
-            }
-
-            // STORE //
-            else if(request instanceof StoreToken){
-                StoreToken storeToken = (StoreToken) request;
-                this.handleStoreRequest(connection, storeToken.filename, storeToken.filesize);
-            }
-
-            // LOAD_DATA //
-            else if(request instanceof LoadDataToken){
-                LoadDataToken loadToken = (LoadDataToken) request;
-                this.handleLoadDataRequest(connection, loadToken.filename);
-            }
-
-            // REMOVE //
-            else if(request instanceof RemoveToken){
-                RemoveToken removeToken = (RemoveToken) request;
-                this.handleRemoveRequest(connection, removeToken.filename);
-            }
-
-            // LIST //
-            else if(request instanceof ListToken){
-                this.handleListRequest(connection);
-            }
-
-            // REBALANCE //
-            else if(request instanceof RebalanceToken){
-                RebalanceToken rebalanceToken = (RebalanceToken) request;
-                this.handleRebalanceRequest(connection, rebalanceToken.filesToSend, rebalanceToken.filesToRemove);
-            }
-
-            // REBALANCE_STORE //
-            else if(request instanceof RebalanceStoreToken){
-                RebalanceStoreToken rebalanceStoreToken = (RebalanceStoreToken) request;
-                this.handleRebalanceStoreRequest(connection, rebalanceStoreToken.filename, rebalanceStoreToken.filesize);
-            }
-
-            // Invalid //
-            else{
+            if(!this.requests.handle(connection, request)){
+                // Invalid //
                 this.handleInvalidRequest(connection, request);
             }
         }
@@ -131,6 +103,19 @@ public class DstoreRequestHandler extends RequestHandler{
         }
     }
 
+    /**
+     * Determines if a request goes on to read further data from its connection.
+     * 
+     * STORE, STORE_CHAIN and REBALANCE_STORE requests go on to read the file content from
+     * their connection, so the connection must not read its next request until they complete.
+     * 
+     * @param request The request being handled.
+     * @return True if the request reads from its connection, false if not.
+     */
+    public boolean readsFromConnection(Token request){
+        return (request instanceof StoreToken || request instanceof StoreChainToken || request instanceof RebalanceStoreToken);
+    }
+
     /////////////////
     // JOIN_CLIENT //
     /////////////////
@@ -139,32 +124,33 @@ public class DstoreRequestHandler extends RequestHandler{
      * Handles a JOIN_CLIENT request.
      * 
      * @param connection The connection associcated with the request.
+     * @param request The request token.
      * @throws MessageSendException If a message couldn't be sent through the connection.
      */
-    private void handleJoinClientRequest(Connection connection) throws Exception{
+    private void handleJoinClientRequest(Connection connection, Token request) throws Exception{
         // adding the connection to the server
         this.dstore.getClientConnections().add(connection);
 
         // logging
         this.dstore.handleEvent(new ServerConnectionEvent(ClientType.CLIENT, connection.getPort()));
 
-        // sending join ack back to client
-        connection.sendMessage(Protocol.getJoinAckMessage());
+        // sending join ack back to client (agreeing the codec it requested)
+        Codecs.acceptJoin(connection, request);
     }
 
     /////////////////
     // JOIN_DSTORE //
     /////////////////
 
-    private void handleJoinDstoreRequest(Connection connection) throws Exception{
+    private void handleJoinDstoreRequest(Connection connection, Token request) throws Exception{
         // adding the connection to the server
         this.dstore.getServerConnections().add(connection);
 
         // logging
         this.dstore.handleEvent(new ServerConnectionEvent(ClientType.DSTORE, connection.getPort()));
 
-        // sending the join ack back to the Dstore
-        connection.sendMessage(Protocol.getJoinAckMessage());
+        // sending the join ack back to the Dstore (agreeing the codec it requested)
+        Codecs.acceptJoin(connection, request);
     }
 
     ///////////
@@ -184,15 +170,63 @@ public class DstoreRequestHandler extends RequestHandler{
         // sending ACK back to client
         connection.sendMessage(Protocol.getAckMessage());
 
-        // reading file data
-        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout());
+        // receiving and storing file data
+        this.receiveFile(connection, filename, filesize);
 
-        // storing file data
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+        // sending STORE_ACK to contoller
+        this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getStoreAckMessage(filename));
+
+        // logging
+        this.dstore.handleEvent(new StoreCompleteEvent(filename, filesize));
+    }
+
+    /**
+     * Handles a STORE_CHAIN request.
+     * 
+     * The file is stored as in a STORE, but each part of the file is also forwarded to the
+     * next Dstore in the chain as it arrives, so the transfers along the chain overlap. The
+     * rest of the chain is set up before the request is acknowledged.
+     * 
+     * @param connection The connection associated with the request.
+     * @param filename The name of the file being stored.
+     * @param filesize The size of the file being stored.
+     * @param chain The Dstores the file must be forwarded along (in order).
+     * @throws MessageSendException If a message couldn't be sent through a connection.
+     * @throws MessageReceievedException If a message could not be receieved through a connection.
+     * @throws InvalidMessageException If the next Dstore in the chain did not acknowledge the request.
+     */
+    private void handleStoreChainRequest(Connection connection, String filename, int filesize, ArrayList<Integer> chain) throws Exception{
+        // end of the chain - storing as normal
+        if(chain.isEmpty()){
+            this.handleStoreRequest(connection, filename, filesize);
+            return;
+        }
+
+        // taking a (joined) connection to the next Dstore in the chain from the peer pool
+        Connection next = this.dstore.getPeerConnections().acquire(chain.get(0));
+
+        try{
+            // passing on the rest of the chain
+            next.sendMessage(Protocol.getStoreChainMessage(filename, filesize, chain.subList(1, chain.size())));
+            Token response = RequestTokenizer.getToken(next.getMessageWithinTimeout(this.dstore.getTimeout()));
+            if(!(response instanceof AckToken)){
+                throw new InvalidMessageException(response.message, next.getPort());
+            }
+
+            // sending ACK back to the sender
+            connection.sendMessage(Protocol.getAckMessage());
+
+            // receiving and storing file data (forwarding it along the chain)
+            this.receiveFile(connection, filename, filesize, next);
+        }
+        catch(Exception e){
+            // connection to the next Dstore is in an unknown state - closing it
+            this.dstore.getPeerConnections().discard(next);
+            throw e;
+        }
+
+        // giving the connection to the next Dstore back to the pool
+        this.dstore.getPeerConnections().release(next);
 
         // sending STORE_ACK to contoller
         this.dstore.getControllerThread().getConnection().sendMessage(Protocol.getStoreAckMessage(filename));
@@ -219,13 +253,8 @@ public class DstoreRequestHandler extends RequestHandler{
 
         // file exists - sending file to client
         if(file.exists()){
-            // gathering file
-            FileInputStream fileInput = new FileInputStream(file);
-
-            // sending file to client
-            byte[] fileContent = fileInput.readAllBytes();
-            connection.sendBytes(fileContent);
-            fileInput.close();
+            // sending file to client (streamed from disk to the socket)
+            connection.sendFile(file);
 
             // logging
             this.dstore.handleEvent(new LoadCompleteEvent(filename));
@@ -294,6 +323,50 @@ public class DstoreRequestHandler extends RequestHandler{
         this.dstore.handleEvent(new ListCompleteEvent());
     }
 
+    /**
+     * Handles a LIST_CHUNKED request.
+     * 
+     * The file store is read a file at a time and the files are sent a chunk at a time,
+     * followed by LIST_END, so the memory used does not depend on the number of files.
+     * 
+     * @param connection The connection associated with the request.
+     * @param chunkSize The number of files the connector wants in each chunk.
+     * @throws MessageSendException If a message couldn't be sent through the connection.
+     * @throws IOException If the file store could not be read.
+     */
+    private void handleListChunkedRequest(Connection connection, int chunkSize) throws Exception{
+        int maxFiles = Math.max(1, Math.min(chunkSize, Protocol.MAX_LIST_CHUNK_SIZE));
+        HashMap<String, Integer> chunk = new HashMap<String, Integer>();
+
+        // sending the files a chunk at a time
+        try(DirectoryStream<Path> fileStore = Files.newDirectoryStream(this.dstore.getFileStore().toPath())){
+            for(Path path : fileStore){
+                File file = path.toFile();
+
+                // ignoring the directory of files that are still being received
+                if(this.dstore.isTempStore(file)){
+                    continue;
+                }
+
+                chunk.put(file.getName(), (int) file.length());
+
+                if(chunk.size() == maxFiles){
+                    connection.sendMessage(Protocol.getListChunkMessage(chunk));
+                    chunk.clear();
+                }
+            }
+        }
+        if(!chunk.isEmpty()){
+            connection.sendMessage(Protocol.getListChunkMessage(chunk));
+        }
+
+        // marking the end of the list
+        connection.sendMessage(Protocol.getListEndMessage());
+
+        // logging
+        this.dstore.handleEvent(new ListCompleteEvent());
+    }
+
     ///////////////
     // REBALANCE //
     ///////////////
@@ -313,98 +386,8 @@ public class DstoreRequestHandler extends RequestHandler{
     private void handleRebalanceRequest(Connection connection, ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove) throws Exception{
         // FILES TO SEND //
 
-        // iterate over files
-        for(FileToSend fileToSend : filesToSend){
-            // forming REBALANCE_STORE message
-            String message = Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize);
-
-            // loading file to be sent
-            File file = new File(this.dstore.getFolderPath() + File.separatorChar + fileToSend.filename);
-
-            // file exists - sending file to dstore's that need it
-            if(file.exists()){
-                // gathering file
-                FileInputStream fileInput = new FileInputStream(file);
-
-                // iterating over Dstores to send to
-                for(int dstore : fileToSend.dStores){
-                    // setting up the connection
-                    Connection dstoreConnection = new Connection(this.dstore.getNetworkInterface(), dstore, ServerType.DSTORE);
-
-                    // adding connection to server
-                    this.dstore.getServerConnections().add(dstoreConnection);
-
-                    // sending dstore join message
-                    dstoreConnection.sendMessage(Protocol.getJoinDstoreMessage(this.dstore.getPort()));
-
-                    try{
-                        // wait for acknowledgement
-                        Token response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
-
-                        // making sure response is JOIN_ACK
-                        if(response instanceof JoinAckToken){
-                            // sending rebalance message
-                            dstoreConnection.sendMessage(message);
-
-                            try{
-                                // waiting for acknowledgement
-                                response = RequestTokenizer.getToken(dstoreConnection.getMessageWithinTimeout(this.dstore.getTimeout()));
-                    
-                                // making sure acknowledgement was receieved
-                                if(response instanceof AckToken){
-                                    // sending file to client
-                                    byte[] fileContent = fileInput.readAllBytes();
-                                    dstoreConnection.sendBytes(fileContent);
-                                    fileInput.close();
-                
-                                    // closing streams
-                                    dstoreConnection.close();
-                                    fileInput.close();
-                                }
-                                // invalid response received
-                                else{
-                                    // closing streams
-                                    dstoreConnection.close();
-                                    fileInput.close();
-                
-                                    // throwing exception
-                                    throw new InvalidMessageException(response.message, dstoreConnection.getPort());
-                                }
-                            }
-                            catch(Exception e){
-                                // closing streams
-                                dstoreConnection.close();
-                                fileInput.close();
-                    
-                                // throwing exception
-                                throw e;
-                            }
-                        }
-                        else{
-                            // closing streams
-                            dstoreConnection.close();
-                            fileInput.close();
-        
-                            // throwing exception
-                            throw new InvalidMessageException(response.message, dstoreConnection.getPort());
-                        }
-                    }
-                    catch(Exception e){
-                        // closing streams
-                        dstoreConnection.close();
-                        fileInput.close();
-            
-                        // throwing exception
-                        throw e;
-                    }
-                }
-            }
-            // file does not exist - throwing exception
-            else{
-                // throwing exception
-                throw new FileDoesNotExistException(fileToSend.filename);
-            }
-        }
+        // sending the files (concurrently, through the transfer scheduler)
+        this.dstore.getTransferScheduler().sendFiles(filesToSend);
 
         // FILES TO REMOVE //
 
@@ -423,11 +406,8 @@ public class DstoreRequestHandler extends RequestHandler{
 
         // REBALANCE COMPLETE //
 
-        // creating hashmap of files
-        HashMap<String, Integer> files = this.dstore.getFiles();
-
-        // sending message to controller
-        connection.sendMessage(Protocol.getRebalanceCompleteMessage(files));
+        // sending message to controller (the Controller has the new placement of the files)
+        connection.sendMessage(Protocol.getRebalanceCompleteMessage());
 
         // logging
         this.dstore.handleEvent(new RebalanceCompleteEvent());
@@ -448,20 +428,64 @@ public class DstoreRequestHandler extends RequestHandler{
         // sending ACK back to dstore
         connection.sendMessage(Protocol.getAckMessage());
 
-        // reading file data
-        byte[] fileContent = connection.getNBytesWithinTimeout(filesize, this.dstore.getTimeout());
-
-        // storing file data
-        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
-        FileOutputStream fileOutput = new FileOutputStream(file);
-        fileOutput.write(fileContent);
-        fileOutput.flush();
-        fileOutput.close();
+        // receiving and storing file data
+        this.receiveFile(connection, filename, filesize);
 
         // logging
         this.dstore.handleEvent(new RebalanceStoreCompleteEvent(filename, filesize));
     }
 
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Receives a file from a connection and stores it in the Dstore's file store.
+     * 
+     * The file is streamed into a temporary file, which is moved into place once it has
+     * been received in full, so a partially received file is never visible in the store.
+     * 
+     * @param connection The connection the file is received from.
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     * @throws MessageReceivedException If the file could not be received within the timeout.
+     * @throws IOException If the file could not be stored.
+     */
+    private void receiveFile(Connection connection, String filename, int filesize) throws Exception{
+        this.receiveFile(connection, filename, filesize, null);
+    }
+
+    /**
+     * Receives a file from a connection and stores it in the Dstore's file store, relaying
+     * the file on to another connection as it arrives.
+     * 
+     * @param connection The connection the file is received from.
+     * @param filename The name of the file.
+     * @param filesize The size of the file in bytes.
+     * @param relay The connection the file is relayed to (null to not relay it).
+     * @throws MessageReceivedException If the file could not be received within the timeout.
+     * @throws MessageSendException If the file could not be relayed.
+     * @throws IOException If the file could not be stored.
+     */
+    private void receiveFile(Connection connection, String filename, int filesize, Connection relay) throws Exception{
+        File file = new File(this.dstore.getFolderPath() + File.separatorChar + filename);
+        File tempFile = this.dstore.createTempFile(filename);
+
+        try{
+            // streaming the file data to the temporary file
+            connection.receiveFile(tempFile, filesize, this.dstore.getTimeout(), relay);
+
+            // moving the file into place
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(Exception e){
+            // removing the partially received file
+            Files.deleteIfExists(tempFile.toPath());
+
+            throw e;
+        }
+    }
+
     /////////////
     // INVALID //
     /////////////
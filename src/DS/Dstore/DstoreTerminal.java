@@ -4,6 +4,7 @@ import java.net.Socket;
 
 import DS.Protocol.Exception.*;
 import Network.NetworkInterface;
+import Network.NetworkOptions;
 import Network.Protocol.Event.HandeledNetworkEvent;
 import Network.Protocol.Exception.HandeledNetworkException;
 import Network.Protocol.Exception.ServerStartException;
@@ -27,7 +28,20 @@ public class DstoreTerminal extends NetworkInterface{
      * @param folderPath The folder where the DStore will store files.
      */
     public DstoreTerminal(int port, int cPort, int timeout, String folderPath){
-        this.dstore = new Dstore(port, cPort, timeout, folderPath, this);
+        this(port, cPort, timeout, folderPath, new NetworkOptions());
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the DStore will listen on.
+     * @param cPort The port the Controller that the DStore will connect to is on.
+     * @param timeout The timout period for the DStore.
+     * @param folderPath The folder where the DStore will store files.
+     * @param options The optional settings for the DStore.
+     */
+    public DstoreTerminal(int port, int cPort, int timeout, String folderPath, NetworkOptions options){
+        this.dstore = new Dstore(port, cPort, timeout, folderPath, this, options);
 
         // starting the Dstore
         this.startNetworkProcess(this.dstore);
@@ -80,12 +94,14 @@ public class DstoreTerminal extends NetworkInterface{
         // Controller Disconnect
         if(error.getException() instanceof ControllerDisconnectException){
             // closing system
+            this.dstore.close();
             System.exit(0);
         }
 
         // Server Start Exception
         else if(error.getException() instanceof ServerStartException){
             // closing the system
+            this.dstore.close();
             System.exit(0);
         }
     }
@@ -97,6 +113,8 @@ public class DstoreTerminal extends NetworkInterface{
     /**
      * Main method - instantiates a new DStore instance using the command line parammeters.
      * 
+     * Any parameters after the file folder are optional settings of the form 'name=value'.
+     * 
      * @param args Parameters for the new DStore.
      */
     public static void main(String[] args){
@@ -106,9 +124,10 @@ public class DstoreTerminal extends NetworkInterface{
             int cPort = Integer.parseInt(args[1]);
             int timeout = Integer.parseInt(args[2]);
             String fileFolder = args[3];
+            NetworkOptions options = NetworkOptions.fromArgs(args, 4);
 
             // Creating new DStore instance
-            DstoreTerminal dataStore = new DstoreTerminal(port, cPort, timeout, fileFolder);
+            DstoreTerminal dataStore = new DstoreTerminal(port, cPort, timeout, fileFolder, options);
         }
         catch(Exception e){
             System.out.println("Unable to create DStore." + e.toString());
@@ -0,0 +1,315 @@
+package DS.Dstore;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import DS.Protocol.Protocol;
+import DS.Protocol.Event.Rebalance.RebalanceTransfersCompleteEvent;
+import DS.Protocol.Exception.FileDoesNotExistException;
+import DS.Protocol.Exception.InvalidMessageException;
+import DS.Protocol.Token.RequestTokenizer;
+import DS.Protocol.Token.Token;
+import DS.Protocol.Token.TokenType.AckToken;
+import DS.Protocol.Token.TokenType.FileToSend;
+import Network.Connection;
+import Network.NetworkOptions;
+import Network.RateLimiter;
+
+/**
+ * Sends the files a Dstore must send to other Dstores during a rebalance.
+ * 
+ * Transfers are run by a fixed number of worker threads. Workers take transfers from
+ * the destinations in turn (so a destination with many files does not hold up the
+ * others), and a destination is never sent more files at once than it has pooled
+ * connections. All transfers share a rate limiter, so a rebalance does not take all
+ * of the disk and network bandwidth needed to serve Clients.
+ * 
+ * Options:
+ *  - rebalance-transfers : The number of files sent at once (default 4).
+ *  - rebalance-bandwidth : The maximum rate in bytes per second that files are sent at
+ *                          (default 0, no limit).
+ */
+public class TransferScheduler {
+
+    // member variables
+    private Dstore dstore;
+    private int concurrency;
+    private int perDestination;
+    private RateLimiter limiter;
+    private ExecutorService workers;
+
+    /**
+     * Class constructor.
+     * 
+     * @param dstore The Dstore the scheduler belongs to.
+     * @param options The optional settings for the Dstore.
+     */
+    public TransferScheduler(Dstore dstore, NetworkOptions options){
+        this.dstore = dstore;
+        this.concurrency = Math.max(1, options.getInt("rebalance-transfers", 4));
+        this.perDestination = Math.max(1, options.getInt("peer-connections", 1));
+        this.limiter = new RateLimiter(options.getLong("rebalance-bandwidth", 0));
+
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "rebalance-transfer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends files to the Dstores that need them, returning once all of the files have
+     * been sent.
+     * 
+     * @param filesToSend The files to be sent, and the Dstores they must be sent to.
+     * @throws FileDoesNotExistException If one of the files is not in the Dstore's store.
+     * @throws Exception The error of the first transfer that failed (no further transfers
+     * are started after a failure).
+     */
+    public void sendFiles(ArrayList<FileToSend> filesToSend) throws Exception{
+        // gathering the transfers
+        Batch batch = new Batch(this.perDestination);
+        for(FileToSend fileToSend : filesToSend){
+            File file = new File(this.dstore.getFolderPath() + File.separatorChar + fileToSend.filename);
+
+            // file does not exist - throwing exception
+            if(!file.exists()){
+                throw new FileDoesNotExistException(fileToSend.filename);
+            }
+
+            String message = Protocol.getRebalanceStoreMessage(fileToSend.filename, fileToSend.filesize);
+            for(int dstore : fileToSend.dStores){
+                batch.add(new Transfer(file, message, dstore));
+            }
+        }
+
+        // nothing to send
+        if(batch.getSize() == 0){
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        long startHandshakes = this.dstore.getPeerHandshakes();
+
+        // running the transfers
+        int workerCount = Math.min(this.concurrency, batch.getSize());
+        CompletableFuture<?>[] runs = new CompletableFuture<?>[workerCount];
+        for(int i = 0; i < workerCount; i++){
+            runs[i] = CompletableFuture.runAsync(() -> this.runTransfers(batch), this.workers);
+        }
+        CompletableFuture.allOf(runs).join();
+
+        // a transfer failed
+        if(batch.getError() != null){
+            throw batch.getError();
+        }
+
+        // logging the transfers
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        this.dstore.handleEvent(new RebalanceTransfersCompleteEvent(batch.getSize(), batch.getBytesSent(), duration, this.dstore.getPeerHandshakes() - startHandshakes));
+    }
+
+    /**
+     * Runs transfers from a batch until the batch has none left (or one has failed).
+     * 
+     * @param batch The batch of transfers.
+     */
+    private void runTransfers(Batch batch){
+        Transfer transfer;
+        while((transfer = batch.next()) != null){
+            try{
+                this.send(transfer);
+                batch.finished(transfer, null);
+            }
+            catch(Exception e){
+                batch.finished(transfer, e);
+            }
+        }
+    }
+
+    /**
+     * Sends a file to another Dstore, over a pooled connection to the Dstore.
+     * 
+     * @param transfer The transfer being carried out.
+     * @throws MessageSendException If a message could not be sent through the connection.
+     * @throws MessageRecievedException If a message could not be receieved from the connection.
+     * @throws InvalidMessageException If the Dstore did not acknowledge the request.
+     */
+    private void send(Transfer transfer) throws Exception{
+        // gathering a connection to the dstore
+        Connection connection = this.dstore.getPeerConnections().acquire(transfer.dstore);
+
+        try{
+            // sending rebalance message
+            connection.sendMessage(transfer.message);
+
+            // waiting for acknowledgement
+            Token response = RequestTokenizer.getToken(connection.getMessageWithinTimeout(this.dstore.getTimeout()));
+
+            // making sure acknowledgement was receieved
+            if(response instanceof AckToken){
+                // sending file to dstore (streamed from disk to the socket)
+                connection.sendFile(transfer.file, this.limiter);
+
+                // giving the connection back to the pool
+                this.dstore.getPeerConnections().release(connection);
+            }
+            // invalid response received
+            else{
+                // throwing exception
+                throw new InvalidMessageException(response.message, connection.getPort());
+            }
+        }
+        catch(Exception e){
+            // closing connection
+            this.dstore.getPeerConnections().discard(connection);
+
+            // throwing exception
+            throw e;
+        }
+    }
+
+    ///////////////
+    // TRANSFERS //
+    ///////////////
+
+    /**
+     * A file to be sent to a single Dstore.
+     */
+    private static class Transfer {
+
+        // member variables
+        private File file;
+        private String message;
+        private int dstore;
+
+        private Transfer(File file, String message, int dstore){
+            this.file = file;
+            this.message = message;
+            this.dstore = dstore;
+        }
+    }
+
+    /**
+     * The transfers of a rebalance, queued by destination.
+     * 
+     * Destinations take turns in handing out transfers, and a destination is skipped
+     * while it already has the maximum number of transfers in progress.
+     */
+    private static class Batch {
+
+        // member variables
+        private int perDestination;
+        private HashMap<Integer, ArrayDeque<Transfer>> queues;
+        private ArrayDeque<Integer> turns;
+        private HashMap<Integer, Integer> active;
+        private int size;
+        private long bytesSent;
+        private Exception error;
+
+        private Batch(int perDestination){
+            this.perDestination = perDestination;
+            this.queues = new HashMap<Integer, ArrayDeque<Transfer>>();
+            this.turns = new ArrayDeque<Integer>();
+            this.active = new HashMap<Integer, Integer>();
+            this.size = 0;
+            this.bytesSent = 0;
+        }
+
+        /**
+         * Adds a transfer to the batch (before it is run).
+         * 
+         * @param transfer The transfer.
+         */
+        private void add(Transfer transfer){
+            if(!this.queues.containsKey(transfer.dstore)){
+                this.queues.put(transfer.dstore, new ArrayDeque<Transfer>());
+                this.turns.add(transfer.dstore);
+            }
+
+            this.queues.get(transfer.dstore).add(transfer);
+            this.size++;
+        }
+
+        /**
+         * Takes the next transfer to run, waiting while every destination with transfers
+         * left already has the maximum number in progress.
+         * 
+         * @return The next transfer, or null if there are none left (or one has failed).
+         */
+        private synchronized Transfer next(){
+            while(this.error == null && !this.turns.isEmpty()){
+                // giving each destination a turn
+                for(int i = 0; i < this.turns.size(); i++){
+                    int dstore = this.turns.poll();
+
+                    // destination busy - skipping its turn
+                    if(this.active.getOrDefault(dstore, 0) >= this.perDestination){
+                        this.turns.add(dstore);
+                        continue;
+                    }
+
+                    // taking the destination's next transfer
+                    ArrayDeque<Transfer> queue = this.queues.get(dstore);
+                    Transfer transfer = queue.poll();
+                    if(!queue.isEmpty()){
+                        this.turns.add(dstore);
+                    }
+
+                    this.active.merge(dstore, 1, Integer::sum);
+                    return transfer;
+                }
+
+                // all destinations busy - waiting for a transfer to finish
+                try{
+                    this.wait();
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Records the end of a transfer.
+         * 
+         * @param transfer The transfer.
+         * @param error The error the transfer failed with (null if it succeeded).
+         */
+        private synchronized void finished(Transfer transfer, Exception error){
+            this.active.merge(transfer.dstore, -1, Integer::sum);
+
+            if(error == null){
+                this.bytesSent += transfer.file.length();
+            }
+            else if(this.error == null){
+                this.error = error;
+            }
+
+            this.notifyAll();
+        }
+
+        private int getSize(){
+            return this.size;
+        }
+
+        private synchronized long getBytesSent(){
+            return this.bytesSent;
+        }
+
+        private synchronized Exception getError(){
+            return this.error;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package DS.Protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import Network.MessageCodec;
+
+/**
+ * Codec for length-prefixed binary messages.
+ * 
+ * Frame: [opcode][payload length][payload]
+ * 
+ * The opcode (one byte) identifies the command of the message (see COMMANDS), and the payload
+ * holds the message's arguments (the space-separated parts after the command), each as a
+ * varint header followed by its content:
+ * 
+ *  - header = (value << 1) | 1 : a number (e.g., a port or filesize), held in the header.
+ *  - header = (length << 1) : a string (e.g., a filename) of length bytes of UTF-8.
+ * 
+ * Messages are framed by their length rather than by searching for a line terminator, and
+ * numbers are not sent as decimal text. Messages whose command is not known are sent with
+ * opcode 0 and the whole message as their payload. Decoding gives back exactly the message
+ * that was encoded, so the messages are logged and tokenized as before.
+ * 
+ * A tagged message ("#<tag> <message>") is sent as its message with the top bit of the
+ * opcode set (see TAGGED) and the tag as the first argument of the payload.
+ */
+public class BinaryCodec implements MessageCodec {
+
+    // constants
+    private static final String[] COMMANDS = {
+        null, // opcode 0 - unknown command
+        Protocol.JOIN_CLIENT_TOKEN,
+        Protocol.JOIN_CLIENT_HEARTBEAT,
+        Protocol.LIST_TOKEN,
+        Protocol.STORE_TOKEN,
+        Protocol.STORE_CHAIN_TOKEN,
+        Protocol.LOAD_TOKEN,
+        Protocol.LOAD_DATA_TOKEN,
+        Protocol.RELOAD_TOKEN,
+        Protocol.REMOVE_TOKEN,
+        Protocol.JOIN_ACK_TOKEN,
+        Protocol.STORE_TO_TOKEN,
+        Protocol.STORE_COMPLETE_TOKEN,
+        Protocol.LOAD_FROM_TOKEN,
+        Protocol.REMOVE_COMPLETE_TOKEN,
+        Protocol.REBALANCE_TOKEN,
+        Protocol.ERROR_DSTORE_PORT_IN_USE_TOKEN,
+        Protocol.ERROR_FILE_DOES_NOT_EXIST_TOKEN,
+        Protocol.ERROR_FILE_ALREADY_EXISTS_TOKEN,
+        Protocol.ERROR_NOT_ENOUGH_DSTORES_TOKEN,
+        Protocol.ERROR_LOAD_TOKEN,
+        Protocol.JOIN_DSTORE_TOKEN,
+        Protocol.ACK_TOKEN,
+        Protocol.STORE_ACK_TOKEN,
+        Protocol.REMOVE_ACK_TOKEN,
+        Protocol.REBALANCE_STORE_TOKEN,
+        Protocol.REBALANCE_COMPLETE_TOKEN,
+        Protocol.LIST_CHUNKED_TOKEN,
+        Protocol.LIST_CHUNK_TOKEN,
+        Protocol.LIST_END_TOKEN
+    };
+    private static final int TAGGED = 0x80; // opcode bit set for a tagged message
+    private static final HashMap<String, Integer> OPCODES = new HashMap<String, Integer>(); // command -> opcode
+    private static final int MAX_VARINT_LENGTH = 10; // bytes of a 64-bit varint
+    private static final int MAX_NUMBER_DIGITS = 18; // digits of a number sent in a header
+    static{
+        for(int opcode = 1; opcode < COMMANDS.length; opcode++){
+            OPCODES.put(COMMANDS[opcode], opcode);
+        }
+    }
+
+    public String getName(){
+        return "binary";
+    }
+
+    //////////////
+    // ENCODING //
+    //////////////
+
+    public byte[] encode(String message){
+        // splitting the tag from the message (if tagged)
+        int start = BinaryCodec.getCommandStart(message);
+
+        // splitting the command from its arguments
+        int space = message.indexOf(' ', start);
+        String command = (space < 0) ? message.substring(start) : message.substring(start, space);
+        Integer opcode = OPCODES.get(command);
+
+        // forming the payload
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(message.length() + 8);
+        if(opcode == null){
+            opcode = 0;
+            payload.writeBytes(message.getBytes(StandardCharsets.UTF_8));
+        }
+        else{
+            if(start > 0){
+                opcode |= TAGGED;
+                BinaryCodec.writeArgument(payload, message.substring(Protocol.TAG_TOKEN.length(), start - 1));
+            }
+            if(space >= 0){
+                for(String argument : message.substring(space + 1).split(" ", -1)){
+                    BinaryCodec.writeArgument(payload, argument);
+                }
+            }
+        }
+
+        // forming the frame
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.size() + 6);
+        frame.write(opcode);
+        BinaryCodec.writeVarint(frame, payload.size());
+        frame.write(payload.toByteArray(), 0, payload.size());
+
+        return frame.toByteArray();
+    }
+
+    /**
+     * Gathers the index the command of a message starts at.
+     * 
+     * @param message The message.
+     * @return The index after the message's tag (and the space that follows it), or 0 if the
+     * message is not tagged with a number.
+     */
+    private static int getCommandStart(String message){
+        if(!message.startsWith(Protocol.TAG_TOKEN)){
+            return 0;
+        }
+
+        int space = message.indexOf(' ');
+        if(space < 0 || !BinaryCodec.isNumber(message.substring(Protocol.TAG_TOKEN.length(), space))){
+            return 0;
+        }
+
+        return space + 1;
+    }
+
+    /**
+     * Writes an argument of a message to a payload.
+     * 
+     * @param payload The payload being formed.
+     * @param argument The argument.
+     */
+    private static void writeArgument(ByteArrayOutputStream payload, String argument){
+        // number - sent in the header
+        if(BinaryCodec.isNumber(argument)){
+            BinaryCodec.writeVarint(payload, (Long.parseLong(argument) << 1) | 1);
+        }
+        // string - sent after the header
+        else{
+            byte[] bytes = argument.getBytes(StandardCharsets.UTF_8);
+            BinaryCodec.writeVarint(payload, ((long) bytes.length) << 1);
+            payload.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * Determines if an argument is a number that is given back exactly by Long.toString
+     * (i.e., digits without leading zeros).
+     * 
+     * @param argument The argument.
+     * @return True if the argument can be sent as a number, false if not.
+     */
+    private static boolean isNumber(String argument){
+        int length = argument.length();
+        if(length == 0 || length > MAX_NUMBER_DIGITS || (argument.charAt(0) == '0' && length > 1)){
+            return false;
+        }
+
+        for(int i = 0; i < length; i++){
+            char c = argument.charAt(i);
+            if(c < '0' || c > '9'){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes an unsigned varint (7 bits per byte, least significant first).
+     * 
+     * @param out The stream the varint is written to.
+     * @param value The value of the varint.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value){
+        while((value & ~0x7fL) != 0){
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    //////////////
+    // DECODING //
+    //////////////
+
+    public String read(InputStream in) throws IOException{
+        int opcode = in.read();
+
+        // end of stream
+        if(opcode < 0){
+            return null;
+        }
+
+        // reading the payload length
+        long length = 0;
+        int shift = 0;
+        while(true){
+            int b = in.read();
+            if(b < 0){
+                throw new EOFException();
+            }
+            if(shift >= 7 * 5){
+                throw new IllegalArgumentException("Malformed message length.");
+            }
+
+            length |= ((long) (b & 0x7f)) << shift;
+            shift += 7;
+
+            if((b & 0x80) == 0){
+                break;
+            }
+        }
+        if(length > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Malformed message length.");
+        }
+
+        // reading the payload
+        byte[] payload = in.readNBytes((int) length);
+        if(payload.length != length){
+            throw new EOFException();
+        }
+
+        return BinaryCodec.decodeMessage(opcode, payload, 0, payload.length);
+    }
+
+    public int getFrameLength(byte[] buffer, int start, int end, int scanned){
+        // reading the payload length
+        long length = 0;
+        int shift = 0;
+        int position = start + 1;
+        while(true){
+            if(position >= end){
+                return -1;
+            }
+            if(shift >= 7 * 5){
+                throw new IllegalArgumentException("Malformed message length.");
+            }
+
+            int b = buffer[position++];
+            length |= ((long) (b & 0x7f)) << shift;
+            shift += 7;
+
+            if((b & 0x80) == 0){
+                break;
+            }
+        }
+
+        long frameLength = (position - start) + length;
+        if(frameLength > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Malformed message length.");
+        }
+
+        return (frameLength <= end - start) ? (int) frameLength : -1;
+    }
+
+    public String decode(byte[] buffer, int start, int length){
+        int opcode = buffer[start] & 0xff;
+
+        // skipping the payload length
+        int position = start + 1;
+        while((buffer[position++] & 0x80) != 0);
+
+        return BinaryCodec.decodeMessage(opcode, buffer, position, start + length);
+    }
+
+    /**
+     * Decodes a message from its opcode and payload.
+     * 
+     * @param opcode The opcode of the message.
+     * @param payload The buffer holding the payload.
+     * @param start The index of the first byte of the payload.
+     * @param end The index after the last byte of the payload.
+     * @return The message.
+     * @throws IllegalArgumentException If the payload is malformed.
+     */
+    private static String decodeMessage(int opcode, byte[] payload, int start, int end){
+        // unknown command - payload is the message
+        if(opcode == 0){
+            return new String(payload, start, end - start, StandardCharsets.UTF_8);
+        }
+        int command = opcode & ~TAGGED;
+        if(command == 0 || command >= COMMANDS.length){
+            throw new IllegalArgumentException("Unknown opcode " + opcode + ".");
+        }
+
+        // tagged message - tag is the first argument
+        boolean tagged = (opcode & TAGGED) != 0;
+        StringBuilder message = new StringBuilder();
+        if(!tagged){
+            message.append(COMMANDS[command]);
+        }
+
+        // adding the arguments
+        int position = start;
+        while(position < end){
+            // reading the header
+            long header = 0;
+            int shift = 0;
+            while(true){
+                if(position >= end || shift >= 7 * MAX_VARINT_LENGTH){
+                    throw new IllegalArgumentException("Malformed message argument.");
+                }
+
+                int b = payload[position++];
+                header |= ((long) (b & 0x7f)) << shift;
+                shift += 7;
+
+                if((b & 0x80) == 0){
+                    break;
+                }
+            }
+
+            // tag
+            if(tagged){
+                if((header & 1) == 0){
+                    throw new IllegalArgumentException("Malformed message tag.");
+                }
+
+                message.append(Protocol.TAG_TOKEN).append(header >>> 1).append(' ').append(COMMANDS[command]);
+                tagged = false;
+                continue;
+            }
+
+            message.append(' ');
+
+            // number
+            if((header & 1) == 1){
+                message.append(header >>> 1);
+            }
+            // string
+            else{
+                long length = header >>> 1;
+                if(length > end - position){
+                    throw new IllegalArgumentException("Malformed message argument.");
+                }
+
+                message.append(new String(payload, position, (int) length, StandardCharsets.UTF_8));
+                position += (int) length;
+            }
+        }
+
+        if(tagged){
+            throw new IllegalArgumentException("Malformed message tag.");
+        }
+
+        return message.toString();
+    }
+}
@@ -0,0 +1,178 @@
+package DS.Protocol;
+
+import DS.Protocol.Token.Token;
+import DS.Protocol.Token.TokenType.JoinAckToken;
+import DS.Protocol.Token.TokenType.JoinClientToken;
+import DS.Protocol.Token.TokenType.JoinDstoreToken;
+import Network.Connection;
+import Network.MessageCodec;
+import Network.Protocol.Exception.MessageSendException;
+
+/**
+ * Agrees the codec of a connection while it joins a Server.
+ * 
+ * A connector requests a codec by naming it at the end of its JOIN_CLIENT or JOIN_DSTORE
+ * message (which is always sent as text). A Server that supports the codec names it in its
+ * JOIN_ACK (also sent as text), and both ends use the codec from then on. A Server that does
+ * not support the codec (or does not know about codecs) replies with a plain JOIN_ACK, and
+ * the connection stays in text.
+ * 
+ * The connector sends nothing after its JOIN until it receives the JOIN_ACK, so the Server
+ * switches the codec it reads with as soon as it reads the JOIN (see startJoin), and the
+ * codec it sends with as it sends the JOIN_ACK (see acceptJoin).
+ * 
+ * A Client can also request tagged requests (TAGGED after the codec), which are agreed in
+ * the same way, so that it can pipeline its requests to a Server that answers them.
+ */
+public class Codecs {
+
+    /**
+     * Class constuctor. Private as class is static.
+     */
+    private Codecs(){}
+
+    ////////////
+    // SERVER //
+    ////////////
+
+    /**
+     * Switches the codec a connection is read with if a request arriving on it requests a
+     * supported codec. Called by the thread reading the connection's requests, before it
+     * reads the next one.
+     * 
+     * @param connection The connection the request arrived on.
+     * @param request The request.
+     */
+    public static void startJoin(Connection connection, Token request){
+        MessageCodec codec = Codecs.getCodec(Codecs.getRequestedCodec(request));
+
+        if(codec != null){
+            connection.setInboundCodec(codec);
+        }
+    }
+
+    /**
+     * Acknowledges a JOIN request, agreeing the codec it requested if it is supported.
+     * 
+     * @param connection The connection the request arrived on.
+     * @param request The JOIN request.
+     * @throws MessageSendException If the JOIN_ACK could not be sent.
+     */
+    public static void acceptJoin(Connection connection, Token request) throws MessageSendException{
+        Codecs.acceptJoin(connection, request, false);
+    }
+
+    /**
+     * Acknowledges a JOIN request, agreeing the codec it requested if it is supported, and
+     * agreeing tagged requests if they were requested and the Server supports them.
+     * 
+     * @param connection The connection the request arrived on.
+     * @param request The JOIN request.
+     * @param tagging True if the Server answers tagged requests (with tagged replies).
+     * @throws MessageSendException If the JOIN_ACK could not be sent.
+     */
+    public static void acceptJoin(Connection connection, Token request, boolean tagging) throws MessageSendException{
+        MessageCodec codec = Codecs.getCodec(Codecs.getRequestedCodec(request));
+        boolean tagged = tagging && (request instanceof JoinClientToken) && ((JoinClientToken) request).tagged;
+
+        // codec not requested or not supported - acknowledging in text
+        if(codec == null){
+            connection.sendMessage(Protocol.getJoinAckMessage(null, tagged));
+            return;
+        }
+
+        // switching before the JOIN_ACK is sent, so that nothing sent in reply to the
+        // connector's next request can be sent in the old codec
+        MessageCodec previous = connection.getOutboundCodec();
+        connection.setOutboundCodec(codec);
+        connection.sendMessage(Protocol.getJoinAckMessage(codec.getName(), tagged), previous);
+    }
+
+    ///////////////
+    // CONNECTOR //
+    ///////////////
+
+    /**
+     * Gathers the name of a codec to request while joining a Server.
+     * 
+     * @param codec The codec to request.
+     * @return The name of the codec, or null if the codec is text (nothing is requested).
+     */
+    public static String getRequestName(CodecType codec){
+        return (codec == CodecType.TEXT) ? null : codec.getCodec().getName();
+    }
+
+    /**
+     * Switches the codec of a connection to the codec agreed in a JOIN_ACK (if any).
+     * 
+     * @param connection The connection that joined the Server.
+     * @param acknowledgement The JOIN_ACK sent by the Server.
+     */
+    public static void joined(Connection connection, JoinAckToken acknowledgement){
+        MessageCodec codec = Codecs.getCodec(acknowledgement.codec);
+
+        if(codec != null){
+            connection.setCodec(codec);
+        }
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Gathers a supported codec from its name.
+     * 
+     * @param name The name of the codec.
+     * @return The codec, or null if the codec is not supported.
+     */
+    public static MessageCodec getCodec(String name){
+        if(name == null){
+            return null;
+        }
+
+        for(CodecType type : CodecType.values()){
+            if(type.getCodec().getName().equals(name)){
+                return type.getCodec();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gathers the name of the codec requested by a request.
+     * 
+     * @param request The request.
+     * @return The name of the requested codec, or null if the request is not a JOIN that
+     * requests a codec.
+     */
+    private static String getRequestedCodec(Token request){
+        if(request instanceof JoinClientToken){
+            return ((JoinClientToken) request).codec;
+        }
+        else if(request instanceof JoinDstoreToken){
+            return ((JoinDstoreToken) request).codec;
+        }
+
+        return null;
+    }
+
+    /**
+     * The codecs supported by the system.
+     */
+    public enum CodecType {
+        TEXT(Connection.TEXT_CODEC), // newline-delimited text
+        BINARY(new BinaryCodec()); // length-prefixed binary (see BinaryCodec)
+
+        private MessageCodec codec;
+
+        private CodecType(MessageCodec codec){
+            this.codec = codec;
+        }
+
+        public MessageCodec getCodec(){
+            return this.codec;
+        }
+    }
+}
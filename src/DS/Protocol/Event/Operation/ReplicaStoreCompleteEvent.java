@@ -0,0 +1,45 @@
+package DS.Protocol.Event.Operation;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Represents the event of a file being uploaded to one of the Dstores it is
+ * stored on during a STORE operation.
+ */
+public class ReplicaStoreCompleteEvent extends NetworkEvent{
+
+    // member variables
+    private String filename;
+    private int dstore;
+    private long duration;
+    
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file that has been uploaded.
+     * @param dstore The port of the Dstore the file was uploaded to.
+     * @param duration The time taken to upload the file in milliseconds.
+     */
+    public ReplicaStoreCompleteEvent(String filename, int dstore, long duration){
+        super("File : '" + filename + "' uploaded to Dstore : " + dstore + " in " + duration + " ms.");
+        this.filename = filename;
+        this.dstore = dstore;
+        this.duration = duration;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public String getFilename(){
+        return this.filename;
+    }
+
+    public int getDstore(){
+        return this.dstore;
+    }
+
+    public long getDuration(){
+        return this.duration;
+    }
+}
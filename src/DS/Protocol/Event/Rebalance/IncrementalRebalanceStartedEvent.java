@@ -0,0 +1,32 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where an incremental rebalance of the system has started (a
+ * rebalance planned from the files changed since the last rebalance, without listing
+ * the Dstores).
+ */
+public class IncrementalRebalanceStartedEvent extends NetworkEvent{
+
+    // member variables
+    private int dirtyFiles;
+    
+    /**
+     * Class constructor.
+     * 
+     * @param dirtyFiles The number of files changed since the last rebalance.
+     */
+    public IncrementalRebalanceStartedEvent(int dirtyFiles){
+        super("Incremental rebalance started for " + dirtyFiles + " changed file(s).");
+        this.dirtyFiles = dirtyFiles;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getDirtyFiles(){
+        return this.dirtyFiles;
+    }
+}
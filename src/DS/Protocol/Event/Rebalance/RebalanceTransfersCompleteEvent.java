@@ -0,0 +1,52 @@
+package DS.Protocol.Event.Rebalance;
+
+import Network.Protocol.Event.NetworkEvent;
+
+/**
+ * Event for the case where a Dstore has sent all of the files it was asked to send
+ * to other Dstores during a Rebalance.
+ */
+public class RebalanceTransfersCompleteEvent extends NetworkEvent{
+
+    // member variables
+    private int transfers;
+    private long bytes;
+    private long duration;
+    private long handshakes;
+
+    /**
+     * Class constructor.
+     * 
+     * @param transfers The number of files sent (one per destination Dstore).
+     * @param bytes The total number of bytes sent.
+     * @param duration The time taken to send the files in milliseconds.
+     * @param handshakes The number of new connections to other Dstores that had to be set up.
+     */
+    public RebalanceTransfersCompleteEvent(int transfers, long bytes, long duration, long handshakes){
+        super("Rebalance transfers complete : " + transfers + " file(s) (" + bytes + " bytes) sent in " + duration + " ms (" + (bytes * 1000 / Math.max(1, duration)) + " bytes/s), with " + handshakes + " new Dstore connection(s).");
+        this.transfers = transfers;
+        this.bytes = bytes;
+        this.duration = duration;
+        this.handshakes = handshakes;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getTransfers(){
+        return this.transfers;
+    }
+
+    public long getBytes(){
+        return this.bytes;
+    }
+
+    public long getDuration(){
+        return this.duration;
+    }
+
+    public long getHandshakes(){
+        return this.handshakes;
+    }
+}
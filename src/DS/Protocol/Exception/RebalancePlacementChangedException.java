@@ -0,0 +1,19 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * Exception for the case where an online rebalance cannot move a file because the
+ * file was changed by a client request while the rebalance was being planned.
+ */
+public class RebalancePlacementChangedException extends NetworkException{
+    
+    /**
+     * Class constructor.
+     * 
+     * @param filename The name of the file that was changed.
+     */
+    public RebalancePlacementChangedException(String filename){
+        super("The placement of the file : " + filename + " changed while the rebalance was being planned.");
+    }
+}
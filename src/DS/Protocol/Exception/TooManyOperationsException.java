@@ -0,0 +1,31 @@
+package DS.Protocol.Exception;
+
+import Network.Protocol.Exception.NetworkException;
+
+/**
+ * An exception for the case where a Client could not start an operation as it already
+ * has the maximum number of operations in flight.
+ */
+public class TooManyOperationsException extends NetworkException{
+
+    // member variables
+    private int maxInFlight;
+
+    /**
+     * Class constructor.
+     * 
+     * @param maxInFlight The maximum number of operations the Client can have in flight.
+     */
+    public TooManyOperationsException(int maxInFlight){
+        super("The Client already has the maximum number of operations in flight : " + maxInFlight + ".");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getMaxInFlight(){
+        return this.maxInFlight;
+    }
+}
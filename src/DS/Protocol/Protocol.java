@@ -2,6 +2,7 @@ package DS.Protocol;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import DS.Protocol.Token.TokenType.FileToSend;
 
@@ -12,6 +13,8 @@ public class Protocol {
 
 	// constants
 	private final static String SPACE = " ";
+	public final static int MAX_LIST_CHUNK_SIZE = 10000; // files sent in a single LIST_CHUNK
+	public final static String TAG_TOKEN = "#"; // starts the tag of a pipelined request or reply - "#<tag> <message>"
 
 	/////////////////////
 	// CLIENT MESSAGES //
@@ -22,11 +25,14 @@ public class Protocol {
 	public final static String JOIN_CLIENT_TOKEN = "JOIN_CLIENT";
 	public final static String JOIN_CLIENT_HEARTBEAT = "JOIN_CLIENT_HEARTBEAT";
 	public final static String LIST_TOKEN = "LIST"; // also from Controller and Dstores
+	public final static String LIST_CHUNKED_TOKEN = "LIST_CHUNKED";
 	public final static String STORE_TOKEN = "STORE"; // also from Dstores
+	public final static String STORE_CHAIN_TOKEN = "STORE_CHAIN"; // also from Dstores
 	public final static String LOAD_TOKEN = "LOAD";
 	public final static String LOAD_DATA_TOKEN = "LOAD_DATA";
 	public final static String RELOAD_TOKEN = "RELOAD";
 	public final static String REMOVE_TOKEN = "REMOVE"; // also from Controller
+	public final static String TAGGED_TOKEN = "TAGGED"; // requests tagged requests when joining - also in JOIN_ACK
 
 
 	// getter methods //
@@ -35,6 +41,14 @@ public class Protocol {
 		return Protocol.JOIN_CLIENT_TOKEN;
 	}
 
+	public static String getJoinClientMessage(String codec){
+		return (codec == null) ? Protocol.getJoinClientMessage() : (Protocol.JOIN_CLIENT_TOKEN + Protocol.SPACE + codec);
+	}
+
+	public static String getJoinClientMessage(String codec, boolean tagged){
+		return tagged ? (Protocol.getJoinClientMessage(codec) + Protocol.SPACE + Protocol.TAGGED_TOKEN) : Protocol.getJoinClientMessage(codec);
+	}
+
 	public static String getJoinClientHeartbeatMessage(int clientPort){
 		return (Protocol.JOIN_CLIENT_HEARTBEAT + Protocol.SPACE + clientPort);
 	}
@@ -48,21 +62,28 @@ public class Protocol {
             return Protocol.LIST_TOKEN + Protocol.SPACE;
         }
 
-        String filesString = "";
+		return Protocol.appendFiles(new StringBuilder(Protocol.LIST_TOKEN), files).toString();
+	}
 
-        // forming single string
-        for(String file : files.keySet()){
-            filesString += Protocol.SPACE;
-            filesString += file + Protocol.SPACE + files.get(file);
-        }
-        
-		return (Protocol.LIST_TOKEN + filesString);
+	public static String getListChunkedMessage(int chunkSize){
+		return (Protocol.LIST_CHUNKED_TOKEN + Protocol.SPACE + chunkSize);
 	}
 
 	public static String getStoreMessage(String filename, int filesize){
 		return (Protocol.STORE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
 	}
 
+	public static String getStoreChainMessage(String filename, int filesize, List<Integer> chain){
+		StringBuilder message = new StringBuilder(Protocol.STORE_CHAIN_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
+
+		// adding the rest of the chain
+		for(int dstore : chain){
+			message.append(Protocol.SPACE).append(dstore);
+		}
+
+		return message.toString();
+	}
+
 	public static String getLoadMessage(String filename){
 		return (Protocol.LOAD_TOKEN + Protocol.SPACE + filename);
 	}
@@ -91,6 +112,8 @@ public class Protocol {
 	public final static String LOAD_FROM_TOKEN = "LOAD_FROM";
 	public final static String REMOVE_COMPLETE_TOKEN = "REMOVE_COMPLETE";
 	public final static String REBALANCE_TOKEN = "REBALANCE";
+	public final static String LIST_CHUNK_TOKEN = "LIST_CHUNK"; // also from Dstores
+	public final static String LIST_END_TOKEN = "LIST_END"; // also from Dstores
 	public final static String ERROR_DSTORE_PORT_IN_USE_TOKEN = "ERROR_DSTORE_PORT_IN_USE";
 	public final static String ERROR_FILE_DOES_NOT_EXIST_TOKEN = "ERROR_FILE_DOES_NOT_EXIST"; // also from Dstores
 	public final static String ERROR_FILE_ALREADY_EXISTS_TOKEN = "ERROR_FILE_ALREADY_EXISTS";
@@ -103,6 +126,14 @@ public class Protocol {
 		return Protocol.JOIN_ACK_TOKEN;
 	}
 
+	public static String getJoinAckMessage(String codec){
+		return (codec == null) ? Protocol.getJoinAckMessage() : (Protocol.JOIN_ACK_TOKEN + Protocol.SPACE + codec);
+	}
+
+	public static String getJoinAckMessage(String codec, boolean tagged){
+		return tagged ? (Protocol.getJoinAckMessage(codec) + Protocol.SPACE + Protocol.TAGGED_TOKEN) : Protocol.getJoinAckMessage(codec);
+	}
+
 	public static String getStoreToMessage(ArrayList<Integer> dstores){
 		// converting the list of ports to strings
 		ArrayList<String> stringDstores = new ArrayList<String>();
@@ -127,37 +158,35 @@ public class Protocol {
 	}
 
 	public static String getRebalanceMessage(ArrayList<FileToSend> filesToSend, ArrayList<String> filesToRemove){
-        // files to send message
-        String filesToSendMessage = "";
-        if(filesToSend.size() == 0){
-            filesToSendMessage += filesToSend.size() + Protocol.SPACE;
-        }
-        else{
-            filesToSendMessage += filesToSend.size() + Protocol.SPACE;
-            for(FileToSend fileToSend : filesToSend){
-                filesToSendMessage += fileToSend.filename + Protocol.SPACE + fileToSend.filesize + Protocol.SPACE;
+		StringBuilder message = new StringBuilder(Protocol.REBALANCE_TOKEN);
 
-                filesToSendMessage += fileToSend.dStores.size() + Protocol.SPACE;
+        // files to send
+        message.append(Protocol.SPACE).append(filesToSend.size()).append(Protocol.SPACE);
+        for(FileToSend fileToSend : filesToSend){
+            message.append(fileToSend.filename).append(Protocol.SPACE).append(fileToSend.filesize).append(Protocol.SPACE);
+            message.append(fileToSend.dStores.size()).append(Protocol.SPACE);
 
-                for(int dstore : fileToSend.dStores){
-                    filesToSendMessage += dstore;
-                    filesToSendMessage += Protocol.SPACE;
-                }
+            for(int dstore : fileToSend.dStores){
+                message.append(dstore).append(Protocol.SPACE);
             }
         }
 
-        // files to remove message
-        String filesToRemoveMessage = "";
-        if(filesToRemove.size() == 0){
-            filesToRemoveMessage += filesToRemove.size();
-        }
-        else{
-            filesToRemoveMessage += filesToRemove.size() + Protocol.SPACE;
-            filesToRemoveMessage += String.join(Protocol.SPACE, filesToRemove);
+        // files to remove
+        message.append(filesToRemove.size());
+        for(String fileToRemove : filesToRemove){
+            message.append(Protocol.SPACE).append(fileToRemove);
         }
 
 		// final message
-        return (Protocol.REBALANCE_TOKEN + Protocol.SPACE + filesToSendMessage + filesToRemoveMessage);
+        return message.toString();
+	}
+
+	public static String getListChunkMessage(HashMap<String, Integer> files){
+		return Protocol.appendFiles(new StringBuilder(Protocol.LIST_CHUNK_TOKEN), files).toString();
+	}
+
+	public static String getListEndMessage(){
+		return Protocol.LIST_END_TOKEN;
 	}
 
 	public static String getErrorDstorePortInUseMessage(){
@@ -203,6 +232,10 @@ public class Protocol {
 		return (Protocol.JOIN_DSTORE_TOKEN + Protocol.SPACE + port);
 	}
 
+	public static String getJoinDstoreMessage(int port, String codec){
+		return (codec == null) ? Protocol.getJoinDstoreMessage(port) : (Protocol.getJoinDstoreMessage(port) + Protocol.SPACE + codec);
+	}
+
 	public static String getAckMessage(){
 		return Protocol.ACK_TOKEN;
 	}
@@ -220,19 +253,40 @@ public class Protocol {
 		return (Protocol.REBALANCE_STORE_TOKEN + Protocol.SPACE + filename + Protocol.SPACE + filesize);
 	}
 
-	public static String getRebalanceCompleteMessage(HashMap<String, Integer> files){
-        if(files.size() == 0){
-            return (Protocol.REBALANCE_COMPLETE_TOKEN + Protocol.SPACE);
-        }
-        else{
-            String filesString = "";
+	public static String getRebalanceCompleteMessage(){
+		return Protocol.REBALANCE_COMPLETE_TOKEN;
+	}
 
-            // forming single string
-            for(String file : files.keySet()){
-                filesString += Protocol.SPACE + file + Protocol.SPACE + files.get(file);
-            }
-            
-            return (Protocol.REBALANCE_COMPLETE_TOKEN + filesString);
-        }
+	/////////////////////
+	// TAGGED MESSAGES //
+	/////////////////////
+
+	// getter methods //
+
+	public static String getTagPrefix(int tag){
+		return (Protocol.TAG_TOKEN + tag + Protocol.SPACE);
+	}
+
+	public static String getTaggedMessage(int tag, String message){
+		return (Protocol.getTagPrefix(tag) + message);
+	}
+
+	////////////////////
+	// HELPER METHODS //
+	////////////////////
+
+	/**
+	 * Appends a list of files to a message, as " filename filesize" for each file.
+	 * 
+	 * @param message The message being formed.
+	 * @param files Map of filename to filesize.
+	 * @return The message.
+	 */
+	private static StringBuilder appendFiles(StringBuilder message, HashMap<String, Integer> files){
+		for(HashMap.Entry<String, Integer> file : files.entrySet()){
+			message.append(Protocol.SPACE).append(file.getKey()).append(Protocol.SPACE).append(file.getValue());
+		}
+
+		return message;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package DS.Protocol.Token;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Scans the whitespace-separated tokens of a message string in place.
+ * 
+ * Replaces a StringTokenizer when tokenizing messages - numbers are parsed straight from
+ * the message without creating a string for them, and only the tokens that are kept (e.g.,
+ * filenames) are copied out of the message.
+ */
+public class MessageScanner {
+
+    // member variables
+    private String message;
+    private int position;
+
+    /**
+     * Class constructor.
+     * 
+     * @param message The message string being scanned.
+     */
+    public MessageScanner(String message){
+        this.message = message;
+        this.position = 0;
+    }
+
+    //////////////
+    // SCANNING //
+    //////////////
+
+    /**
+     * Determines if the message has any more tokens.
+     * 
+     * @return True if there is another token, false if not.
+     */
+    public boolean hasMoreTokens(){
+        this.skipWhitespace();
+
+        return (this.position < this.message.length());
+    }
+
+    /**
+     * Gathers the next token of the message.
+     * 
+     * @return The next token.
+     * @throws NoSuchElementException If there are no more tokens.
+     */
+    public String nextToken(){
+        int start = this.startToken();
+
+        return this.message.substring(start, this.position);
+    }
+
+    /**
+     * Gathers the next token of the message if there is one.
+     * 
+     * @return The next token, or null if there are no more tokens.
+     */
+    public String nextOptionalToken(){
+        return this.hasMoreTokens() ? this.nextToken() : null;
+    }
+
+    /**
+     * Parses the next token of the message as an integer (as Integer.parseInt would),
+     * without creating a string for it.
+     * 
+     * @return The value of the next token.
+     * @throws NoSuchElementException If there are no more tokens.
+     * @throws NumberFormatException If the token is not an integer.
+     */
+    public int nextInt(){
+        int start = this.startToken();
+        int end = this.position;
+        int i = start;
+
+        // sign
+        boolean negative = false;
+        char first = this.message.charAt(i);
+        if(first == '-' || first == '+'){
+            negative = (first == '-');
+            i++;
+        }
+        if(i == end){
+            throw new NumberFormatException(this.message.substring(start, end));
+        }
+
+        // digits (accumulated negatively so that Integer.MIN_VALUE can be parsed)
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int value = 0;
+        for(; i < end; i++){
+            int digit = this.message.charAt(i) - '0';
+            if(digit < 0 || digit > 9 || value < limit / 10 || value * 10 < limit + digit){
+                throw new NumberFormatException(this.message.substring(start, end));
+            }
+
+            value = value * 10 - digit;
+        }
+
+        return negative ? value : -value;
+    }
+
+    ////////////////////
+    // HELPER METHODS //
+    ////////////////////
+
+    /**
+     * Moves past the next token of the message.
+     * 
+     * @return The index of the start of the token (the position is left at its end).
+     * @throws NoSuchElementException If there are no more tokens.
+     */
+    private int startToken(){
+        if(!this.hasMoreTokens()){
+            throw new NoSuchElementException();
+        }
+
+        int start = this.position;
+        while(this.position < this.message.length() && !MessageScanner.isWhitespace(this.message.charAt(this.position))){
+            this.position++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Moves past any whitespace at the current position.
+     */
+    private void skipWhitespace(){
+        while(this.position < this.message.length() && MessageScanner.isWhitespace(this.message.charAt(this.position))){
+            this.position++;
+        }
+    }
+
+    /**
+     * Determines if a character separates tokens (the default delimiters of a
+     * StringTokenizer).
+     * 
+     * @param c The character.
+     * @return True if the character is whitespace, false if not.
+     */
+    private static boolean isWhitespace(char c){
+        return (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f');
+    }
+}
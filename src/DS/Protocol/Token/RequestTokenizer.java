@@ -2,7 +2,6 @@ package DS.Protocol.Token;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.StringTokenizer;
 
 import DS.Protocol.Protocol;
 import DS.Protocol.Token.TokenType.*;
@@ -19,162 +18,152 @@ public class RequestTokenizer {
 
     /**
      * Gathers a token from a message string.
+     * 
+     * The command of the message is resolved with a single switch (on the hash of the
+     * command), and the rest of the message is scanned in place.
+     * 
+     * A tagged message ("#<tag> <message>") is tokenized as the message after its tag,
+     * with the tag held in the token.
+     * 
      * @param message The message string.
      * @return The gathered token.
      */
     public static Token getToken(String message){
-        StringTokenizer sTokenizer = new StringTokenizer(message); // tokenizer splits string up based on spaces
-
-        // No tokens
-        if(!(sTokenizer.hasMoreTokens())){
-            return new InvalidRequestToken(message);
-        }
-
-        String firstToken = sTokenizer.nextToken();
-
-        // JOIN_DSTORE //
-        if (firstToken.equals(Protocol.JOIN_DSTORE_TOKEN)){
-            return getJoinDstoreToken(message, sTokenizer);
-        }
-
-        // JOIN_CLIENT //
-        else if(firstToken.equals(Protocol.JOIN_CLIENT_TOKEN)){
-            return new JoinClientToken(message);
-        }
-
-        // JOIN_CLIENT_HEARTBEAT //
-        else if(firstToken.equals(Protocol.JOIN_CLIENT_HEARTBEAT)){
-            return getJoinClientHeartbeatToken(message, sTokenizer);
-        }
-
-        // JOIN_ACK //
-        else if(firstToken.equals(Protocol.JOIN_ACK_TOKEN)){
-            return new JoinAckToken(message);
-        }
-
-        // ACK //
-        else if(firstToken.equals(Protocol.ACK_TOKEN)) {
-            return new AckToken(message);
-        }
-
-        // STORE //
-        else if(firstToken.equals(Protocol.STORE_TOKEN)){
-            return getStoreToken(message, sTokenizer);
-        }
-
-        // STORE_TO //
-        else if(firstToken.equals(Protocol.STORE_TO_TOKEN)){
-            return getStoreToToken(message, sTokenizer);
-        }
-
-        // STORE_ACK //
-        else if(firstToken.equals(Protocol.STORE_ACK_TOKEN)){
-            return getStoreAckToken(message, sTokenizer);
-        }
-
-        // STORE_COMPLETE //
-        else if(firstToken.equals(Protocol.STORE_COMPLETE_TOKEN)){
-            return new StoreCompleteToken(message);
-        }
-
-        // LOAD //
-        else if(firstToken.equals(Protocol.LOAD_TOKEN)){
-            return getLoadToken(message, sTokenizer);
-        }
-
-        // LOAD_FROM //
-        else if (firstToken.equals(Protocol.LOAD_FROM_TOKEN)){
-            return getLoadFromToken(message, sTokenizer);
+        // Tagged message
+        if(message.startsWith(Protocol.TAG_TOKEN)){
+            return getTaggedToken(message);
         }
 
-        // LOAD_DATA //
-        else if(firstToken.equals(Protocol.LOAD_DATA_TOKEN)){
-            return getLoadDataToken(message, sTokenizer);
-        }
+        return getUntaggedToken(message);
+    }
 
-        // RELOAD //
-        else if(firstToken.equals(Protocol.RELOAD_TOKEN)){
-            return getReloadToken(message, sTokenizer);
-        }
+    /**
+     * Gathers a token from an untagged message string.
+     * 
+     * @param message The message string.
+     * @return The gathered token.
+     */
+    private static Token getUntaggedToken(String message){
+        MessageScanner scanner = new MessageScanner(message); // scanner splits string up based on whitespace
 
-        // REMOVE //
-        else if (firstToken.equals(Protocol.REMOVE_TOKEN)){
-            return getRemoveToken(message, sTokenizer);
+        // No tokens
+        if(!(scanner.hasMoreTokens())){
+            return new InvalidRequestToken(message);
         }
 
-        // REMOVE_ACK //
-        else if(firstToken.equals(Protocol.REMOVE_ACK_TOKEN)){
-            return getRemoveAckToken(message, sTokenizer);
+        switch(scanner.nextToken()){
+            case Protocol.JOIN_DSTORE_TOKEN: return getJoinDstoreToken(message, scanner);
+            case Protocol.JOIN_CLIENT_TOKEN: return getJoinClientToken(message, scanner);
+            case Protocol.JOIN_CLIENT_HEARTBEAT: return getJoinClientHeartbeatToken(message, scanner);
+            case Protocol.JOIN_ACK_TOKEN: return getJoinAckToken(message, scanner);
+            case Protocol.ACK_TOKEN: return new AckToken(message);
+            case Protocol.STORE_TOKEN: return getStoreToken(message, scanner);
+            case Protocol.STORE_CHAIN_TOKEN: return getStoreChainToken(message, scanner);
+            case Protocol.STORE_TO_TOKEN: return getStoreToToken(message, scanner);
+            case Protocol.STORE_ACK_TOKEN: return getStoreAckToken(message, scanner);
+            case Protocol.STORE_COMPLETE_TOKEN: return new StoreCompleteToken(message);
+            case Protocol.LOAD_TOKEN: return getLoadToken(message, scanner);
+            case Protocol.LOAD_FROM_TOKEN: return getLoadFromToken(message, scanner);
+            case Protocol.LOAD_DATA_TOKEN: return getLoadDataToken(message, scanner);
+            case Protocol.RELOAD_TOKEN: return getReloadToken(message, scanner);
+            case Protocol.REMOVE_TOKEN: return getRemoveToken(message, scanner);
+            case Protocol.REMOVE_ACK_TOKEN: return getRemoveAckToken(message, scanner);
+            case Protocol.REMOVE_COMPLETE_TOKEN: return new RemoveCompleteToken(message);
+            case Protocol.LIST_TOKEN: return getListToken(message, scanner);
+            case Protocol.LIST_CHUNKED_TOKEN: return getListChunkedToken(message, scanner);
+            case Protocol.LIST_CHUNK_TOKEN: return getListChunkToken(message, scanner);
+            case Protocol.LIST_END_TOKEN: return new ListEndToken(message);
+            case Protocol.REBALANCE_TOKEN: return getRebalanceToken(message, scanner);
+            case Protocol.REBALANCE_STORE_TOKEN: return getRebalanceStoreToken(message, scanner);
+            case Protocol.REBALANCE_COMPLETE_TOKEN: return new RebalanceCompleteToken(message);
+            case Protocol.ERROR_DSTORE_PORT_IN_USE_TOKEN: return new ErrorDstorePortInUseToken(message);
+            case Protocol.ERROR_NOT_ENOUGH_DSTORES_TOKEN: return new ErrorNotEnoughDStoresToken(message);
+            case Protocol.ERROR_FILE_ALREADY_EXISTS_TOKEN: return new ErrorFileAlreadyExistsToken(message);
+            case Protocol.ERROR_FILE_DOES_NOT_EXIST_TOKEN: return getErrorFileDoesNotExistToken(message, scanner);
+            case Protocol.ERROR_LOAD_TOKEN: return new ErrorLoadToken(message);
+
+            // Unrecognized //
+            default: return new InvalidRequestToken(message);
         }
+    }
 
-        // REMOVE_COMPLETE //
-        else if(firstToken.equals(Protocol.REMOVE_COMPLETE_TOKEN)){
-            return new RemoveCompleteToken(message);
-        }
+    /**
+     * Gathers the token of a tagged message from a message string. A message can only
+     * hold one tag.
+     * 
+     * @param message
+     * @return
+     */
+    private static Token getTaggedToken(String message) {
+        try{
+            int space = message.indexOf(' ');
+            int tag = Integer.parseInt(message.substring(Protocol.TAG_TOKEN.length(), space));
+            String untaggedMessage = message.substring(space + 1);
 
-        // LIST //
-        else if(firstToken.equals(Protocol.LIST_TOKEN)){
-            return getListToken(message, sTokenizer);
-        }
+            // message tagged more than once
+            if(untaggedMessage.startsWith(Protocol.TAG_TOKEN)){
+                return new InvalidRequestToken(message);
+            }
 
-        // REBALANCE //
-        else if (firstToken.equals(Protocol.REBALANCE_TOKEN)){
-            return getRebalanceToken(message, sTokenizer);
-        }
+            Token token = getUntaggedToken(untaggedMessage);
+            token.tag = tag;
 
-        // REBALANCE_STORE //
-        else if (firstToken.equals(Protocol.REBALANCE_STORE_TOKEN)){
-            return getRebalanceStoreToken(message, sTokenizer);
+            return token;
         }
-
-        // REBALANCE_COMPLETE //
-        else if(firstToken.equals(Protocol.REBALANCE_COMPLETE_TOKEN)){
-            return new RebalanceCompleteToken(message);
+        catch(Exception e){
+            return new InvalidRequestToken(message);
         }
+    }
 
-        // ERROR_DSTORE_PORT_IN_USE //
-        else if(firstToken.equals(Protocol.ERROR_DSTORE_PORT_IN_USE_TOKEN)){
-            return new ErrorDstorePortInUseToken(message);
-        }
+    /**
+     * Gathers a JOIN_CLIENT token from a message string.
+     * 
+     * @param message
+     * @param scanner
+     * @return
+     */
+    private static Token getJoinClientToken(String message, MessageScanner scanner) {
+        String codec = scanner.nextOptionalToken();
 
-        // ERROR_NOT_ENOUGH_DSTORES //
-        else if(firstToken.equals(Protocol.ERROR_NOT_ENOUGH_DSTORES_TOKEN)){
-            return new ErrorNotEnoughDStoresToken(message);
+        // tagged requests requested without a codec
+        if(Protocol.TAGGED_TOKEN.equals(codec)){
+            return new JoinClientToken(message, null, true);
         }
 
-        // ERROR_FILE_ALREADY_EXISTS //
-        else if(firstToken.equals(Protocol.ERROR_FILE_ALREADY_EXISTS_TOKEN)){
-            return new ErrorFileAlreadyExistsToken(message);
-        }
+        return new JoinClientToken(message, codec, Protocol.TAGGED_TOKEN.equals(scanner.nextOptionalToken()));
+    }
 
-        // ERROR_FILE_DOES_NOT_EXIST //
-        else if(firstToken.equals(Protocol.ERROR_FILE_DOES_NOT_EXIST_TOKEN)){
-            return getErrorFileDoesNotExistToken(message, sTokenizer);
-        }
+    /**
+     * Gathers a JOIN_ACK token from a message string.
+     * 
+     * @param message
+     * @param scanner
+     * @return
+     */
+    private static Token getJoinAckToken(String message, MessageScanner scanner) {
+        String codec = scanner.nextOptionalToken();
 
-        // ERROR_LOAD //
-        else if(firstToken.equals(Protocol.ERROR_LOAD_TOKEN)){
-            return new ErrorLoadToken(message);
+        // tagged requests agreed without a codec
+        if(Protocol.TAGGED_TOKEN.equals(codec)){
+            return new JoinAckToken(message, null, true);
         }
 
-        // Unrecognized //
-        else{
-            return new InvalidRequestToken(message);
-        }
+        return new JoinAckToken(message, codec, Protocol.TAGGED_TOKEN.equals(scanner.nextOptionalToken()));
     }
 
     /**
      * Gathers a JOIN_DSTORE token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getJoinDstoreToken(String message, StringTokenizer sTokenizer) {
+    private static Token getJoinDstoreToken(String message, MessageScanner scanner) {
         try{
-            int port = Integer.parseInt(sTokenizer.nextToken());
+            int port = scanner.nextInt();
+            String codec = scanner.nextOptionalToken();
 
-            return new JoinDstoreToken(message, port);
+            return new JoinDstoreToken(message, port, codec);
         }
         catch(Exception e){
             return new InvalidRequestToken(message);
@@ -185,12 +174,12 @@ public class RequestTokenizer {
      * Gathers a JOIN_CLIENT_HEARTBEAT token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getJoinClientHeartbeatToken(String message, StringTokenizer sTokenizer) {
+    private static Token getJoinClientHeartbeatToken(String message, MessageScanner scanner) {
         try{
-            int port = Integer.parseInt(sTokenizer.nextToken());
+            int port = scanner.nextInt();
 
             return new JoinClientHeartbeatToken(message, port);
         }
@@ -203,13 +192,13 @@ public class RequestTokenizer {
      * Gathers a STORE token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getStoreToken(String message, StringTokenizer sTokenizer) {
+    private static Token getStoreToken(String message, MessageScanner scanner) {
         try{
-            String filename = sTokenizer.nextToken();
-            int filesize = Integer.parseInt(sTokenizer.nextToken());
+            String filename = scanner.nextToken();
+            int filesize = scanner.nextInt();
             return new StoreToken(message, filename, filesize);
         }
         catch(Exception e){
@@ -217,19 +206,44 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers a STORE_CHAIN token from a message string.
+     * 
+     * @param message
+     * @param scanner
+     * @return
+     */
+    private static Token getStoreChainToken(String message, MessageScanner scanner) {
+        ArrayList<Integer> chain = new ArrayList<Integer>();
+
+        try{
+            String filename = scanner.nextToken();
+            int filesize = scanner.nextInt();
+
+            while(scanner.hasMoreTokens()){
+                chain.add(scanner.nextInt());
+            }
+
+            return new StoreChainToken(message, filename, filesize, chain);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a STORE_TO token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getStoreToToken(String message, StringTokenizer sTokenizer) {
+    private static Token getStoreToToken(String message, MessageScanner scanner) {
         ArrayList<Integer> ports = new ArrayList<Integer>();
         
         try{
-            while(sTokenizer.hasMoreTokens()){
-                int port = Integer.parseInt(sTokenizer.nextToken());
+            while(scanner.hasMoreTokens()){
+                int port = scanner.nextInt();
                 ports.add(port);
             }
 
@@ -244,12 +258,12 @@ public class RequestTokenizer {
      * Gathers a STORE_ACK token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    public static Token getStoreAckToken(String message, StringTokenizer sTokenizer){
+    public static Token getStoreAckToken(String message, MessageScanner scanner){
         try{
-            String filename = sTokenizer.nextToken();
+            String filename = scanner.nextToken();
 
             return new StoreAckToken(message, filename);
         }
@@ -262,12 +276,12 @@ public class RequestTokenizer {
      * Gathers a LOAD token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getLoadToken(String message, StringTokenizer sTokenizer){
+    private static Token getLoadToken(String message, MessageScanner scanner){
         try{
-            String filename = sTokenizer.nextToken();
+            String filename = scanner.nextToken();
 
             return new LoadToken(message, filename);
         }
@@ -280,14 +294,14 @@ public class RequestTokenizer {
      * Gathers a LOAD_FROM token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getLoadFromToken(String message, StringTokenizer sTokenizer) {
+    private static Token getLoadFromToken(String message, MessageScanner scanner) {
         try{
-            int port = Integer.parseInt(sTokenizer.nextToken());
+            int port = scanner.nextInt();
 
-            int filesize = Integer.parseInt(sTokenizer.nextToken());
+            int filesize = scanner.nextInt();
 
             return new LoadFromToken(message, port, filesize);
         }
@@ -300,12 +314,12 @@ public class RequestTokenizer {
      * Gathers a LOAD_DATA token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getLoadDataToken(String message, StringTokenizer sTokenizer) {
+    private static Token getLoadDataToken(String message, MessageScanner scanner) {
         try{
-            String filename = sTokenizer.nextToken();
+            String filename = scanner.nextToken();
 
             return new LoadDataToken(message, filename);
         }
@@ -318,12 +332,12 @@ public class RequestTokenizer {
      * Gathers a RELOAD token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getReloadToken(String message, StringTokenizer sTokenizer) {
+    private static Token getReloadToken(String message, MessageScanner scanner) {
         try{
-            String filename = sTokenizer.nextToken();
+            String filename = scanner.nextToken();
 
         return new ReloadToken(message, filename);
         }
@@ -336,12 +350,12 @@ public class RequestTokenizer {
      * Gathers a REMOVE token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getRemoveToken(String message, StringTokenizer sTokenizer) {
+    private static Token getRemoveToken(String message, MessageScanner scanner) {
         try{
-            String filename = sTokenizer.nextToken();
+            String filename = scanner.nextToken();
 
             return new RemoveToken(message, filename);
         }
@@ -354,12 +368,12 @@ public class RequestTokenizer {
      * Gathers a REMOVE_ACK token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getRemoveAckToken(String message, StringTokenizer sTokenizer) {
+    private static Token getRemoveAckToken(String message, MessageScanner scanner) {
         try{
-            String filename = sTokenizer.nextToken();
+            String filename = scanner.nextToken();
 
             return new RemoveAckToken(message, filename);
         }
@@ -372,12 +386,12 @@ public class RequestTokenizer {
      * Gathers an ERROR_FILE_DOES_NOT_EXIST token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getErrorFileDoesNotExistToken(String message, StringTokenizer sTokenizer) {
-        if(sTokenizer.hasMoreTokens()){
-            String filename = sTokenizer.nextToken();
+    private static Token getErrorFileDoesNotExistToken(String message, MessageScanner scanner) {
+        if(scanner.hasMoreTokens()){
+            String filename = scanner.nextToken();
 
             return new ErrorFileDoesNotExistFilenameToken(message, filename);
         }
@@ -390,17 +404,17 @@ public class RequestTokenizer {
      * Gathers a LIST token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getListToken(String message, StringTokenizer sTokenizer) {
+    private static Token getListToken(String message, MessageScanner scanner) {
         try{
-            if(sTokenizer.hasMoreTokens()){
+            if(scanner.hasMoreTokens()){
                 HashMap<String,Integer> files = new HashMap<String,Integer>();
-                while(sTokenizer.hasMoreTokens()){
-                    String filename = sTokenizer.nextToken();
+                while(scanner.hasMoreTokens()){
+                    String filename = scanner.nextToken();
 
-                    int filesize = Integer.parseInt(sTokenizer.nextToken());
+                    int filesize = scanner.nextInt();
 
                     files.put(filename, filesize);
                 }
@@ -420,33 +434,76 @@ public class RequestTokenizer {
         }
     }
 
+    /**
+     * Gathers a LIST_CHUNKED token from a message string.
+     * 
+     * @param message
+     * @param scanner
+     * @return
+     */
+    private static Token getListChunkedToken(String message, MessageScanner scanner) {
+        try{
+            int chunkSize = scanner.nextInt();
+
+            return new ListChunkedToken(message, chunkSize);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
+    /**
+     * Gathers a LIST_CHUNK token from a message string.
+     * 
+     * @param message
+     * @param scanner
+     * @return
+     */
+    private static Token getListChunkToken(String message, MessageScanner scanner) {
+        try{
+            HashMap<String,Integer> files = new HashMap<String,Integer>();
+            while(scanner.hasMoreTokens()){
+                String filename = scanner.nextToken();
+
+                int filesize = scanner.nextInt();
+
+                files.put(filename, filesize);
+            }
+
+            return new ListChunkToken(message, files);
+        }
+        catch(Exception e){
+            return new InvalidRequestToken(message);
+        }
+    }
+
     /**
      * Gathers a REBALANC token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getRebalanceToken(String message, StringTokenizer sTokenizer) {
+    private static Token getRebalanceToken(String message, MessageScanner scanner) {
         try{
             
             // Files to send //
 
-            int numberOfFilesToSend = Integer.parseInt(sTokenizer.nextToken());
+            int numberOfFilesToSend = scanner.nextInt();
 
             ArrayList<FileToSend> filesToSend = new ArrayList<FileToSend>();
 
             for(int i = 0; i < numberOfFilesToSend; i++){
-                String filename = sTokenizer.nextToken();
+                String filename = scanner.nextToken();
 
-                int filesize = Integer.parseInt(sTokenizer.nextToken());
+                int filesize = scanner.nextInt();
 
-                int numberOfDStores = Integer.parseInt(sTokenizer.nextToken());
+                int numberOfDStores = scanner.nextInt();
 
                 ArrayList<Integer> ports = new ArrayList<Integer>();
 
                 for(int j = 0; j < numberOfDStores; j++){
-                    int port = Integer.parseInt(sTokenizer.nextToken());
+                    int port = scanner.nextInt();
 
                     ports.add(port);
                 }
@@ -457,12 +514,12 @@ public class RequestTokenizer {
 
             // Files to remove //
 
-            int numberOfFilesToRemove = Integer.parseInt(sTokenizer.nextToken());
+            int numberOfFilesToRemove = scanner.nextInt();
 
             ArrayList<String> filesToRemove = new ArrayList<String>();
 
             for(int i = 0; i < numberOfFilesToRemove; i++){
-                String filename = sTokenizer.nextToken();
+                String filename = scanner.nextToken();
 
                 filesToRemove.add(filename);
             }
@@ -478,13 +535,13 @@ public class RequestTokenizer {
      * Gathers a REBALANCE_STORE token from a message string.
      * 
      * @param message
-     * @param sTokenizer
+     * @param scanner
      * @return
      */
-    private static Token getRebalanceStoreToken(String message, StringTokenizer sTokenizer) {
+    private static Token getRebalanceStoreToken(String message, MessageScanner scanner) {
         try{
-            String filename = sTokenizer.nextToken();
-            int filesize = Integer.parseInt(sTokenizer.nextToken());
+            String filename = scanner.nextToken();
+            int filesize = scanner.nextInt();
             return new RebalanceStoreToken(message, filename, filesize);
         }
         catch(Exception e){
@@ -5,4 +5,5 @@ package DS.Protocol.Token;
  */
 public abstract class Token {
     public String message;
+    public Integer tag; // tag of a pipelined request or reply (null if the message is not tagged)
 }
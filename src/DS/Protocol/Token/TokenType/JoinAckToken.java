@@ -9,7 +9,12 @@ import DS.Protocol.Token.Token;
  */
 public class JoinAckToken extends Token{
     
-    public JoinAckToken(String message){
+    public String codec; // codec agreed by the server (null for text)
+    public boolean tagged; // true if tagged requests are agreed
+
+    public JoinAckToken(String message, String codec, boolean tagged){
         this.message = message;
+        this.codec = codec;
+        this.tagged = tagged;
     }
 }
@@ -9,7 +9,12 @@ import DS.Protocol.Token.Token;
  */
 public class JoinClientToken extends Token{
     
-    public JoinClientToken(String message){
+    public String codec; // codec requested by the client (null for text)
+    public boolean tagged; // true if tagged requests are requested
+
+    public JoinClientToken(String message, String codec, boolean tagged){
         this.message = message;
+        this.codec = codec;
+        this.tagged = tagged;
     }
 }
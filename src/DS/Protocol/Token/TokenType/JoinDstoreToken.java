@@ -10,9 +10,11 @@ import DS.Protocol.Token.Token;
 public class JoinDstoreToken extends Token {
     
     public int port;
+    public String codec; // codec requested by the Dstore (null for text)
 
-    public JoinDstoreToken(String message, int port) {
+    public JoinDstoreToken(String message, int port, String codec) {
         this.message = message;
         this.port = port;
+        this.codec = codec;
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package DS.Protocol.Token.TokenType;
+
+import java.util.HashMap;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a chunk of the list of files sent in reply to a LIST_CHUNKED request.
+ * 
+ * Syntax: LIST_CHUNK <filename> <filesize> <filename> <filesize> ...
+ */
+public class ListChunkToken extends Token{
+    
+    public HashMap<String, Integer> files;
+
+    public ListChunkToken(String message, HashMap<String, Integer> files){
+        this.message = message;
+        this.files = files;
+    }
+}
@@ -0,0 +1,18 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a request for the list of files, sent as a series of chunks.
+ * 
+ * Syntax: LIST_CHUNKED <chunk_size>
+ */
+public class ListChunkedToken extends Token{
+
+    public int chunkSize;
+
+    public ListChunkedToken(String message, int chunkSize){
+        this.message = message;
+        this.chunkSize = chunkSize;
+    }
+}
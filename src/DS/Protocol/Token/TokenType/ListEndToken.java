@@ -0,0 +1,15 @@
+package DS.Protocol.Token.TokenType;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for the end of the chunks sent in reply to a LIST_CHUNKED request.
+ * 
+ * Syntax: LIST_END
+ */
+public class ListEndToken extends Token{
+
+    public ListEndToken(String message){
+        this.message = message;
+    }
+}
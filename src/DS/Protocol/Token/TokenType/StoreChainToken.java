@@ -0,0 +1,25 @@
+package DS.Protocol.Token.TokenType;
+
+import java.util.ArrayList;
+
+import DS.Protocol.Token.Token;
+
+/**
+ * Token for a STORE_CHAIN request, a STORE that the receiving Dstore forwards along
+ * a chain of further Dstores as the file content arrives.
+ * 
+ * Syntax: STORE_CHAIN filename filesize [port ...]
+ */
+public class StoreChainToken extends Token{
+    
+    public String filename;
+    public int filesize;
+    public ArrayList<Integer> chain;
+
+    public StoreChainToken(String message, String filename, int filesize, ArrayList<Integer> chain){
+        this.message = message;
+        this.filename = filename;
+        this.filesize = filesize;
+        this.chain = chain;
+    }
+}
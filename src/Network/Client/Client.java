@@ -1,9 +1,11 @@
 package Network.Client;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import Network.Connection;
+import Network.ConnectionThreadFactory;
 import Network.NetworkInterface;
+import Network.NetworkOptions;
 import Network.NetworkProcess;
 import Network.Protocol.Exception.ClientSetupException;
 import Network.Protocol.Exception.ClientStartException;
@@ -23,9 +25,11 @@ public abstract class Client implements NetworkProcess{
     private int serverPort;
     private int timeout;
     private NetworkInterface networkInterface;
+    private NetworkOptions options;
+    private ConnectionThreadFactory connectionThreadFactory;
     private Connection serverConnection;
     private HeartbeatConnection serverHeartbeat;
-    private ArrayList<Connection> secondaryServerConnections;
+    private volatile CopyOnWriteArrayList<Connection> secondaryServerConnections;
 
     /**
      * Class Constructor.
@@ -35,11 +39,25 @@ public abstract class Client implements NetworkProcess{
      * @param networkInterface The network interface for the client.
      */
     public Client(int serverPort, int timeout, NetworkInterface networkInterface) {
+        this(serverPort, timeout, networkInterface, new NetworkOptions());
+    }
+
+    /**
+     * Class Constructor.
+     * 
+     * @param serverPort The port of the Server.
+     * @param timeout The message timeout period.
+     * @param networkInterface The network interface for the client.
+     * @param options The optional settings for the client.
+     */
+    public Client(int serverPort, int timeout, NetworkInterface networkInterface, NetworkOptions options) {
         // initialising member variables
         this.serverPort = serverPort;
         this.timeout = timeout;
         this.networkInterface = networkInterface;
-        this.secondaryServerConnections = new ArrayList<Connection>();
+        this.options = options;
+        this.connectionThreadFactory = new ConnectionThreadFactory(options);
+        this.secondaryServerConnections = new CopyOnWriteArrayList<Connection>();
     }
 
     /**
@@ -102,6 +120,14 @@ public abstract class Client implements NetworkProcess{
         return this.networkInterface;
     }
 
+    public NetworkOptions getOptions(){
+        return this.options;
+    }
+
+    public ConnectionThreadFactory getConnectionThreadFactory(){
+        return this.connectionThreadFactory;
+    }
+
     public Connection getServerConnection(){
         return this.serverConnection;
     }
@@ -110,7 +136,7 @@ public abstract class Client implements NetworkProcess{
         return this.serverHeartbeat;
     }
 
-    public ArrayList<Connection> getSecondaryServerConnections(){
+    public CopyOnWriteArrayList<Connection> getSecondaryServerConnections(){
         return this.secondaryServerConnections;
     }
 
@@ -0,0 +1,329 @@
+package Network.Client;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import Network.Connection;
+import Network.NetworkOptions;
+import Network.Protocol.Exception.ConnectionPoolExhaustedException;
+
+/**
+ * A pool of connections to servers, keyed by the port of the server.
+ * 
+ * Connections are set up (including any joining handshake) by the pool's Connector the
+ * first time they are needed, and are returned to the pool after each operation so that
+ * later operations on the same server can reuse them. Before an idle connection is reused
+ * it is checked to make sure the server has not closed it. The pool's CloseListener is told of
+ * every connection the pool closes, so that the connection can be forgotten by its owner.
+ * 
+ * Options:
+ *  - pool-size         : The maximum number of connections to a single server (default 4,
+ *                        0 disables pooling so each operation has a new connection).
+ *  - pool-idle-timeout : Time in ms after which an unused connection is closed (default 30000).
+ */
+public class ConnectionPool {
+
+    // member variables
+    private Connector connector;
+    private CloseListener closeListener;
+    private int maxPerServer;
+    private long idleTimeout;
+    private int timeout;
+    private ConcurrentHashMap<Integer, Server> servers;
+    private ScheduledExecutorService evictor;
+
+    /**
+     * Class constructor.
+     * 
+     * @param connector Sets up new connections to servers.
+     * @param closeListener Told of each connection closed by the pool.
+     * @param timeout The time in ms to wait for a connection to a server to become free.
+     * @param options The options of the process the pool belongs to.
+     */
+    public ConnectionPool(Connector connector, CloseListener closeListener, int timeout, NetworkOptions options){
+        this(connector, closeListener, timeout, options.getInt("pool-size", 4), options.getLong("pool-idle-timeout", 30000));
+    }
+
+    /**
+     * Class constructor.
+     * 
+     * @param connector Sets up new connections to servers.
+     * @param closeListener Told of each connection closed by the pool.
+     * @param timeout The time in ms to wait for a connection to a server to become free.
+     * @param maxPerServer The maximum number of connections to a single server (0 disables pooling).
+     * @param idleTimeout Time in ms after which an unused connection is closed.
+     */
+    public ConnectionPool(Connector connector, CloseListener closeListener, int timeout, int maxPerServer, long idleTimeout){
+        this.connector = connector;
+        this.closeListener = closeListener;
+        this.maxPerServer = maxPerServer;
+        this.idleTimeout = idleTimeout;
+        this.timeout = timeout;
+        this.servers = new ConcurrentHashMap<Integer, Server>();
+
+        // closing idle connections in the background
+        if(this.isEnabled()){
+            this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, this.idleTimeout / 2);
+            this.evictor.scheduleWithFixedDelay(this::evictIdleConnections, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Takes a connection to a server from the pool, setting up a new one if no idle
+     * connection is available.
+     * 
+     * Waits for a connection to be released if the server already has the maximum number
+     * of connections.
+     * 
+     * @param port The port of the server.
+     * @return A connection to the server, which must be given back with release or discard.
+     * @throws ConnectionPoolExhaustedException If no connection became free within the timeout.
+     * @throws Exception If a new connection could not be set up.
+     */
+    public Connection acquire(int port) throws Exception{
+        // pooling disabled
+        if(!this.isEnabled()){
+            return this.connector.connect(port);
+        }
+
+        Server server = this.servers.computeIfAbsent(port, key -> new Server(this.maxPerServer));
+
+        // waiting for the server to have a free connection
+        if(!server.permits.tryAcquire(this.timeout, TimeUnit.MILLISECONDS)){
+            throw new ConnectionPoolExhaustedException(port);
+        }
+
+        try{
+            // reusing the most recently used healthy connection
+            IdleConnection idle;
+            while((idle = server.idle.pollFirst()) != null){
+                if(isHealthy(idle.connection)){
+                    return idle.connection;
+                }
+
+                this.closeConnection(idle.connection);
+            }
+
+            // setting up a new connection
+            return this.connector.connect(port);
+        }
+        catch(Exception e){
+            server.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool after an operation completed successfully.
+     * 
+     * @param connection The connection, as returned by acquire.
+     */
+    public void release(Connection connection){
+        // pooling disabled
+        if(!this.isEnabled()){
+            this.closeConnection(connection);
+            return;
+        }
+
+        Server server = this.servers.get(connection.getPort());
+
+        if(connection.isOpen()){
+            server.idle.offerFirst(new IdleConnection(connection));
+        }
+        else{
+            // connection closed during the operation - owner must still forget it
+            this.closeListener.connectionClosed(connection);
+        }
+
+        server.permits.release();
+    }
+
+    /**
+     * Closes a connection that failed during an operation, rather than giving it back to
+     * the pool (its state is unknown).
+     * 
+     * @param connection The connection, as returned by acquire.
+     */
+    public void discard(Connection connection){
+        this.closeConnection(connection);
+
+        if(this.isEnabled()){
+            this.servers.get(connection.getPort()).permits.release();
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle for longer than the idle timeout.
+     */
+    private void evictIdleConnections(){
+        long now = System.currentTimeMillis();
+
+        for(Server server : this.servers.values()){
+            Iterator<IdleConnection> connections = server.idle.descendingIterator();
+            while(connections.hasNext()){
+                IdleConnection idle = connections.next();
+
+                if(now - idle.lastUsed >= this.idleTimeout && server.idle.removeFirstOccurrence(idle)){
+                    this.closeConnection(idle.connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if an idle connection can still be used, i.e., it is open and the server
+     * has not closed it or sent anything on it since it was last used.
+     * 
+     * @param connection The idle connection.
+     * @return True if the connection can be used, false if not.
+     */
+    private static boolean isHealthy(Connection connection){
+        if(connection.isClosed()){
+            return false;
+        }
+
+        SocketChannel channel = connection.getSocket().getChannel();
+        if(channel == null){
+            return true;
+        }
+
+        // reading without blocking - nothing should be waiting on an idle connection
+        try{
+            synchronized(channel.blockingLock()){
+                channel.configureBlocking(false);
+                try{
+                    return channel.read(ByteBuffer.allocate(1)) == 0;
+                }
+                finally{
+                    channel.configureBlocking(true);
+                }
+            }
+        }
+        catch(Exception e){
+            return false;
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops evicting connections.
+     */
+    public void close(){
+        if(this.evictor != null){
+            this.evictor.shutdownNow();
+        }
+
+        for(Server server : this.servers.values()){
+            IdleConnection idle;
+            while((idle = server.idle.pollFirst()) != null){
+                this.closeConnection(idle.connection);
+            }
+        }
+    }
+
+    /**
+     * Closes a connection taken out of the pool, and tells the pool's CloseListener.
+     * 
+     * @param connection The connection being closed.
+     */
+    private void closeConnection(Connection connection){
+        connection.close();
+        this.closeListener.connectionClosed(connection);
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean isEnabled(){
+        return this.maxPerServer > 0;
+    }
+
+    /**
+     * Returns the number of idle connections to a server.
+     * 
+     * @param port The port of the server.
+     * @return The number of idle connections.
+     */
+    public int getIdleCount(int port){
+        Server server = this.servers.get(port);
+        return (server == null) ? 0 : server.idle.size();
+    }
+
+    ///////////////
+    // CONNECTOR //
+    ///////////////
+
+    /**
+     * Sets up a new connection to a server for the pool.
+     */
+    public interface Connector {
+
+        /**
+         * Sets up a new connection to the server on the given port.
+         * 
+         * @param port The port of the server.
+         * @return The connection, ready for use.
+         * @throws Exception If the connection could not be set up.
+         */
+        public Connection connect(int port) throws Exception;
+    }
+
+    /**
+     * Told of the connections closed by the pool.
+     */
+    public interface CloseListener {
+
+        /**
+         * Handles a connection having been closed by the pool.
+         * 
+         * @param connection The connection that was closed.
+         */
+        public void connectionClosed(Connection connection);
+    }
+
+    /////////////////////
+    // POOL STRUCTURES //
+    /////////////////////
+
+    /**
+     * The connections to a single server.
+     */
+    private static class Server {
+
+        // member variables
+        private Semaphore permits; // connections that may still be taken (in use or not)
+        private ConcurrentLinkedDeque<IdleConnection> idle; // most recently used first
+
+        private Server(int maxConnections){
+            this.permits = new Semaphore(maxConnections);
+            this.idle = new ConcurrentLinkedDeque<IdleConnection>();
+        }
+    }
+
+    /**
+     * A connection waiting in the pool, with the time it was last used.
+     */
+    private static class IdleConnection {
+
+        // member variables
+        private Connection connection;
+        private long lastUsed;
+
+        private IdleConnection(Connection connection){
+            this.connection = connection;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+}
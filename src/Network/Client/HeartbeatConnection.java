@@ -8,8 +8,11 @@ import Network.Protocol.Exception.ConnectionTerminatedException;
  * 
  * A Client can create a new Heartbeat connection to a Server, and the 'handleServerDisconnect' 
  * method on the Client will be called when the connection drops.
+ * 
+ * The heartbeat runs on a thread created by the Client's ConnectionThreadFactory (and so
+ * may be a virtual thread).
  */
-public class HeartbeatConnection extends Thread{
+public class HeartbeatConnection implements Runnable{
 
     // member variables
     Client client;
@@ -28,6 +31,13 @@ public class HeartbeatConnection extends Thread{
         this.isActive = true;
     }
 
+    /**
+     * Starts listening for the heartbeat on a new thread.
+     */
+    public void start(){
+        this.client.getConnectionThreadFactory().start(this);
+    }
+
     /**
      * Method run when thread started.
      */
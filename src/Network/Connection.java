@@ -1,15 +1,20 @@
 package Network;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 
 import Network.Protocol.Event.ClientConnectionEvent;
 import Network.Protocol.Exception.*;
@@ -22,16 +27,33 @@ import Network.Server.Server.ServerType;
  * 
  * Has methods that allow for messages to be sent an recieved and also handles the logging
  * of these messages to the given NetworkInterface.
+ * 
+ * Sockets are backed by (blocking) channels, so that files can be sent straight from disk
+ * to the socket (see sendFile).
+ * 
+ * Messages are framed by the connection's codecs - newline-delimited text unless another
+ * codec is agreed with the connector (see setCodec). The inbound and outbound codecs are
+ * changed separately, as each side of the connection switches codec at a different point
+ * while agreeing it.
+ * 
+ * A thread replying to a tagged request sets a reply prefix (the request's tag), which is
+ * put before each message the thread sends through the connection until it is cleared, so
+ * the replies to requests handled at the same time can be told apart (see setReplyPrefix).
  */
 public class Connection{
+
+    // constants
+    protected static final int TRANSFER_BUFFER_SIZE = 64 * 1024; // bytes copied at once when receiving a file
+    public static final MessageCodec TEXT_CODEC = new TextCodec();
     
     // member variables
     private NetworkInterface networkInterface;
     private Socket socket;
-    private PrintWriter textOut;
-    private BufferedReader textIn;
     private OutputStream dataOut;
-    private InputStream dataIn;
+    private InputStream dataIn; // buffered - shared by messages and file content
+    private volatile MessageCodec inboundCodec;
+    private volatile MessageCodec outboundCodec;
+    private ThreadLocal<String> replyPrefix; // put before the messages sent by a thread replying to a tagged request
     private ArrayList<String> messagesSent;
     private ArrayList<String> messagesReceived;
 
@@ -46,10 +68,11 @@ public class Connection{
         try{
             this.networkInterface = networkInterface;
             this.socket = socket;
-            this.textOut = new PrintWriter (new OutputStreamWriter(this.socket.getOutputStream())); 
-            this.textIn = new BufferedReader (new InputStreamReader(this.socket.getInputStream()));
             this.dataOut = this.socket.getOutputStream();
-            this.dataIn = this.socket.getInputStream();
+            this.dataIn = new BufferedInputStream(this.socket.getInputStream());
+            this.inboundCodec = TEXT_CODEC;
+            this.outboundCodec = TEXT_CODEC;
+            this.replyPrefix = new ThreadLocal<String>();
             this.messagesSent = new ArrayList<String>();
             this.messagesReceived = new ArrayList<String>();
         }
@@ -70,11 +93,12 @@ public class Connection{
         try{
             // creating the connection
             this.networkInterface = networkInterface;
-            this.socket = new Socket(InetAddress.getLocalHost(), port);
-            this.textOut = new PrintWriter (new OutputStreamWriter(this.socket.getOutputStream())); 
-            this.textIn = new BufferedReader (new InputStreamReader(this.socket.getInputStream()));
+            this.socket = SocketChannel.open(new InetSocketAddress(InetAddress.getLocalHost(), port)).socket();
             this.dataOut = this.socket.getOutputStream();
-            this.dataIn = this.socket.getInputStream();
+            this.dataIn = new BufferedInputStream(this.socket.getInputStream());
+            this.inboundCodec = TEXT_CODEC;
+            this.outboundCodec = TEXT_CODEC;
+            this.replyPrefix = new ThreadLocal<String>();
             this.messagesSent = new ArrayList<String>();
             this.messagesReceived = new ArrayList<String>();
 
@@ -86,6 +110,23 @@ public class Connection{
         }
     }
 
+    /**
+     * Class constructor. For connections that manage their own channel (e.g., a
+     * non-blocking channel), and so do not use the socket's streams.
+     * 
+     * @param networkInterace The interface associated with the connection.
+     * @param channel The channel involved in the connection.
+     */
+    protected Connection(NetworkInterface networkInterface, SocketChannel channel){
+        this.networkInterface = networkInterface;
+        this.socket = channel.socket();
+        this.inboundCodec = TEXT_CODEC;
+        this.outboundCodec = TEXT_CODEC;
+        this.replyPrefix = new ThreadLocal<String>();
+        this.messagesSent = new ArrayList<String>();
+        this.messagesReceived = new ArrayList<String>();
+    }
+
     /**
      * Determines if the Connection is open.
      * 
@@ -118,20 +159,45 @@ public class Connection{
      * @throws MessageSendException If the message could not be sent.
      */
     public void sendMessage(String message) throws MessageSendException{
+        this.sendMessage(this.getReplyMessage(message), this.outboundCodec);
+    }
+
+    /**
+     * Send's a message to the connection endpoint using the given codec rather than the
+     * connection's outbound codec (e.g., the last message sent before the codec changed).
+     * 
+     * @param message The message to be sent.
+     * @param codec The codec the message is encoded with.
+     * @throws MessageSendException If the message could not be sent.
+     */
+    public void sendMessage(String message, MessageCodec codec) throws MessageSendException{
         try{
-            // Sending request
-            this.textOut.println(message);
-            this.textOut.flush(); 
+            // Sending request (whole, as replies to pipelined requests are sent at the same time)
+            synchronized(this.dataOut){
+                this.dataOut.write(codec.encode(message));
+                this.dataOut.flush();
+            }
 
             // logging message
-            this.messagesSent.add(message);
-            this.networkInterface.logMessageSent(this.socket, message);
+            this.recordMessageSent(message);
         }
         catch(Exception e){
             throw new MessageSendException(message, this.getPort(), e);
         }
     }
 
+    /**
+     * Puts the calling thread's reply prefix (if any) before a message.
+     * 
+     * @param message The message being sent.
+     * @return The message sent through the connection.
+     */
+    protected String getReplyMessage(String message){
+        String prefix = this.replyPrefix.get();
+
+        return (prefix == null) ? message : (prefix + message);
+    }
+
     /**
      * Waits for an incoming message for an unbound length of time.
      * 
@@ -141,7 +207,7 @@ public class Connection{
     public String getMessage() throws MessageReceivedException{
         try{
             // getting request from connnection
-            String message = this.textIn.readLine();
+            String message = this.inboundCodec.read(this.dataIn);
 
             // Message is non-null
             if(message != null){
@@ -177,7 +243,7 @@ public class Connection{
             this.socket.setSoTimeout(timeout);
 
             // getting request from connnection
-            String message = this.textIn.readLine();
+            String message = this.inboundCodec.read(this.dataIn);
 
             // Message is non-null
             if(message != null){
@@ -220,7 +286,7 @@ public class Connection{
         try{
             // Sending request
             this.dataOut.write(bytes);
-            this.textOut.flush(); 
+            this.dataOut.flush();
 
             // logging
             this.messagesSent.add("[FILE CONTENT]");
@@ -232,6 +298,92 @@ public class Connection{
 
     }
 
+    /**
+     * Sends the bytes remaining in a buffer to the connection endpoint.
+     * 
+     * The buffer is written to the socket's channel directly, so a memory-mapped buffer
+     * (e.g., a file shared between several connections) is sent without being copied
+     * onto the heap.
+     * 
+     * @param bytes The buffer of bytes to be sent (consumed by the call).
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(ByteBuffer bytes) throws MessageSendException{
+        this.writeBytes(bytes);
+
+        // logging
+        this.recordMessageSent("[FILE CONTENT]");
+    }
+
+    /**
+     * Writes the bytes remaining in a buffer to the connection endpoint, without logging
+     * them (e.g., a part of a file being relayed). The bytes are written before returning,
+     * so the buffer may be reused.
+     * 
+     * @param bytes The buffer of bytes to be written (consumed by the call).
+     * @throws MessageSendException If the bytes could not be written.
+     */
+    public void writeBytes(ByteBuffer bytes) throws MessageSendException{
+        try{
+            // socket without a channel - writing through the output stream
+            WritableByteChannel target = (this.socket.getChannel() != null) ? this.socket.getChannel() : Channels.newChannel(this.dataOut);
+
+            while(bytes.hasRemaining()){
+                target.write(bytes);
+            }
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends the content of a file to the connection endpoint.
+     * 
+     * The file is transferred from disk to the socket by the operating system where
+     * possible (i.e., sendfile), so it is never loaded onto the heap.
+     * 
+     * @param file The file to be sent.
+     * @throws MessageSendException If the file could not be sent.
+     */
+    public void sendFile(File file) throws MessageSendException{
+        this.sendFile(file, null);
+    }
+
+    /**
+     * Sends the content of a file to the connection endpoint, no faster than the given
+     * rate limiter allows.
+     * 
+     * @param file The file to be sent.
+     * @param limiter The rate limiter the file is sent through (null for no limit).
+     * @throws MessageSendException If the file could not be sent.
+     */
+    public void sendFile(File file, RateLimiter limiter) throws MessageSendException{
+        try(FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            // socket without a channel - transferring through the output stream
+            WritableByteChannel target = (this.socket.getChannel() != null) ? this.socket.getChannel() : Channels.newChannel(this.dataOut);
+
+            // transferring the file (may take several transfers - a part at a time if rate limited)
+            long size = fileChannel.size();
+            long position = 0;
+            while(position < size){
+                long length = size - position;
+                if(limiter != null && limiter.isLimited()){
+                    length = Math.min(length, TRANSFER_BUFFER_SIZE);
+                    limiter.acquire(length);
+                }
+
+                position += fileChannel.transferTo(position, length, target);
+            }
+
+            // logging
+            this.recordMessageSent("[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
     /**
      * Waits for a N bytes to arrive within the given timeout.
      * 
@@ -281,10 +433,167 @@ public class Connection{
         }
     }
 
+    /**
+     * Receives N bytes from the connection endpoint into a file.
+     * 
+     * The bytes are copied to the file a buffer at a time, so the memory used does not
+     * depend on the size of the file.
+     * 
+     * @param file The file the bytes are written to (replacing any existing content).
+     * @param n The number of bytes to receive.
+     * @param timeout The timeout to wait for each part of the bytes to arrive.
+     * @throws MessageReceivedException If the bytes could not be receieved, or did not
+     * arrive within the timeout period.
+     */
+    public void receiveFile(File file, long n, int timeout) throws Exception{
+        this.receiveFile(file, n, timeout, null);
+    }
+
+    /**
+     * Receives N bytes from the connection endpoint into a file, relaying each part of
+     * the bytes on to another connection as it arrives.
+     * 
+     * @param file The file the bytes are written to (replacing any existing content).
+     * @param n The number of bytes to receive.
+     * @param timeout The timeout to wait for each part of the bytes to arrive.
+     * @param relay The connection the bytes are relayed to (null to not relay them).
+     * @throws MessageReceivedException If the bytes could not be receieved, or did not
+     * arrive within the timeout period.
+     * @throws MessageSendException If the bytes could not be relayed.
+     */
+    public void receiveFile(File file, long n, int timeout, Connection relay) throws Exception{
+        try(FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+            // setting socket timeout
+            this.socket.setSoTimeout(timeout);
+
+            // copying the bytes to the file
+            byte[] buffer = new byte[(int) Math.min(TRANSFER_BUFFER_SIZE, Math.max(n, 1))];
+            long received = 0;
+            while(received < n){
+                int count = this.dataIn.read(buffer, 0, (int) Math.min(buffer.length, n - received));
+
+                // connection dropped before all bytes arrived
+                if(count < 0){
+                    throw new ConnectorDisconnectedException(this.getPort());
+                }
+
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                while(bytes.hasRemaining()){
+                    fileChannel.write(bytes);
+                }
+                received += count;
+
+                // relaying the bytes
+                if(relay != null){
+                    relay.writeBytes(ByteBuffer.wrap(buffer, 0, count));
+                }
+            }
+
+            this.socket.setSoTimeout(0);
+
+            // logging message
+            this.recordMessageReceived("[FILE CONTENT]");
+            if(relay != null){
+                relay.recordMessageSent("[FILE CONTENT]");
+            }
+        }
+        catch(Exception e){
+            this.socket.setSoTimeout(0);
+
+            // Handling Specific Cases
+
+            // Relay failed
+            if(e instanceof MessageSendException){
+                throw e;
+            }
+
+            // Socket timeout exception - throw a message timeout exception
+            if(e instanceof SocketTimeoutException){
+                throw new MessageReceivedException(this.getPort(), new MessageTimeoutException());
+            }
+            // other form of exception
+            else{
+                throw new MessageReceivedException(this.getPort(), e);
+            }
+        }
+    }
+
+    /////////////
+    // LOGGING //
+    /////////////
+
+    /**
+     * Records and logs a message sent through the connection.
+     * 
+     * @param message The message that was sent.
+     */
+    public void recordMessageSent(String message){
+        synchronized(this.messagesSent){
+            this.messagesSent.add(message);
+        }
+        this.networkInterface.logMessageSent(this.socket, message);
+    }
+
+    /**
+     * Records and logs a message received through the connection.
+     * 
+     * @param message The message that was received.
+     */
+    public void recordMessageReceived(String message){
+        this.messagesReceived.add(message);
+        this.networkInterface.logMessageReceived(this.socket, message);
+    }
+
     /////////////////////////
     // GETTERS AND SETTERS //
     /////////////////////////
 
+    /**
+     * Changes the codec used for both the messages sent and received through the
+     * connection.
+     * 
+     * @param codec The codec of the connection.
+     */
+    public void setCodec(MessageCodec codec){
+        this.inboundCodec = codec;
+        this.outboundCodec = codec;
+    }
+
+    /**
+     * Sets the prefix put before the messages the calling thread sends through the
+     * connection (the tag of the request it is replying to).
+     * 
+     * @param replyPrefix The prefix, or null to send messages as they are.
+     */
+    public void setReplyPrefix(String replyPrefix){
+        if(replyPrefix == null){
+            this.replyPrefix.remove();
+        }
+        else{
+            this.replyPrefix.set(replyPrefix);
+        }
+    }
+
+    public MessageCodec getInboundCodec(){
+        return this.inboundCodec;
+    }
+
+    public void setInboundCodec(MessageCodec inboundCodec){
+        this.inboundCodec = inboundCodec;
+    }
+
+    public MessageCodec getOutboundCodec(){
+        return this.outboundCodec;
+    }
+
+    public void setOutboundCodec(MessageCodec outboundCodec){
+        this.outboundCodec = outboundCodec;
+    }
+
+    public NetworkInterface getNetworkInterface(){
+        return this.networkInterface;
+    }
+
     public void setNetworkInterface(NetworkInterface networkInterface){
         this.networkInterface = networkInterface;
     }
@@ -0,0 +1,85 @@
+package Network;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that listen on connections (i.e., ServerThreads and
+ * HeartbeatConnections).
+ *
+ * These threads spend almost all of their time blocked waiting for a message,
+ * so a process with many connections mostly pays for their stacks. The factory
+ * can create them as virtual threads (on Java runtimes that support them), or
+ * as platform threads with a reduced stack size.
+ *
+ * Options:
+ *  - connection-threads    : platform | virtual (default platform).
+ *  - connection-stack-size : Stack size in bytes of platform connection threads
+ *                            (default 0, the JVM default).
+ */
+public class ConnectionThreadFactory implements ThreadFactory {
+
+    // member variables
+    private ThreadMode mode;
+    private long stackSize;
+    private AtomicInteger count;
+
+    /**
+     * Class constructor.
+     *
+     * @param options The options of the process the threads belong to.
+     */
+    public ConnectionThreadFactory(NetworkOptions options){
+        this.mode = options.getEnum("connection-threads", ThreadMode.class, ThreadMode.PLATFORM);
+        this.stackSize = options.getLong("connection-stack-size", 0);
+        this.count = new AtomicInteger();
+    }
+
+    /**
+     * Creates a new (unstarted) thread to run the provided connection loop.
+     *
+     * @param runnable The connection loop to be run by the thread.
+     * @return The created thread.
+     */
+    public Thread newThread(Runnable runnable){
+        // virtual thread
+        if(this.mode == ThreadMode.VIRTUAL && VirtualThreads.isSupported()){
+            return VirtualThreads.getFactory().newThread(runnable);
+        }
+        // platform thread
+        else{
+            return new Thread(null, runnable, "connection-" + this.count.incrementAndGet(), this.stackSize);
+        }
+    }
+
+    /**
+     * Creates and starts a thread to run the provided connection loop.
+     *
+     * @param runnable The connection loop to be run.
+     */
+    public void start(Runnable runnable){
+        this.newThread(runnable).start();
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the type of thread actually being created (virtual threads fall back
+     * to platform threads on runtimes that do not support them).
+     *
+     * @return The type of thread being created.
+     */
+    public ThreadMode getMode(){
+        return (this.mode == ThreadMode.VIRTUAL && !VirtualThreads.isSupported()) ? ThreadMode.PLATFORM : this.mode;
+    }
+
+    /**
+     * The types of thread that can run a connection.
+     */
+    public enum ThreadMode {
+        PLATFORM, // operating system thread
+        VIRTUAL; // virtual thread scheduled by the JVM
+    }
+}
@@ -0,0 +1,62 @@
+package Network;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts the messages sent through a Connection to and from the bytes sent over its
+ * socket.
+ * 
+ * Connections use the text codec (newline-delimited messages) until a different codec is
+ * agreed with the connector (e.g., while joining a Server). Codecs only frame messages -
+ * file content is sent and received as raw bytes whatever the codec.
+ */
+public interface MessageCodec {
+
+    /**
+     * Returns the name of the codec (as used when agreeing the codec with a connector).
+     * 
+     * @return The name of the codec.
+     */
+    public String getName();
+
+    /**
+     * Encodes a message into a frame.
+     * 
+     * @param message The message to be encoded.
+     * @return The bytes of the frame.
+     */
+    public byte[] encode(String message);
+
+    /**
+     * Reads a frame from a stream and decodes its message, blocking until the frame has
+     * arrived.
+     * 
+     * @param in The stream the frame is read from.
+     * @return The message, or null if the stream ended before a frame started.
+     * @throws IOException If the frame could not be read.
+     */
+    public String read(InputStream in) throws IOException;
+
+    /**
+     * Determines the length of the frame at the start of a buffer.
+     * 
+     * @param buffer The buffer holding the received bytes.
+     * @param start The index of the first received byte.
+     * @param end The index after the last received byte.
+     * @param scanned The number of bytes after start already known not to complete a frame.
+     * @return The length of the frame, or -1 if the frame has not fully arrived.
+     * @throws IllegalArgumentException If the bytes are not a valid frame.
+     */
+    public int getFrameLength(byte[] buffer, int start, int end, int scanned);
+
+    /**
+     * Decodes the message of a frame.
+     * 
+     * @param buffer The buffer holding the frame.
+     * @param start The index of the first byte of the frame.
+     * @param length The length of the frame.
+     * @return The message.
+     */
+    public String decode(byte[] buffer, int start, int length);
+}
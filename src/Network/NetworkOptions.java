@@ -0,0 +1,102 @@
+package Network;
+
+import java.util.HashMap;
+
+/**
+ * Holds the optional run-time settings of a network process.
+ *
+ * Options are supplied on the command line after the required parameters
+ * of a process in the form 'name=value' (e.g., 'dispatch=fixed workers=16'),
+ * and are read by the components of the process as they are created. Any
+ * option that is not supplied takes the default value given by the component
+ * reading it.
+ */
+public class NetworkOptions {
+
+    // member variables
+    private HashMap<String, String> options;
+
+    /**
+     * Class constructor.
+     *
+     * Creates an empty set of options (all components use their defaults).
+     */
+    public NetworkOptions(){
+        this.options = new HashMap<String, String>();
+    }
+
+    /**
+     * Creates a set of options from command line arguments.
+     *
+     * @param args The command line arguments.
+     * @param start The index of the first optional argument.
+     * @return The options contained in the arguments.
+     * @throws IllegalArgumentException If an argument is not of the form 'name=value'.
+     */
+    public static NetworkOptions fromArgs(String[] args, int start){
+        NetworkOptions options = new NetworkOptions();
+
+        for(int i = start; i < args.length; i++){
+            int split = args[i].indexOf('=');
+
+            // argument must have a name and a value
+            if(split <= 0 || split == args[i].length() - 1){
+                throw new IllegalArgumentException("Invalid option '" + args[i] + "' (expected name=value).");
+            }
+
+            options.set(args[i].substring(0, split), args[i].substring(split + 1));
+        }
+
+        return options;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public void set(String name, String value){
+        this.options.put(name.toLowerCase(), value);
+    }
+
+    public boolean has(String name){
+        return this.options.containsKey(name.toLowerCase());
+    }
+
+    public String getString(String name, String defaultValue){
+        return this.options.getOrDefault(name.toLowerCase(), defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue){
+        String value = this.options.get(name.toLowerCase());
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long defaultValue){
+        String value = this.options.get(name.toLowerCase());
+        return (value == null) ? defaultValue : Long.parseLong(value);
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue){
+        String value = this.options.get(name.toLowerCase());
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Gathers an enumerated option. Values are matched ignoring case, and with
+     * '-' treated as '_' (e.g., 'work-stealing' matches WORK_STEALING).
+     *
+     * @param name The name of the option.
+     * @param type The enumeration class of the option.
+     * @param defaultValue The value used if the option was not supplied.
+     * @return The value of the option.
+     * @throws IllegalArgumentException If the supplied value is not a constant of the enumeration.
+     */
+    public <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue){
+        String value = this.options.get(name.toLowerCase());
+        return (value == null) ? defaultValue : Enum.valueOf(type, value.toUpperCase().replace('-', '_'));
+    }
+
+    public String toString(){
+        return this.options.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package Network.Protocol.Event;
+
+import Network.Server.RequestDispatcher;
+
+/**
+ * Event that reports the load on a Server's RequestDispatcher.
+ */
+public class RequestDispatcherReportEvent extends NetworkEvent{
+
+    // member variables
+    private long dispatched;
+    private int active;
+    private int queueDepth;
+    private int peakQueueDepth;
+    private long callerRuns;
+
+    /**
+     * Class constructor.
+     *
+     * @param dispatcher The dispatcher being reported on.
+     */
+    public RequestDispatcherReportEvent(RequestDispatcher dispatcher){
+        this(dispatcher.getDispatchedCount(), dispatcher.getActiveCount(), dispatcher.getQueueDepth(), dispatcher.getPeakQueueDepth(), dispatcher.getCallerRunsCount());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param dispatched The number of requests dispatched.
+     * @param active The number of requests being run.
+     * @param queueDepth The number of requests waiting for a worker.
+     * @param peakQueueDepth The largest number of requests that have waited for a worker at once.
+     * @param callerRuns The number of requests run on the dispatching thread because the dispatcher was full.
+     */
+    public RequestDispatcherReportEvent(long dispatched, int active, int queueDepth, int peakQueueDepth, long callerRuns){
+        super("Request dispatcher : " + dispatched + " request(s) dispatched, " + active + " running, " + queueDepth + " waiting for a worker (peak " + peakQueueDepth + "), " + callerRuns + " run on the dispatching thread.");
+        this.dispatched = dispatched;
+        this.active = active;
+        this.queueDepth = queueDepth;
+        this.peakQueueDepth = peakQueueDepth;
+        this.callerRuns = callerRuns;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public long getDispatched(){
+        return this.dispatched;
+    }
+
+    public int getActive(){
+        return this.active;
+    }
+
+    public int getQueueDepth(){
+        return this.queueDepth;
+    }
+
+    public int getPeakQueueDepth(){
+        return this.peakQueueDepth;
+    }
+
+    public long getCallerRuns(){
+        return this.callerRuns;
+    }
+}
@@ -0,0 +1,29 @@
+package Network.Protocol.Exception;
+
+/**
+ * Exception for the case where no pooled connection to a port became free within
+ * the timeout period.
+ */
+public class ConnectionPoolExhaustedException extends NetworkException{
+
+    // member variables
+    private int port;
+
+    /**
+     * Class constructor.
+     * 
+     * @param port The port the connection was requested for.
+     */
+    public ConnectionPoolExhaustedException(int port){
+        super("No connection to port : " + port + " became available within the timeout period.");
+        this.port = port;
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public int getPort(){
+        return this.port;
+    }
+}
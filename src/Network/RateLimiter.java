@@ -0,0 +1,72 @@
+package Network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which bytes are sent, shared by any number of threads.
+ *
+ * The limiter is a token bucket that holds up to one second of bytes. A thread
+ * sending bytes takes them from the bucket, and if the bucket does not hold enough,
+ * sleeps until it would have refilled (so a large send is spread over time rather
+ * than refused).
+ */
+public class RateLimiter {
+
+    // member variables
+    private long bytesPerSecond;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Class constructor.
+     *
+     * @param bytesPerSecond The maximum rate in bytes per second (0 for no limit).
+     */
+    public RateLimiter(long bytesPerSecond){
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes the given number of bytes from the limiter, waiting until they may be sent.
+     *
+     * @param bytes The number of bytes about to be sent.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public void acquire(long bytes) throws InterruptedException{
+        // no limit
+        if(!this.isLimited()){
+            return;
+        }
+
+        long wait;
+        synchronized(this){
+            // refilling the bucket for the time passed
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.bytesPerSecond, this.tokens + (now - this.lastRefill) * this.bytesPerSecond / 1e9);
+            this.lastRefill = now;
+
+            // taking the bytes (going into debt if there are not enough)
+            this.tokens -= bytes;
+            wait = (this.tokens < 0) ? (long) (-this.tokens * 1e9 / this.bytesPerSecond) : 0;
+        }
+
+        // waiting for the debt to be repaid
+        if(wait > 0){
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public boolean isLimited(){
+        return this.bytesPerSecond > 0;
+    }
+
+    public long getBytesPerSecond(){
+        return this.bytesPerSecond;
+    }
+}
@@ -0,0 +1,800 @@
+package Network.Server;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import DS.Protocol.Token.Token;
+import Network.Connection;
+import Network.MessageCodec;
+import Network.NetworkInterface;
+import Network.RateLimiter;
+import Network.Protocol.Exception.*;
+
+/**
+ * A Connection on a non-blocking SocketChannel, served by an EventLoop.
+ *
+ * The event loop reads the bytes arriving on the channel into the connection's inbound
+ * buffer and frames them into requests (using the connection's inbound codec). While a request that reads
+ * from its connection (e.g., a STORE) is being handled, framing is suspended, and the
+ * request reads its payload from the inbound buffer on its own thread.
+ *
+ * Outgoing data is written straight to the channel when possible. Anything the channel
+ * cannot take immediately is queued, and written by the event loop when the channel
+ * becomes writable.
+ *
+ * The inbound buffer is only allocated while it holds data, so idle connections cost
+ * little more than their channel. A message longer than the maximum frame length is not
+ * buffered - the connection is terminated instead.
+ */
+public class ChannelConnection extends Connection {
+
+    // constants
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_INBOUND = 1 << 20; // unread bytes at which reading is paused
+    private static final int MAX_FRAME_LENGTH = 1 << 24; // longest message that is buffered
+    private static final int MAX_OUTBOUND = 1 << 20; // queued bytes at which senders wait
+    private static final long FILE_REGION_SIZE = 1 << 20; // bytes of a file mapped at once
+
+    // member variables
+    private SocketChannel channel;
+    private SelectionKey key;
+    private EventLoop eventLoop;
+    private int port;
+    private int localPort;
+    private ReentrantLock inboundLock;
+    private Condition dataAvailable;
+    private byte[] inbound;
+    private int inboundStart;
+    private int inboundEnd;
+    private int scanned;
+    private boolean readingPaused;
+    private boolean suspended;
+    private ArrayDeque<ByteBuffer> outbound;
+    private long outboundBytes;
+    private boolean closeRequested;
+    private AtomicBoolean terminated;
+    private Token pendingRequest;
+
+    /**
+     * Class constructor.
+     *
+     * @param networkInterface The interface associated with the connection.
+     * @param channel The (non-blocking) channel of the connection.
+     * @param key The channel's registration with the event loop's selector.
+     * @param eventLoop The event loop serving the connection.
+     */
+    public ChannelConnection(NetworkInterface networkInterface, SocketChannel channel, SelectionKey key, EventLoop eventLoop){
+        super(networkInterface, channel);
+        this.channel = channel;
+        this.key = key;
+        this.eventLoop = eventLoop;
+        this.port = channel.socket().getPort();
+        this.localPort = channel.socket().getLocalPort();
+        this.inboundLock = new ReentrantLock();
+        this.dataAvailable = this.inboundLock.newCondition();
+        this.inboundStart = 0;
+        this.inboundEnd = 0;
+        this.scanned = 0;
+        this.readingPaused = false;
+        this.suspended = false;
+        this.outbound = new ArrayDeque<ByteBuffer>();
+        this.outboundBytes = 0;
+        this.closeRequested = false;
+        this.terminated = new AtomicBoolean(false);
+    }
+
+    /////////////
+    // INBOUND //
+    /////////////
+
+    /**
+     * Adds bytes read from the channel to the inbound buffer. Called by the event loop.
+     *
+     * @param bytes The bytes read from the channel.
+     */
+    public void receive(ByteBuffer bytes){
+        this.inboundLock.lock();
+        try{
+            int length = bytes.remaining();
+
+            // making space for the bytes
+            this.ensureCapacity(length);
+
+            // adding the bytes
+            bytes.get(this.inbound, this.inboundEnd, length);
+            this.inboundEnd += length;
+
+            // pausing reading if requests are not being framed from the buffer
+            if((this.suspended || this.pendingRequest != null) && this.getBufferedCount() >= MAX_INBOUND){
+                this.readingPaused = true;
+                this.key.interestOpsAnd(~SelectionKey.OP_READ);
+            }
+
+            // waking any thread waiting for data
+            this.dataAvailable.signalAll();
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next complete request from the inbound buffer. Called by the event loop.
+     *
+     * @return The next request, or null if requests are suspended or no complete request
+     * has arrived.
+     */
+    public String nextRequest(){
+        this.inboundLock.lock();
+        try{
+            if(this.suspended){
+                return null;
+            }
+
+            String request = this.takeMessage();
+
+            // framing again - making sure reading is not paused
+            if(request == null && this.readingPaused){
+                this.resumeReading();
+            }
+
+            // logging the request
+            if(request != null){
+                this.recordMessageReceived(request);
+            }
+
+            return request;
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+    }
+
+    /**
+     * Takes a message from the inbound buffer. The inbound lock must be held.
+     *
+     * @return The message, or null if no complete message has arrived.
+     * @throws IllegalArgumentException If the buffered bytes are not a valid frame, or the
+     * frame is longer than the maximum frame length.
+     */
+    private String takeMessage(){
+        if(this.inbound == null){
+            return null;
+        }
+
+        MessageCodec codec = this.getInboundCodec();
+        int length = codec.getFrameLength(this.inbound, this.inboundStart, this.inboundEnd, this.scanned);
+
+        // no complete frame - remembering how far has been searched
+        if(length < 0){
+            // frame too long to buffer
+            if(this.getBufferedCount() > MAX_FRAME_LENGTH){
+                throw new IllegalArgumentException("Message longer than " + MAX_FRAME_LENGTH + " bytes.");
+            }
+
+            this.scanned = this.inboundEnd - this.inboundStart;
+            return null;
+        }
+
+        String message = codec.decode(this.inbound, this.inboundStart, length);
+
+        this.inboundStart += length;
+        this.scanned = 0;
+        this.consumed();
+
+        return message;
+    }
+
+    /**
+     * Updates the inbound buffer after data has been taken from it. The inbound lock
+     * must be held.
+     */
+    private void consumed(){
+        // buffer empty - releasing it
+        if(this.inboundStart == this.inboundEnd){
+            this.inboundStart = 0;
+            this.inboundEnd = 0;
+            this.scanned = 0;
+            this.inbound = null;
+        }
+
+        // resuming reading once the buffer has drained
+        if(this.readingPaused && this.getBufferedCount() < MAX_INBOUND / 2){
+            this.resumeReading();
+        }
+    }
+
+    /**
+     * Resumes reading from the channel after it was paused. The inbound lock must be held.
+     */
+    private void resumeReading(){
+        this.readingPaused = false;
+
+        if(this.key.isValid()){
+            this.key.interestOpsOr(SelectionKey.OP_READ);
+            this.key.selector().wakeup();
+        }
+    }
+
+    /**
+     * Makes sure the inbound buffer has space for the given number of bytes. The inbound
+     * lock must be held.
+     *
+     * @param length The number of bytes to be added to the buffer.
+     */
+    private void ensureCapacity(int length){
+        // no buffer - creating one
+        if(this.inbound == null){
+            this.inbound = new byte[Math.max(INITIAL_BUFFER_SIZE, length)];
+            return;
+        }
+
+        // not enough space at the end of the buffer
+        if(this.inboundEnd + length > this.inbound.length){
+            int buffered = this.getBufferedCount();
+            byte[] buffer = this.inbound;
+
+            // growing the buffer if compacting it would not make enough space
+            if(buffered + length > this.inbound.length){
+                buffer = new byte[Math.max(this.inbound.length * 2, buffered + length)];
+            }
+
+            // moving the unread bytes to the start of the buffer
+            System.arraycopy(this.inbound, this.inboundStart, buffer, 0, buffered);
+            this.inbound = buffer;
+            this.inboundStart = 0;
+            this.inboundEnd = buffered;
+        }
+    }
+
+    /**
+     * Waits for a message to arrive on the connection.
+     *
+     * Messages are normally framed by the event loop, so this may only be used by a
+     * request that reads from its connection.
+     *
+     * @return The message receieved as a String.
+     * @throws MessageReceivedException If the message could not be received.
+     */
+    public String getMessage() throws MessageReceivedException{
+        return this.readMessage(0);
+    }
+
+    /**
+     * Waits for a message to arrive within the given timeout.
+     *
+     * Messages are normally framed by the event loop, so this may only be used by a
+     * request that reads from its connection.
+     *
+     * @param timeout The timeout to wait for the message to arrive.
+     * @return The message receieved.
+     * @throws MessageReceivedException If the message could not be receieved, or could not
+     * be received within the timeout period.
+     */
+    public String getMessageWithinTimeout(int timeout) throws Exception{
+        return this.readMessage(timeout);
+    }
+
+    /**
+     * Waits for a message to arrive in the inbound buffer.
+     *
+     * @param timeout The timeout to wait for the message (0 to wait indefinitely).
+     * @return The message received.
+     * @throws MessageReceivedException If the message could not be received within the timeout.
+     */
+    private String readMessage(int timeout) throws MessageReceivedException{
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        this.inboundLock.lock();
+        try{
+            while(true){
+                String message = this.takeMessage();
+
+                // message received
+                if(message != null){
+                    this.recordMessageReceived(message);
+                    return message;
+                }
+
+                // waiting for more data
+                this.awaitData(deadline, timeout);
+            }
+        }
+        catch(Exception e){
+            throw new MessageReceivedException(this.getPort(), e);
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a N bytes to arrive within the given timeout.
+     *
+     * @param timeout The timeout to wait for the message to arrive.
+     * @return The array of bytes gathered from the connection.
+     * @throws MessageReceivedException If the bytes could not be receieved, or could not
+     * be received within the timeout period.
+     */
+    public byte[] getNBytesWithinTimeout(int n, int timeout) throws Exception{
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        byte[] bytes = new byte[n];
+        int received = 0;
+
+        this.inboundLock.lock();
+        try{
+            while(received < n){
+                int available = this.getBufferedCount();
+
+                // taking the buffered bytes
+                if(available > 0){
+                    int count = Math.min(available, n - received);
+                    System.arraycopy(this.inbound, this.inboundStart, bytes, received, count);
+                    this.inboundStart += count;
+                    received += count;
+                    this.scanned = 0;
+                    this.consumed();
+                }
+                // waiting for more bytes
+                else{
+                    this.awaitData(deadline, timeout);
+                }
+            }
+        }
+        catch(Exception e){
+            throw new MessageReceivedException(this.getPort(), e);
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+
+        // logging
+        this.recordMessageReceived("[FILE CONTENT]");
+
+        return bytes;
+    }
+
+    /**
+     * Receives N bytes from the connection endpoint into a file.
+     *
+     * The bytes are taken from the inbound buffer a part at a time, and written to the
+     * file without holding the inbound lock (so the event loop is never held up by the
+     * disk). Reading from the channel is paused while the inbound buffer is full, so the
+     * memory used does not depend on the size of the file.
+     *
+     * @param file The file the bytes are written to (replacing any existing content).
+     * @param n The number of bytes to receive.
+     * @param timeout The timeout to wait for each part of the bytes to arrive.
+     * @param relay The connection each part of the bytes is relayed to as it arrives (null
+     * to not relay them).
+     * @throws MessageReceivedException If the bytes could not be receieved, or did not
+     * arrive within the timeout period.
+     * @throws MessageSendException If the bytes could not be relayed.
+     */
+    public void receiveFile(File file, long n, int timeout, Connection relay) throws Exception{
+        try(FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+            byte[] buffer = new byte[(int) Math.min(TRANSFER_BUFFER_SIZE, Math.max(n, 1))];
+            long received = 0;
+
+            while(received < n){
+                int count = this.takeBytes(buffer, (int) Math.min(buffer.length, n - received), timeout);
+
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                while(bytes.hasRemaining()){
+                    fileChannel.write(bytes);
+                }
+                received += count;
+
+                // relaying the bytes
+                if(relay != null){
+                    relay.writeBytes(ByteBuffer.wrap(buffer, 0, count));
+                }
+            }
+        }
+        catch(MessageSendException e){
+            throw e;
+        }
+        catch(Exception e){
+            throw new MessageReceivedException(this.getPort(), e);
+        }
+
+        // logging
+        this.recordMessageReceived("[FILE CONTENT]");
+        if(relay != null){
+            relay.recordMessageSent("[FILE CONTENT]");
+        }
+    }
+
+    /**
+     * Takes up to the given number of bytes from the inbound buffer, waiting for them to
+     * arrive if the buffer is empty.
+     *
+     * @param buffer The array the bytes are copied into.
+     * @param max The maximum number of bytes to take.
+     * @param timeout The timeout to wait for the bytes to arrive (0 to wait indefinitely).
+     * @return The number of bytes taken.
+     * @throws Exception If the bytes did not arrive within the timeout, or the connection
+     * closed while waiting.
+     */
+    private int takeBytes(byte[] buffer, int max, int timeout) throws Exception{
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        this.inboundLock.lock();
+        try{
+            // waiting for bytes
+            while(this.getBufferedCount() == 0){
+                this.awaitData(deadline, timeout);
+            }
+
+            // taking the buffered bytes
+            int count = Math.min(this.getBufferedCount(), max);
+            System.arraycopy(this.inbound, this.inboundStart, buffer, 0, count);
+            this.inboundStart += count;
+            this.scanned = 0;
+            this.consumed();
+
+            return count;
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for data to be added to the inbound buffer. The inbound lock must be held.
+     *
+     * @param deadline The time (System.nanoTime()) at which the wait times out.
+     * @param timeout The timeout of the wait (0 to wait indefinitely).
+     * @throws ConnectorDisconnectedException If the connection closed while waiting.
+     * @throws MessageTimeoutException If the timeout passed while waiting.
+     */
+    private void awaitData(long deadline, int timeout) throws Exception{
+        if(this.isClosed()){
+            throw new ConnectorDisconnectedException(this.getPort());
+        }
+
+        if(timeout <= 0){
+            this.dataAvailable.await();
+        }
+        else{
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0){
+                throw new MessageTimeoutException();
+            }
+            this.dataAvailable.awaitNanos(remaining);
+        }
+    }
+
+    //////////////
+    // OUTBOUND //
+    //////////////
+
+    /**
+     * Send's a message to the connection endpoint.
+     *
+     * @param message The message to be sent.
+     * @throws MessageSendException If the message could not be sent.
+     */
+    public void sendMessage(String message) throws MessageSendException{
+        this.sendMessage(this.getReplyMessage(message), this.getOutboundCodec());
+    }
+
+    /**
+     * Send's a message to the connection endpoint using the given codec rather than the
+     * connection's outbound codec.
+     *
+     * @param message The message to be sent.
+     * @param codec The codec the message is encoded with.
+     * @throws MessageSendException If the message could not be sent.
+     */
+    public void sendMessage(String message, MessageCodec codec) throws MessageSendException{
+        try{
+            this.write(ByteBuffer.wrap(codec.encode(message)));
+
+            // logging message
+            this.recordMessageSent(message);
+        }
+        catch(Exception e){
+            throw new MessageSendException(message, this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends byte data to the connection endpoint.
+     *
+     * @param bytes The array of bytes to be sent.
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(byte[] bytes) throws MessageSendException{
+        try{
+            this.write(ByteBuffer.wrap(bytes));
+
+            // logging
+            this.recordMessageSent("[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends the bytes remaining in a buffer to the connection endpoint.
+     *
+     * @param bytes The buffer of bytes to be sent (owned by the connection until written).
+     * @throws MessageSendException If the bytes could not be sent.
+     */
+    public void sendBytes(ByteBuffer bytes) throws MessageSendException{
+        try{
+            this.write(bytes);
+
+            // logging
+            this.recordMessageSent("[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Writes the bytes remaining in a buffer to the connection endpoint, without logging
+     * them. The bytes are copied if they cannot be written immediately, so the buffer may
+     * be reused.
+     *
+     * @param bytes The buffer of bytes to be written (consumed by the call).
+     * @throws MessageSendException If the bytes could not be written.
+     */
+    public void writeBytes(ByteBuffer bytes) throws MessageSendException{
+        try{
+            ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+            copy.put(bytes).flip();
+
+            this.write(copy);
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Sends the content of a file to the connection endpoint.
+     *
+     * The file is mapped into memory a region at a time and the regions are written like
+     * any other data, so the file is never copied onto the heap and the outbound queue
+     * limits how much of it is mapped at once.
+     *
+     * @param file The file to be sent.
+     * @param limiter The rate limiter the file is sent through (null for no limit).
+     * @throws MessageSendException If the file could not be sent.
+     */
+    public void sendFile(File file, RateLimiter limiter) throws MessageSendException{
+        try(FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            long size = fileChannel.size();
+            long position = 0;
+            while(position < size){
+                long length = Math.min(FILE_REGION_SIZE, size - position);
+                if(limiter != null){
+                    limiter.acquire(length);
+                }
+                this.write(fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+
+            // logging
+            this.recordMessageSent("[FILE CONTENT]");
+        }
+        catch(Exception e){
+            throw new MessageSendException(this.getPort(), e);
+        }
+    }
+
+    /**
+     * Writes data to the channel, queueing whatever cannot be written immediately.
+     *
+     * Threads other than the event loop wait while too much data is queued, so that a
+     * slow connector pushes back on its sender.
+     *
+     * @param buffer The data to be written.
+     * @throws Exception If the data could not be written.
+     */
+    private void write(ByteBuffer buffer) throws Exception{
+        synchronized(this.outbound){
+            // waiting for the queue to drain
+            while(this.outboundBytes >= MAX_OUTBOUND && !this.eventLoop.inEventLoop() && this.channel.isOpen()){
+                this.outbound.wait();
+            }
+
+            if(!this.channel.isOpen() || this.closeRequested){
+                throw new ClosedChannelException();
+            }
+
+            // nothing queued - writing straight to the channel
+            if(this.outbound.isEmpty()){
+                this.channel.write(buffer);
+
+                if(!buffer.hasRemaining()){
+                    return;
+                }
+            }
+
+            // queueing the rest for the event loop
+            this.outbound.add(buffer);
+            this.outboundBytes += buffer.remaining();
+            this.key.interestOpsOr(SelectionKey.OP_WRITE);
+            this.key.selector().wakeup();
+        }
+    }
+
+    /**
+     * Writes queued data to the channel. Called by the event loop when the channel is
+     * writable.
+     *
+     * @throws Exception If the data could not be written.
+     */
+    public void flush() throws Exception{
+        synchronized(this.outbound){
+            while(!this.outbound.isEmpty()){
+                ByteBuffer buffer = this.outbound.peek();
+                int remaining = buffer.remaining();
+
+                this.channel.write(buffer);
+                this.outboundBytes -= (remaining - buffer.remaining());
+
+                // channel full - waiting until it is writable again
+                if(buffer.hasRemaining()){
+                    this.outbound.notifyAll();
+                    return;
+                }
+
+                this.outbound.poll();
+            }
+
+            // queue drained
+            this.key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            this.outbound.notifyAll();
+
+            // completing a requested close
+            if(this.closeRequested){
+                this.closeChannel();
+            }
+        }
+    }
+
+    /////////////
+    // CLOSING //
+    /////////////
+
+    /**
+     * Closes the connection once any queued data has been written.
+     */
+    public void close(){
+        synchronized(this.outbound){
+            if(this.outbound.isEmpty()){
+                this.closeChannel();
+            }
+            else{
+                this.closeRequested = true;
+            }
+        }
+
+        // passing the error to the network process
+        if(this.terminated.compareAndSet(false, true)){
+            this.getNetworkInterface().getNetworkProcess().handleError(new ConnectionTerminatedException(this, new ConnectionClosedException(this.getPort())));
+        }
+    }
+
+    /**
+     * Closes the connection after it failed or was closed by the connector. Called by the
+     * event loop.
+     *
+     * @param cause The reason the connection was terminated.
+     */
+    public void terminate(Exception cause){
+        this.closeChannel();
+
+        // passing the error to the network process (off the event loop)
+        if(this.terminated.compareAndSet(false, true)){
+            this.eventLoop.handleError(() -> {
+                this.getNetworkInterface().getNetworkProcess().handleError(new ConnectionTerminatedException(this, cause));
+            });
+        }
+    }
+
+    /**
+     * Closes the underlying channel and wakes any threads waiting on the connection.
+     */
+    private void closeChannel(){
+        try{
+            this.key.cancel();
+            this.channel.close();
+        }
+        catch(Exception e){
+            this.getNetworkInterface().getNetworkProcess().handleError(new SocketCloseException(this.getPort()));
+        }
+
+        // waking waiting readers
+        this.inboundLock.lock();
+        try{
+            this.dataAvailable.signalAll();
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+
+        // waking waiting writers
+        synchronized(this.outbound){
+            this.outbound.notifyAll();
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Suspends or resumes the framing of requests on the connection.
+     *
+     * @param suspended True if requests should be suspended, false if not.
+     */
+    public void setSuspended(boolean suspended){
+        this.inboundLock.lock();
+        try{
+            this.suspended = suspended;
+        }
+        finally{
+            this.inboundLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of unread bytes in the inbound buffer.
+     *
+     * @return The number of unread bytes.
+     */
+    private int getBufferedCount(){
+        return this.inboundEnd - this.inboundStart;
+    }
+
+    public SocketChannel getChannel(){
+        return this.channel;
+    }
+
+    public EventLoop getEventLoop(){
+        return this.eventLoop;
+    }
+
+    /**
+     * Returns the request that was framed but could not yet be handled (e.g., because
+     * the dispatcher was full). Only used by the event loop.
+     *
+     * @return The pending request, or null if there is none.
+     */
+    public Token getPendingRequest(){
+        return this.pendingRequest;
+    }
+
+    public void setPendingRequest(Token pendingRequest){
+        this.pendingRequest = pendingRequest;
+    }
+
+    public boolean isClosed(){
+        return !this.channel.isOpen();
+    }
+
+    public int getPort(){
+        return this.port;
+    }
+
+    public int getLocalPort(){
+        return this.localPort;
+    }
+}
@@ -0,0 +1,354 @@
+package Network.Server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import DS.Protocol.Codecs;
+import DS.Protocol.Exception.RequestHandlerDisabledException;
+import DS.Protocol.Token.RequestTokenizer;
+import DS.Protocol.Token.Token;
+import Network.Protocol.Exception.ConnectorDisconnectedException;
+import Network.Protocol.Exception.MessageReceivedException;
+import Network.Protocol.Exception.NewServerConnectionException;
+import Network.Protocol.Exception.RequestHandlingException;
+
+/**
+ * A thread that serves many ChannelConnections through a single Selector.
+ *
+ * The loop reads the data arriving on its connections, frames it into requests, and
+ * passes the requests to the Server's RequestHandler without blocking. A request that
+ * cannot be accepted (because the handler is disabled or its dispatcher is full) is held
+ * by its connection and offered again shortly after, and no further requests are framed
+ * from that connection until it has been accepted.
+ */
+public class EventLoop implements Runnable {
+
+    // constants
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int RETRY_INTERVAL = 10; // ms between offers of deferred requests
+
+    // member variables
+    private Server server;
+    private Selector selector;
+    private ByteBuffer readBuffer;
+    private ConcurrentLinkedQueue<Runnable> tasks;
+    private ArrayList<ChannelConnection> deferred;
+    private ExecutorService errorHandler;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Class constructor.
+     *
+     * @param server The Server the event loop belongs to.
+     * @param name The name of the event loop's thread.
+     * @throws Exception If the loop's selector could not be opened.
+     */
+    public EventLoop(Server server, String name) throws Exception{
+        this.server = server;
+        this.selector = Selector.open();
+        this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        this.tasks = new ConcurrentLinkedQueue<Runnable>();
+        this.deferred = new ArrayList<ChannelConnection>();
+        this.errorHandler = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name + "-errors"));
+        this.thread = new Thread(this, name);
+        this.running = true;
+    }
+
+    /**
+     * Starts the event loop's thread.
+     */
+    public void start(){
+        this.thread.start();
+    }
+
+    /**
+     * Registers a newly accepted channel with the event loop.
+     *
+     * @param channel The channel to be served by the loop.
+     */
+    public void register(SocketChannel channel){
+        this.execute(() -> {
+            try{
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+                key.attach(new ChannelConnection(this.server.getNetworkInterface(), channel, key, this));
+            }
+            catch(Exception e){
+                this.server.handleError(new NewServerConnectionException(this.server.getType(), channel.socket().getLocalPort(), e));
+            }
+        });
+    }
+
+    /**
+     * Runs a task on the event loop's thread.
+     *
+     * @param task The task to be run.
+     */
+    public void execute(Runnable task){
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Runs the handling of a connection's error off the event loop (handling an error
+     * may block, e.g., a Dstore disconnecting causes a rebalance).
+     *
+     * @param handler The handling of the error.
+     */
+    public void handleError(Runnable handler){
+        this.errorHandler.execute(handler);
+    }
+
+    /**
+     * Determines if the calling thread is the event loop's thread.
+     *
+     * @return True if called from the event loop, false if not.
+     */
+    public boolean inEventLoop(){
+        return Thread.currentThread() == this.thread;
+    }
+
+    ///////////////
+    // MAIN LOOP //
+    ///////////////
+
+    /**
+     * Method run when thread started.
+     */
+    public void run(){
+        while(this.running){
+            try{
+                // waiting for channel events (or the next retry of deferred requests)
+                this.selector.select(this.deferred.isEmpty() ? 0 : RETRY_INTERVAL);
+
+                // running submitted tasks
+                Runnable task;
+                while((task = this.tasks.poll()) != null){
+                    task.run();
+                }
+
+                // handling channel events
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    this.handleKey(key);
+                }
+
+                // offering deferred requests again
+                this.retryDeferred();
+            }
+            catch(Exception e){
+                this.server.handleError(new RequestHandlingException("event loop", e));
+            }
+        }
+
+        // closing the remaining connections
+        for(SelectionKey key : this.selector.keys()){
+            ChannelConnection connection = (ChannelConnection) key.attachment();
+            connection.terminate(new MessageReceivedException(connection.getPort(), new ConnectorDisconnectedException(connection.getPort())));
+        }
+
+        try{
+            this.selector.close();
+        }
+        catch(Exception e){
+            // nothing to do - loop has stopped
+        }
+
+        this.errorHandler.shutdown();
+    }
+
+    /**
+     * Handles the events on a connection's channel.
+     *
+     * @param key The key of the connection's channel.
+     */
+    private void handleKey(SelectionKey key){
+        ChannelConnection connection = (ChannelConnection) key.attachment();
+
+        try{
+            // data to read
+            if(key.isValid() && key.isReadable()){
+                this.read(connection);
+            }
+
+            // queued data can be written
+            if(key.isValid() && key.isWritable()){
+                connection.flush();
+            }
+        }
+        catch(Exception e){
+            // error on channel = need to terminate connection
+            connection.terminate(new MessageReceivedException(connection.getPort(), e));
+        }
+    }
+
+    /**
+     * Reads the data available on a connection, and handles any requests it completes.
+     *
+     * @param connection The connection to read from.
+     * @throws Exception If the channel could not be read.
+     */
+    private void read(ChannelConnection connection) throws Exception{
+        this.readBuffer.clear();
+        int count = connection.getChannel().read(this.readBuffer);
+
+        // end of stream - connector disconnected
+        if(count < 0){
+            connection.terminate(new MessageReceivedException(connection.getPort(), new ConnectorDisconnectedException(connection.getPort())));
+            return;
+        }
+
+        this.readBuffer.flip();
+        connection.receive(this.readBuffer);
+
+        // handling the requests now available
+        this.process(connection);
+    }
+
+    //////////////
+    // REQUESTS //
+    //////////////
+
+    /**
+     * Handles the requests available on a connection, until the connection has no
+     * complete request, is suspended, or has a request that could not be accepted.
+     *
+     * A connection whose data cannot be framed into requests is terminated.
+     *
+     * @param connection The connection to handle the requests of.
+     */
+    private void process(ChannelConnection connection){
+        try{
+            while(connection.isOpen()){
+                // framing the next request
+                if(connection.getPendingRequest() == null){
+                    String request = connection.nextRequest();
+
+                    // no request available
+                    if(request == null){
+                        return;
+                    }
+
+                    connection.setPendingRequest(RequestTokenizer.getToken(request));
+
+                    // switching codec before framing on if the request is a JOIN that agrees one
+                    Codecs.startJoin(connection, connection.getPendingRequest());
+                }
+
+                // request not accepted - trying again later
+                if(!this.offer(connection, connection.getPendingRequest())){
+                    if(!this.deferred.contains(connection)){
+                        this.deferred.add(connection);
+                    }
+                    return;
+                }
+
+                connection.setPendingRequest(null);
+            }
+        }
+        catch(Exception e){
+            // invalid data on channel = need to terminate connection
+            connection.terminate(new MessageReceivedException(connection.getPort(), e));
+        }
+    }
+
+    /**
+     * Offers a request to the Server's request handler.
+     *
+     * @param connection The connection the request arrived on.
+     * @param request The request.
+     * @return True if the request was accepted, false if it must be offered again later.
+     */
+    private boolean offer(ChannelConnection connection, Token request){
+        RequestHandler handler = this.server.getRequestHandler();
+        boolean readsFromConnection = handler.readsFromConnection(request);
+
+        try{
+            // request reads from its connection - suspending framing until it completes
+            if(readsFromConnection){
+                connection.setSuspended(true);
+
+                if(handler.offerRequest(connection, request, () -> this.resume(connection))){
+                    return true;
+                }
+
+                connection.setSuspended(false);
+                return false;
+            }
+
+            return handler.offerRequest(connection, request, null);
+        }
+        catch(RequestHandlerDisabledException e){
+            // request handler not enabled - trying again later
+            if(readsFromConnection){
+                connection.setSuspended(false);
+            }
+            return false;
+        }
+        catch(Exception e){
+            this.server.handleError(new RequestHandlingException(request.message, e));
+            return true;
+        }
+    }
+
+    /**
+     * Resumes the framing of requests on a connection once a request that reads from
+     * the connection has completed.
+     *
+     * @param connection The connection to resume.
+     */
+    private void resume(ChannelConnection connection){
+        this.execute(() -> {
+            connection.setSuspended(false);
+            this.process(connection);
+        });
+    }
+
+    /**
+     * Offers the requests that could not previously be accepted again.
+     */
+    private void retryDeferred(){
+        if(this.deferred.isEmpty()){
+            return;
+        }
+
+        ArrayList<ChannelConnection> connections = new ArrayList<ChannelConnection>(this.deferred);
+        this.deferred.clear();
+
+        for(ChannelConnection connection : connections){
+            this.process(connection);
+        }
+    }
+
+    /**
+     * Stops the event loop, closing its connections.
+     */
+    public void close(){
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    /**
+     * Returns the number of connections being served by the loop.
+     *
+     * @return The number of connections.
+     */
+    public int getConnectionCount(){
+        return this.selector.keys().size();
+    }
+}
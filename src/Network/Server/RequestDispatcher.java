@@ -0,0 +1,332 @@
+package Network.Server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Network.NetworkOptions;
+import Network.VirtualThreads;
+
+/**
+ * Runs the requests handed to a RequestHandler.
+ *
+ * In THREAD mode (the default) every request is run on a new platform thread. In
+ * the other modes requests are run by an executor, and the number of requests that
+ * are queued or running at once is bounded. When the bound is reached, the rejection
+ * policy decides what happens to a new request:
+ *
+ *  - CALLER_RUNS : The request is run on the thread that dispatched it (the connection's
+ *                  thread), so no further requests are read from that connection until it
+ *                  completes.
+ *  - BLOCK       : The dispatching thread waits until a running request completes.
+ *
+ * Both policies push back on the connector rather than dropping its request.
+ *
+ * Options:
+ *  - dispatch  : thread | fixed | work-stealing | virtual (default thread).
+ *  - workers   : The number of worker threads (maximum concurrent requests in virtual mode).
+ *  - queue     : The number of requests that may wait for a worker.
+ *  - rejection : caller-runs | block (default caller-runs).
+ *  - dispatch-report-interval : Time in ms between reports of the dispatcher's load (default
+ *                               0, no reports). Only made when requests have been dispatched
+ *                               since the last report.
+ */
+public class RequestDispatcher {
+
+    // constants
+    public static final int DEFAULT_WORKERS = 64;
+    public static final int DEFAULT_QUEUE = 1024;
+
+    // member variables
+    private DispatchMode mode;
+    private RejectionPolicy rejectionPolicy;
+    private int workers;
+    private int queueCapacity;
+    private long reportInterval;
+    private ExecutorService executor;
+    private ThreadFactory threadFactory;
+    private Semaphore permits;
+    private AtomicInteger queued;
+    private AtomicInteger peakQueued;
+    private AtomicInteger active;
+    private AtomicLong dispatched;
+    private AtomicLong callerRuns;
+    private ScheduledExecutorService reporter; // null unless the dispatcher's load is reported
+
+    /**
+     * Class constructor.
+     *
+     * @param options The options of the Server the dispatcher belongs to.
+     */
+    public RequestDispatcher(NetworkOptions options){
+        this.mode = options.getEnum("dispatch", DispatchMode.class, DispatchMode.THREAD);
+        this.rejectionPolicy = options.getEnum("rejection", RejectionPolicy.class, RejectionPolicy.CALLER_RUNS);
+        this.workers = options.getInt("workers", DEFAULT_WORKERS);
+        this.queueCapacity = options.getInt("queue", DEFAULT_QUEUE);
+        this.reportInterval = options.getLong("dispatch-report-interval", 0);
+        this.permits = new Semaphore(this.workers + this.queueCapacity);
+        this.queued = new AtomicInteger();
+        this.peakQueued = new AtomicInteger();
+        this.active = new AtomicInteger();
+        this.dispatched = new AtomicLong();
+        this.callerRuns = new AtomicLong();
+
+        // creating the executor for the mode
+        switch(this.mode){
+            case FIXED:
+                this.executor = Executors.newFixedThreadPool(this.workers, new WorkerThreadFactory());
+                break;
+            case WORK_STEALING:
+                this.executor = Executors.newWorkStealingPool(this.workers);
+                break;
+            case VIRTUAL:
+                // platform threads used if the runtime has no virtual threads
+                this.threadFactory = VirtualThreads.isSupported() ? VirtualThreads.getFactory() : new WorkerThreadFactory();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /////////////////
+    // DISPATCHING //
+    /////////////////
+
+    /**
+     * Dispatches a request to be run.
+     *
+     * @param request The request to be run.
+     * @throws InterruptedException If the thread was interrupted while blocked on a full dispatcher.
+     */
+    public void dispatch(Runnable request) throws InterruptedException{
+        this.dispatched.incrementAndGet();
+
+        // THREAD mode - unbounded, one thread per request
+        if(this.mode == DispatchMode.THREAD){
+            new Thread(request).start();
+            return;
+        }
+
+        // bounded modes - need a permit to queue the request
+        if(!this.permits.tryAcquire()){
+            if(this.rejectionPolicy == RejectionPolicy.CALLER_RUNS){
+                // running on the dispatching thread
+                this.callerRuns.incrementAndGet();
+                this.runRequest(request);
+                return;
+            }
+            else{
+                // waiting for a request to complete
+                this.permits.acquire();
+            }
+        }
+
+        this.queueRequest(request);
+    }
+
+    /**
+     * Dispatches a request to be run, without blocking the dispatching thread and
+     * without running the request on it. Used by threads that must never block (e.g.,
+     * event loops).
+     * 
+     * @param request The request to be run.
+     * @return True if the request was dispatched, false if the dispatcher is full.
+     */
+    public boolean tryDispatch(Runnable request){
+        // THREAD mode - unbounded, one thread per request
+        if(this.mode == DispatchMode.THREAD){
+            this.dispatched.incrementAndGet();
+            new Thread(request).start();
+            return true;
+        }
+
+        // bounded modes - rejecting if there is no permit
+        if(!this.permits.tryAcquire()){
+            return false;
+        }
+
+        this.dispatched.incrementAndGet();
+        this.queueRequest(request);
+        return true;
+    }
+
+    /**
+     * Queues a request to be run by the dispatcher's workers. A permit must have been
+     * acquired for the request.
+     * 
+     * @param request The request to be run.
+     */
+    private void queueRequest(Runnable request){
+        // queueing the request
+        this.peakQueued.accumulateAndGet(this.queued.incrementAndGet(), Math::max);
+
+        Runnable task = () -> {
+            this.queued.decrementAndGet();
+            try{
+                this.runRequest(request);
+            }
+            finally{
+                this.permits.release();
+            }
+        };
+
+        if(this.executor != null){
+            this.executor.execute(task);
+        }
+        else{
+            this.threadFactory.newThread(task).start();
+        }
+    }
+
+    /**
+     * Runs a request, keeping count of the number of running requests.
+     *
+     * @param request The request being run.
+     */
+    private void runRequest(Runnable request){
+        this.active.incrementAndGet();
+        try{
+            request.run();
+        }
+        finally{
+            this.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Starts reporting the dispatcher's load every report interval, if reports are enabled.
+     * 
+     * @param report Reports the dispatcher's load (e.g., by logging an event).
+     */
+    public void startReporting(Runnable report){
+        if(this.reportInterval <= 0){
+            return;
+        }
+
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-dispatcher-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // only reporting when requests have been dispatched since the last report
+        AtomicLong lastReported = new AtomicLong();
+        this.reporter.scheduleWithFixedDelay(() -> {
+            long dispatched = this.getDispatchedCount();
+            if(lastReported.getAndSet(dispatched) != dispatched){
+                report.run();
+            }
+        }, this.reportInterval, this.reportInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the dispatcher's workers and reports. Requests already dispatched are completed.
+     */
+    public void shutdown(){
+        if(this.executor != null){
+            this.executor.shutdown();
+        }
+
+        if(this.reporter != null){
+            this.reporter.shutdownNow();
+        }
+    }
+
+    /////////////////////////
+    // GETTERS AND SETTERS //
+    /////////////////////////
+
+    public DispatchMode getMode(){
+        return this.mode;
+    }
+
+    public RejectionPolicy getRejectionPolicy(){
+        return this.rejectionPolicy;
+    }
+
+    /**
+     * Returns the number of requests waiting for a worker.
+     *
+     * @return The number of requests waiting for a worker.
+     */
+    public int getQueueDepth(){
+        return this.queued.get();
+    }
+
+    /**
+     * Returns the largest number of requests that have waited for a worker at once.
+     *
+     * @return The peak queue depth.
+     */
+    public int getPeakQueueDepth(){
+        return this.peakQueued.get();
+    }
+
+    /**
+     * Returns the number of requests currently being run.
+     *
+     * @return The number of running requests.
+     */
+    public int getActiveCount(){
+        return this.active.get();
+    }
+
+    public long getDispatchedCount(){
+        return this.dispatched.get();
+    }
+
+    /**
+     * Returns the number of requests that were run on the dispatching thread because
+     * the dispatcher was full.
+     *
+     * @return The number of caller-run requests.
+     */
+    public long getCallerRunsCount(){
+        return this.callerRuns.get();
+    }
+
+    public String toString(){
+        return ("mode=" + this.mode + " dispatched=" + this.getDispatchedCount() + " active=" + this.getActiveCount()
+                + " queued=" + this.getQueueDepth() + " peakQueued=" + this.getPeakQueueDepth() + " callerRuns=" + this.getCallerRunsCount());
+    }
+
+    ///////////
+    // TYPES //
+    ///////////
+
+    /**
+     * The ways in which requests can be run.
+     */
+    public enum DispatchMode {
+        THREAD, // new platform thread per request
+        FIXED, // fixed pool of platform threads
+        WORK_STEALING, // work-stealing (fork-join) pool
+        VIRTUAL; // new virtual thread per request
+    }
+
+    /**
+     * What happens to a request dispatched while the dispatcher is full.
+     */
+    public enum RejectionPolicy {
+        CALLER_RUNS, // run on the dispatching thread
+        BLOCK; // dispatching thread waits for space
+    }
+
+    /**
+     * Creates the named platform threads used by the dispatcher.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        // member variables
+        private AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable){
+            return new Thread(runnable, "request-worker-" + this.count.incrementAndGet());
+        }
+    }
+}
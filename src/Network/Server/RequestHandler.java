@@ -1,8 +1,10 @@
 package Network.Server;
 
+import DS.Protocol.Protocol;
 import DS.Protocol.Exception.RequestHandlerDisabledException;
 import DS.Protocol.Token.Token;
 import Network.Connection;
+import Network.Protocol.Event.RequestDispatcherReportEvent;
 
 /**
  * Abstract class to represent the component of a Server that handles requests.
@@ -17,7 +19,9 @@ public abstract class RequestHandler {
 
     // member variables
     private Server server;
-    private boolean enabled;
+    private RequestDispatcher dispatcher;
+    private volatile boolean enabled;
+    private Object enabledMonitor;
 
     ////////////////////////
     // CLASS CONSTRUUCTOR //
@@ -31,7 +35,12 @@ public abstract class RequestHandler {
     public RequestHandler(Server server){
         // initializing
         this.server = server;
+        this.dispatcher = new RequestDispatcher(server.getOptions());
         this.enabled = true;
+        this.enabledMonitor = new Object();
+
+        // reporting the load on the dispatcher through the server
+        this.dispatcher.startReporting(() -> server.handleEvent(new RequestDispatcherReportEvent(this.dispatcher)));
     }
 
     //////////////////////
@@ -39,8 +48,8 @@ public abstract class RequestHandler {
     //////////////////////
 
     /**
-     * Handles a give request on a new thread. Runs the handle request method on
-     * a new thread.
+     * Handles a give request. The request is run by the handler's dispatcher, unless
+     * it is an inline request, in which case it is run on the calling thread.
      * 
      * @param connection The connection associated with the request.
      * @param request The request being handeled.
@@ -53,14 +62,115 @@ public abstract class RequestHandler {
             throw new RequestHandlerDisabledException();
         }
 
-        // runnable for the request thread
+        // inline request - handling on the connection's thread
+        if(this.isInlineRequest(request) || this.readsFromConnection(request)){
+            this.handleTaggedRequest(connection, request);
+            return;
+        }
+
+        // runnable for the request
         Runnable runnable = () -> {
             // handling the request
-            this.handleRequestAux(connection, request);
+            this.handleTaggedRequest(connection, request);
         };
 
-        // starting a thread to handle the request
-        new Thread(runnable).start();
+        // dispatching the request
+        this.dispatcher.dispatch(runnable);
+    }
+
+    /**
+     * Handles a given request without blocking the calling thread. Used by transports
+     * that receive requests on an event loop.
+     * 
+     * Inline requests are handled on the calling thread. All other requests are 
+     * dispatched, and the provided callback is run once the request has been handled.
+     * 
+     * @param connection The connection associated with the request.
+     * @param request The request being handeled.
+     * @param onComplete Run once a dispatched request has been handled (may be null).
+     * @return True if the request was accepted, false if the dispatcher is full and
+     * the request must be offered again later.
+     * @throws RequestHandlerDisabledException If the request has come from a client
+     * and the request handler is disabled.
+     */
+    public boolean offerRequest(Connection connection, Token request, Runnable onComplete) throws Exception{
+        // throwing exception if handler is not enabled and request is from client
+        if(!this.isEnabled() && this.server.getClientConnections().contains(connection)){
+            throw new RequestHandlerDisabledException();
+        }
+
+        // inline request - handling on the calling thread
+        if(this.isInlineRequest(request) && !this.readsFromConnection(request)){
+            this.handleTaggedRequest(connection, request);
+            return true;
+        }
+
+        // runnable for the request
+        Runnable runnable = () -> {
+            try{
+                // handling the request
+                this.handleTaggedRequest(connection, request);
+            }
+            finally{
+                if(onComplete != null){
+                    onComplete.run();
+                }
+            }
+        };
+
+        // dispatching the request
+        return this.dispatcher.tryDispatch(runnable);
+    }
+
+    /**
+     * Determines if a request should be handled on the thread that received it
+     * rather than being dispatched.
+     * 
+     * Inline requests are those that complete quickly without waiting on other 
+     * connections (e.g., acknowledgements).
+     * 
+     * @param request The request being handled.
+     * @return True if the request should be handled inline, false if not.
+     */
+    public boolean isInlineRequest(Token request){
+        return false;
+    }
+
+    /**
+     * Determines if a request goes on to read further data from its own connection
+     * (e.g., file content). No further requests are read from the connection until
+     * such a request has been handled.
+     * 
+     * @param request The request being handled.
+     * @return True if the request reads from its connection, false if not.
+     */
+    public boolean readsFromConnection(Token request){
+        return false;
+    }
+
+    /**
+     * Handles a given request, tagging the messages sent back through its connection while
+     * it is handled with the request's tag (if it is tagged), so that the connector can
+     * match the replies to the request.
+     * 
+     * @param connection The connection associated with the request.
+     * @param request The request being handeled.
+     */
+    private void handleTaggedRequest(Connection connection, Token request){
+        // untagged request
+        if(request.tag == null){
+            this.handleRequestAux(connection, request);
+            return;
+        }
+
+        // tagged request
+        connection.setReplyPrefix(Protocol.getTagPrefix(request.tag));
+        try{
+            this.handleRequestAux(connection, request);
+        }
+        finally{
+            connection.setReplyPrefix(null);
+        }
     }
 
     /**
@@ -81,7 +191,12 @@ public abstract class RequestHandler {
      * The request handler will continue serving requests.
      */
     public void enable(){
-        this.enabled = true;
+        synchronized(this.enabledMonitor){
+            this.enabled = true;
+
+            // waking the connections waiting for the handler
+            this.enabledMonitor.notifyAll();
+        }
     }
 
     /**
@@ -91,7 +206,25 @@ public abstract class RequestHandler {
      * serve no further requests until it is enabled again.
      */
     public void disable(){
-        this.enabled = false;
+        synchronized(this.enabledMonitor){
+            this.enabled = false;
+        }
+    }
+
+    /**
+     * Blocks the calling thread until the request handler is enabled.
+     * 
+     * Used by connections whose request was refused because the handler was disabled,
+     * so they wait to be woken by enable() rather than retrying the request.
+     * 
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public void awaitEnabled() throws InterruptedException{
+        synchronized(this.enabledMonitor){
+            while(!this.enabled){
+                this.enabledMonitor.wait();
+            }
+        }
     }
 
     /////////////////////////
@@ -101,4 +234,8 @@ public abstract class RequestHandler {
     public boolean isEnabled(){
         return this.enabled;
     }
+
+    public RequestDispatcher getDispatcher(){
+        return this.dispatcher;
+    }
 }
@@ -0,0 +1,70 @@
+package Network.Server;
+
+import java.util.HashMap;
+
+import DS.Protocol.Token.Token;
+import Network.Connection;
+
+/**
+ * Maps each type of request a RequestHandler handles to the action that handles it.
+ * 
+ * Requests are dispatched with a single lookup on the class of their token, rather than
+ * by testing the token against each type of request in turn.
+ */
+public class RequestTable {
+
+    // member variables
+    private HashMap<Class<? extends Token>, RequestAction<Token>> actions; // request type -> action
+
+    /**
+     * Class constructor.
+     */
+    public RequestTable(){
+        this.actions = new HashMap<Class<? extends Token>, RequestAction<Token>>();
+    }
+
+    /**
+     * Registers the action that handles a type of request.
+     * 
+     * @param type The class of the request's token.
+     * @param action The action that handles the request.
+     */
+    public <T extends Token> void register(Class<T> type, RequestAction<? super T> action){
+        this.actions.put(type, (connection, request) -> action.handle(connection, type.cast(request)));
+    }
+
+    /**
+     * Handles a request with the action registered for its type.
+     * 
+     * @param connection The connection associated with the request.
+     * @param request The request being handled.
+     * @return True if the request was handled, false if no action is registered for its type.
+     * @throws Exception If the action failed to handle the request.
+     */
+    public boolean handle(Connection connection, Token request) throws Exception{
+        RequestAction<Token> action = this.actions.get(request.getClass());
+
+        if(action == null){
+            return false;
+        }
+
+        action.handle(connection, request);
+        return true;
+    }
+
+    /**
+     * An action that handles a type of request.
+     */
+    @FunctionalInterface
+    public interface RequestAction<T extends Token> {
+
+        /**
+         * Handles a request.
+         * 
+         * @param connection The connection associated with the request.
+         * @param request The request being handled.
+         * @throws Exception If the request could not be handled.
+         */
+        public void handle(Connection connection, T request) throws Exception;
+    }
+}
@@ -1,7 +1,10 @@
 package Network.Server;
 
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -16,6 +19,16 @@ import Network.Protocol.Exception.ServerStartException;
  * 
  * Servers listen for new connectors and create new Connection objects to 
  * handle the request(s) the connector.
+ * 
+ * Connections are served by one of two transports:
+ *  - BLOCKING : Each connection has its own thread, blocked waiting for requests.
+ *  - NIO      : Connections are non-blocking channels, served by a small number of
+ *               event loops (so idle connections do not need threads).
+ * 
+ * Options:
+ *  - transport   : blocking | nio (default blocking).
+ *  - event-loops : The number of event loops used by the nio transport (default
+ *                  half the available processors).
  */
 public abstract class Server implements NetworkProcess{
 
@@ -23,8 +36,13 @@ public abstract class Server implements NetworkProcess{
     private ServerType type;
     private int port;
     private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel;
+    private TransportType transport;
+    private EventLoop[] eventLoops;
     private RequestHandler requestHandler;
     private NetworkInterface networkInterface;
+    private NetworkOptions options;
+    private ConnectionThreadFactory connectionThreadFactory;
     private volatile CopyOnWriteArrayList<Connection> clientConnections;
     private volatile ConcurrentHashMap<Connection, Integer> clientHeartbeatConnections;
     private volatile CopyOnWriteArrayList<Connection> serverConnections;
@@ -38,9 +56,24 @@ public abstract class Server implements NetworkProcess{
      * @param serverInterface The network interface for the Server.
      */
     public Server(ServerType type, int port, NetworkInterface networkInterface){
+        this(type, port, networkInterface, new NetworkOptions());
+    }
+
+    /**
+     * Class constructor
+     * 
+     * @param type The type of Server.
+     * @param port The port the Server listens on.
+     * @param serverInterface The network interface for the Server.
+     * @param options The optional settings for the Server.
+     */
+    public Server(ServerType type, int port, NetworkInterface networkInterface, NetworkOptions options){
         this.type = type;
         this.port = port;
         this.networkInterface = networkInterface;
+        this.options = options;
+        this.connectionThreadFactory = new ConnectionThreadFactory(options);
+        this.transport = options.getEnum("transport", TransportType.class, TransportType.BLOCKING);
         this.clientConnections = new CopyOnWriteArrayList<Connection>();
         this.clientHeartbeatConnections = new ConcurrentHashMap<Connection, Integer>() ;
         this.serverConnections = new CopyOnWriteArrayList<Connection>();
@@ -83,9 +116,18 @@ public abstract class Server implements NetworkProcess{
      * connections.
      */
     public void waitForConnection() throws ServerWaitForConnectionException{
+        // non-blocking transport
+        if(this.transport == TransportType.NIO){
+            this.waitForChannelConnection();
+            return;
+        }
+
         // Starting Listening //
         try{
-            this.serverSocket = new ServerSocket(this.port);
+            // socket backed by a (blocking) channel, so accepted sockets have channels
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(this.port));
+            this.serverSocket = channel.socket();
 
             // listening for connections
             while (this.isActive()){
@@ -106,6 +148,47 @@ public abstract class Server implements NetworkProcess{
         }
     }
 
+    /**
+     * Makes the server start listening for incoming communication on the non-blocking
+     * transport. Accepted channels are shared between the Server's event loops.
+     * 
+     * @throws ServerWaitForConnectionException If the server was unable to start waiting for
+     * connections.
+     */
+    public void waitForChannelConnection() throws ServerWaitForConnectionException{
+        // Starting Listening //
+        try{
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.bind(new InetSocketAddress(this.port));
+
+            // starting the event loops
+            int loops = this.options.getInt("event-loops", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            this.eventLoops = new EventLoop[loops];
+            for(int i = 0; i < loops; i++){
+                this.eventLoops[i] = new EventLoop(this, "event-loop-" + (i + 1));
+                this.eventLoops[i].start();
+            }
+
+            // listening for connections
+            int next = 0;
+            while (this.isActive()){
+                try{
+                    SocketChannel channel = this.serverChannel.accept();
+
+                    // handing the channel to the next event loop
+                    this.eventLoops[next].register(channel);
+                    next = (next + 1) % loops;
+                }
+                catch(Exception e){
+                    this.handleError(new NewServerConnectionException(this.type, this.port, e));
+                }
+            }
+        }
+        catch(Exception e){
+            throw new ServerWaitForConnectionException(this.type, this.port, e);
+        }
+    }
+
     /**
      * Sets up a connection between the Server and a connector.
      * 
@@ -122,6 +205,18 @@ public abstract class Server implements NetworkProcess{
      */
     public void close(){
         this.active = false;
+
+        // stopping the request workers
+        if(this.requestHandler != null){
+            this.requestHandler.getDispatcher().shutdown();
+        }
+
+        // stopping the event loops
+        if(this.eventLoops != null){
+            for(EventLoop eventLoop : this.eventLoops){
+                eventLoop.close();
+            }
+        }
     }
 
 
@@ -141,6 +236,14 @@ public abstract class Server implements NetworkProcess{
         return this.networkInterface;
     }
 
+    public NetworkOptions getOptions(){
+        return this.options;
+    }
+
+    public ConnectionThreadFactory getConnectionThreadFactory(){
+        return this.connectionThreadFactory;
+    }
+
     public CopyOnWriteArrayList<Connection> getClientConnections(){
         return this.clientConnections;
     }
@@ -153,6 +256,10 @@ public abstract class Server implements NetworkProcess{
         return this.serverConnections;
     }
 
+    public TransportType getTransport(){
+        return this.transport;
+    }
+
     public boolean isActive(){
         return this.active;
     }
@@ -161,6 +268,18 @@ public abstract class Server implements NetworkProcess{
         this.requestHandler = requestHandler;
     }
 
+    ////////////////////
+    // TRANSPORT TYPE //
+    ////////////////////
+
+    /**
+     * Enumeration class for the transports a Server can serve its connections with.
+     */
+    public enum TransportType {
+        BLOCKING, // thread per connection
+        NIO; // non-blocking channels served by event loops
+    }
+
     /////////////////
     // SERVER TYPE //
     /////////////////
@@ -1,5 +1,6 @@
 package Network.Server;
 
+import DS.Protocol.Codecs;
 import DS.Protocol.Exception.RequestHandlerDisabledException;
 import DS.Protocol.Token.RequestTokenizer;
 import DS.Protocol.Token.Token;
@@ -9,13 +10,14 @@ import Network.Protocol.Exception.ConnectionTerminatedException;
 /**
  * Represents a connection between a Server and a connecting object.
  * 
- * Is a Thread so that the requests coming to the Server can be handled on a new thread,
- * which allows for one Server to server multiple connecting objects.
+ * Runs on its own thread so that the requests coming to the Server can be handled on a new thread,
+ * which allows for one Server to server multiple connecting objects. The thread is created by
+ * the Server's ConnectionThreadFactory (and so may be a virtual thread).
  * 
  * When the Thread is run, the connection waits for a request and then passes this
  * request onto the underlying Server's request handler.
  */
-public class ServerThread extends Thread {
+public class ServerThread implements Runnable {
     
     // member variables
     private Server server;
@@ -34,6 +36,13 @@ public class ServerThread extends Thread {
         this.isActive = true;
     }
 
+    /**
+     * Starts the connection on a new thread.
+     */
+    public void start(){
+        this.server.getConnectionThreadFactory().start(this);
+    }
+
     /**
      * Method run when thread started.
      */
@@ -54,6 +63,9 @@ public class ServerThread extends Thread {
                 // tokenizing request
                 Token requestToken = RequestTokenizer.getToken(request);
 
+                // switching codec before reading on if the request is a JOIN that agrees one
+                Codecs.startJoin(this.connection, requestToken);
+
                 // handling request (need loop as the request handler could be disabled)
                 while(true){
                     try{
@@ -64,8 +76,8 @@ public class ServerThread extends Thread {
                         break;
                     }
                     catch(RequestHandlerDisabledException e){
-                        // request handler not enabled - wait and try again
-                        Thread.onSpinWait();
+                        // request handler not enabled - waiting until it is and trying again
+                        this.server.getRequestHandler().awaitEnabled();
                     }
                 }
                 
@@ -0,0 +1,75 @@
+package Network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Codec for newline-delimited text messages (the form used by every connection unless
+ * another codec is agreed).
+ */
+public class TextCodec implements MessageCodec {
+
+    // constants
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final int INITIAL_LINE_SIZE = 128;
+
+    public String getName(){
+        return "text";
+    }
+
+    public byte[] encode(String message){
+        return (message + "\n").getBytes(CHARSET);
+    }
+
+    public String read(InputStream in) throws IOException{
+        byte[] line = new byte[INITIAL_LINE_SIZE];
+        int length = 0;
+
+        while(true){
+            int b = in.read();
+
+            // end of stream
+            if(b < 0){
+                return (length == 0) ? null : this.decode(line, 0, length);
+            }
+
+            // end of line
+            if(b == '\n'){
+                return this.decode(line, 0, length);
+            }
+
+            // growing the line
+            if(length == line.length){
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[length++] = (byte) b;
+        }
+    }
+
+    public int getFrameLength(byte[] buffer, int start, int end, int scanned){
+        // searching for the end of the line
+        for(int i = start + scanned; i < end; i++){
+            if(buffer[i] == '\n'){
+                return (i - start + 1);
+            }
+        }
+
+        return -1;
+    }
+
+    public String decode(byte[] buffer, int start, int length){
+        int end = start + length;
+
+        // removing line terminator
+        if(end > start && buffer[end - 1] == '\n'){
+            end--;
+        }
+        if(end > start && buffer[end - 1] == '\r'){
+            end--;
+        }
+
+        return new String(buffer, start, end - start, CHARSET);
+    }
+}
@@ -0,0 +1,56 @@
+package Network;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads on Java runtimes that provide them.
+ *
+ * The system is compiled against Java 17, where virtual threads do not exist,
+ * so the virtual thread API is looked up reflectively. On runtimes without
+ * virtual threads, isSupported() returns false and callers fall back to
+ * platform threads.
+ */
+public class VirtualThreads {
+
+    // static variables
+    private static final ThreadFactory FACTORY = VirtualThreads.lookupFactory();
+
+    /**
+     * Class constuctor. Private as class is static.
+     */
+    private VirtualThreads(){}
+
+    /**
+     * Determines if the running Java runtime supports virtual threads.
+     *
+     * @return True if virtual threads are supported, false if not.
+     */
+    public static boolean isSupported(){
+        return FACTORY != null;
+    }
+
+    /**
+     * Returns a ThreadFactory that creates virtual threads.
+     *
+     * @return A ThreadFactory for virtual threads, or null if they are not supported.
+     */
+    public static ThreadFactory getFactory(){
+        return FACTORY;
+    }
+
+    /**
+     * Looks up the virtual thread factory (Thread.ofVirtual().factory()).
+     *
+     * @return The virtual thread factory, or null if it is not available.
+     */
+    private static ThreadFactory lookupFactory(){
+        try{
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        }
+        catch(Exception e){
+            // virtual threads not available on this runtime
+            return null;
+        }
+    }
+}